@@ -0,0 +1,86 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.benchmark;
+
+import cz.closeit.pdi.sasreader.parso.SasFileGenerator;
+import cz.closeit.pdi.sasreader.parso.SasFileGenerator.ColumnKind;
+import cz.closeit.pdi.sasreader.parso.SasFileGenerator.Compression;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Shapes of generated sas files used by benchmarks. Files are generated into
+ * the directory given by system property sasreader.benchmark.dir (temporary
+ * directory by default) and reused by later runs, the generator is
+ * deterministic so the content is always the same.
+ */
+public enum BenchmarkFile {
+
+    NarrowNumeric(200000, 8, 16, ColumnKind.Numeric, ColumnKind.Integer, ColumnKind.Numeric, ColumnKind.Date),
+    NarrowString(200000, 8, 24, ColumnKind.Character, ColumnKind.Character, ColumnKind.Character, ColumnKind.Integer),
+    WideNumeric(10000, 400, 16, ColumnKind.Numeric, ColumnKind.Integer, ColumnKind.Numeric, ColumnKind.DateTime),
+    WideString(10000, 400, 24, ColumnKind.Character, ColumnKind.Character, ColumnKind.Character, ColumnKind.Numeric);
+
+    private static final String DIRECTORY_PROPERTY = "sasreader.benchmark.dir";
+
+    private final long rows;
+    private final int columns;
+    private final int stringWidth;
+    private final ColumnKind[] kinds;
+
+    private BenchmarkFile(long rows, int columns, int stringWidth, ColumnKind... kinds) {
+        this.rows = rows;
+        this.columns = columns;
+        this.stringWidth = stringWidth;
+        this.kinds = kinds;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the file of this shape, generate it if it doesn't exist yet.
+     *
+     * @param compression
+     * @return generated sas file
+     * @throws IOException
+     */
+    public File get(Compression compression) throws IOException {
+        File directory = new File(System.getProperty(DIRECTORY_PROPERTY,
+                new File(System.getProperty("java.io.tmpdir"), "sas-reader-benchmark").getPath()));
+        File file = new File(directory, name() + "_" + compression + ".sas7bdat");
+        if (!file.exists()) {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Can't create directory " + directory);
+            }
+            File tmpFile = new File(directory, file.getName() + ".tmp");
+            new SasFileGenerator()
+                    .setRowCount(rows)
+                    .setColumns(columns, kinds)
+                    .setStringWidth(stringWidth)
+                    .setDistinctStrings(1000)
+                    .setNullDensity(0.05)
+                    .setCompression(compression)
+                    .write(tmpFile);
+            if (!tmpFile.renameTo(file)) {
+                throw new IOException("Can't create file " + file);
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.benchmark;
+
+import com.epam.parso.SasFileProperties;
+import com.epam.parso.impl.SasFileReaderImpl;
+
+import cz.closeit.pdi.sasreader.parso.DecompressorType;
+import cz.closeit.pdi.sasreader.parso.ParsoService;
+import cz.closeit.pdi.sasreader.parso.SasDecompressor;
+import cz.closeit.pdi.sasreader.parso.SasFileLayout;
+import cz.closeit.pdi.sasreader.parso.SasFileGenerator.Compression;
+import cz.closeit.pdi.sasreader.parso.SasPageDecoder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Decompression of rows of compressed files by own decompressors of the
+ * plugin and by Parso. decompressRows decompresses all compressed rows of the
+ * file held in memory, decodeRows reads the whole file by the page decoder
+ * including I/O and decoding of values. One operation is one complete file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DecompressorBenchmark {
+
+    @Param({"NarrowNumeric", "NarrowString", "WideNumeric", "WideString"})
+    public BenchmarkFile shape;
+
+    @Param({"Binary", "Char"})
+    public Compression compression;
+
+    @Param({"Native", "Parso"})
+    public DecompressorType decompressor;
+
+    private File file;
+    private SasDecompressor rowDecompressor;
+    private int rowLength;
+    private byte[] row;
+    // compressed rows as page, offset and length
+    private final List<byte[]> pages = new ArrayList<>();
+    private final List<int[]> compressedRows = new ArrayList<>();
+
+    @Setup
+    public void setup() throws IOException {
+        file = shape.get(compression);
+        SasFileProperties properties;
+        try (InputStream inputStream = new FileInputStream(file)) {
+            properties = new SasFileReaderImpl(inputStream).getSasFileProperties();
+        }
+        SasFileLayout layout = new SasFileLayout(properties);
+        rowDecompressor = decompressor.forMethod(properties.getCompressionMethod());
+        rowLength = layout.getRowLength();
+        row = new byte[rowLength];
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            for (long i = 0; i < layout.getPageCount(); i++) {
+                byte[] page = new byte[layout.getPageLength()];
+                input.seek(layout.getPageOffset(i));
+                input.readFully(page);
+                for (int j = 0; j < layout.getSubheaderCount(page); j++) {
+                    int length = (int) layout.getSubheaderLength(page, j);
+                    if (layout.isDataSubheader(page, j) && length < rowLength) {
+                        compressedRows.add(new int[]{pages.size(), (int) layout.getSubheaderOffset(page, j), length});
+                    }
+                }
+                pages.add(page);
+            }
+        }
+    }
+
+    @Benchmark
+    public void decompressRows(Blackhole blackhole) throws IOException {
+        for (int[] compressedRow : compressedRows) {
+            rowDecompressor.decompress(pages.get(compressedRow[0]), compressedRow[1], compressedRow[2], row, 0, rowLength);
+            blackhole.consume(row);
+        }
+    }
+
+    @Benchmark
+    public long decodeRows(Blackhole blackhole) throws IOException {
+        ParsoService service = new ParsoService(file);
+        service.setDecompressorType(decompressor);
+        long rows = 0;
+        try {
+            SasPageDecoder decoder = service.openDecoder();
+            int columns = (int) service.getNumberOfColumns();
+            while (decoder.next()) {
+                for (int i = 0; i < columns; i++) {
+                    blackhole.consume(decoder.getValue(i));
+                }
+                rows++;
+            }
+        } finally {
+            service.dispose();
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.benchmark;
+
+import cz.closeit.pdi.sasreader.input.EpochUnit;
+import cz.closeit.pdi.sasreader.input.FieldConverter;
+import cz.closeit.pdi.sasreader.input.SasInputField.KettleType;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of KettleType.convert and of FieldConverter (used by the step) for
+ * every pair of source object (as returned by Parso) and target kettle type.
+ * Time is reported per converted value, run with -prof gc to see allocated
+ * bytes per value.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KettleTypeConvertBenchmark {
+
+    private static final int VALUES = 1024;
+
+    public enum Source {
+        Integer, Long, Double, Date, String
+    }
+
+    @Param({"Integer", "Long", "Double", "Date", "String"})
+    public Source source;
+
+    @Param({"String", "Number", "BigNumber", "Integer", "Date"})
+    public KettleType target;
+
+    @Param({"Milliseconds", "Days"})
+    public EpochUnit dateUnit;
+
+    private Object[] values;
+    private FieldConverter converter;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        values = new Object[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            int value = random.nextInt(1000000);
+            switch (source) {
+                case Integer:
+                    values[i] = value;
+                    break;
+                case Long:
+                    values[i] = (long) value;
+                    break;
+                case Double:
+                    values[i] = value / 100.0;
+                    break;
+                case Date:
+                    values[i] = new Date(value * 86400000L);
+                    break;
+                default:
+                    // numeric text, so conversions to numbers and dates succeed
+                    values[i] = java.lang.Integer.toString(value);
+                    break;
+            }
+        }
+        converter = FieldConverter.create(getValueType(), target, dateUnit);
+    }
+
+    private Class<?> getValueType() {
+        switch (source) {
+            case Date:
+                return Date.class;
+            case String:
+                return String.class;
+            default:
+                return Number.class;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void convert(Blackhole blackhole) {
+        for (Object value : values) {
+            blackhole.consume(target.convert(value));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void fieldConverter(Blackhole blackhole) {
+        for (Object value : values) {
+            blackhole.consume(converter.convert(value));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.benchmark;
+
+import cz.closeit.pdi.sasreader.parso.ParsoService;
+import cz.closeit.pdi.sasreader.parso.SasFileGenerator.Compression;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of reading whole file by ParsoService, row by row and in
+ * batches. One operation is one complete file, see BenchmarkFile for number of
+ * rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParsoServiceBenchmark {
+
+    private static final int BATCH_ROWS = 256;
+
+    @Param({"NarrowNumeric", "NarrowString", "WideNumeric", "WideString"})
+    public BenchmarkFile shape;
+
+    @Param({"None", "Char", "Binary"})
+    public Compression compression;
+
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        file = shape.get(compression);
+    }
+
+    @Benchmark
+    public long getNextRow(Blackhole blackhole) throws IOException {
+        ParsoService service = new ParsoService(file);
+        long rows = 0;
+        try {
+            Object[] row;
+            while ((row = service.getNextRow()) != null) {
+                blackhole.consume(row);
+                rows++;
+            }
+        } finally {
+            service.dispose();
+        }
+        return rows;
+    }
+
+    @Benchmark
+    public long getNextRows(Blackhole blackhole) throws IOException {
+        ParsoService service = new ParsoService(file);
+        Object[][] buffer = new Object[BATCH_ROWS][];
+        long rows = 0;
+        try {
+            int count;
+            while ((count = service.getNextRows(buffer)) > 0) {
+                for (int i = 0; i < count; i++) {
+                    blackhole.consume(buffer[i]);
+                }
+                rows += count;
+            }
+        } finally {
+            service.dispose();
+        }
+        return rows;
+    }
+}
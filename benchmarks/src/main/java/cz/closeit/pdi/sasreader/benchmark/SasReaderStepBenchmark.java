@@ -0,0 +1,117 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.benchmark;
+
+import cz.closeit.pdi.sasreader.SasReaderStep;
+import cz.closeit.pdi.sasreader.SasReaderStepData;
+import cz.closeit.pdi.sasreader.SasReaderStepMeta;
+import cz.closeit.pdi.sasreader.parso.ParsoService;
+import cz.closeit.pdi.sasreader.parso.SasFileGenerator.Compression;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.QueueRowSet;
+import org.pentaho.di.core.RowSet;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.StepMeta;
+
+/**
+ * End-to-end run of SasReaderStep: processRow is called until the whole file
+ * is read and output rows are taken from an in-memory row set. One operation
+ * is one complete file, see BenchmarkFile for number of rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SasReaderStepBenchmark {
+
+    private static final String STEP_NAME = "SAS Reader";
+
+    @Param({"NarrowNumeric", "NarrowString", "WideNumeric", "WideString"})
+    public BenchmarkFile shape;
+
+    @Param({"None", "Char", "Binary"})
+    public Compression compression;
+
+    @Param({"0", "256"})
+    public int readAheadRows;
+
+    private SasReaderStepMeta stepMeta;
+    private StepMeta stepMetaWrapper;
+    private TransMeta transMeta;
+
+    @Setup
+    public void setup() throws Exception {
+        KettleEnvironment.init(false);
+        File file = shape.get(compression);
+
+        stepMeta = new SasReaderStepMeta();
+        stepMeta.setDefault();
+        stepMeta.setFileName(file.getAbsolutePath());
+        stepMeta.setReadAheadRows(readAheadRows);
+        ParsoService.getFieldsFromFile(file, stepMeta, false);
+
+        transMeta = new TransMeta();
+        stepMetaWrapper = new StepMeta(STEP_NAME, stepMeta);
+        transMeta.addStep(stepMetaWrapper);
+    }
+
+    @Benchmark
+    public long processRow(Blackhole blackhole) throws Exception {
+        Trans trans = new Trans(transMeta);
+        SasReaderStepData stepData = new SasReaderStepData();
+        SasReaderStep step = new SasReaderStep(stepMetaWrapper, stepData, 0, transMeta, trans);
+        RowSet rowSet = new QueueRowSet();
+        step.getOutputRowSets().add(rowSet);
+        if (!step.init(stepMeta, stepData)) {
+            throw new IllegalStateException("Step initialization failed");
+        }
+
+        long rows = 0;
+        try {
+            boolean more;
+            do {
+                more = step.processRow(stepMeta, stepData);
+                Object[] row;
+                while ((row = rowSet.getRow()) != null) {
+                    blackhole.consume(row);
+                    rows++;
+                }
+            } while (more);
+        } finally {
+            step.dispose(stepMeta, stepData);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.i18n.BaseMessages;
+
+import cz.closeit.pdi.sasreader.input.RowConverter;
+import cz.closeit.pdi.sasreader.input.RowFilter;
+import cz.closeit.pdi.sasreader.input.SasInputField;
+import cz.closeit.pdi.sasreader.parso.ParsoService;
+import cz.closeit.pdi.sasreader.parso.SasReadStatistics;
+import cz.closeit.pdi.sasreader.parso.SasSidecarCache;
+
+/**
+ * Sas file opened for reading with the mapping of its columns to input
+ * fields. Every file may have different order of columns, so input fields
+ * are copied and their original ids are set for the file.
+ */
+public class OpenedSasFile {
+
+    private static final Class<?> PKG = SasReaderStepMeta.PKG;
+
+    private final File file;
+    private final ParsoService parsoService;
+    private final List<SasInputField> inputFields;
+    private final RowConverter rowConverter;
+    private final RowFilter rowFilter;
+
+    private OpenedSasFile(File file, ParsoService parsoService, List<SasInputField> inputFields,
+            RowConverter rowConverter, RowFilter rowFilter) {
+        this.file = file;
+        this.parsoService = parsoService;
+        this.inputFields = inputFields;
+        this.rowConverter = rowConverter;
+        this.rowFilter = rowFilter;
+    }
+
+    /**
+     * Open the file, read its header and check presence of columns. If only
+     * a range of rows should be read, the reading is moved to the range.
+     *
+     * @param stepMeta meta with input fields
+     * @param file file to open
+     * @param statistics statistics of reading, may be null
+     * @param binaryEncoding encoding of fields emitted as binary strings (lazy
+     * conversion), null if lazy conversion isn't used
+     * @param sidecarCache cache of columnar copies of files, may be null
+     * @param log log of the step
+     * @return opened file
+     * @throws KettleException if the file can't be read or some column is
+     * missing
+     */
+    public static OpenedSasFile open(SasReaderStepMeta stepMeta, File file, SasReadStatistics statistics, String binaryEncoding,
+            SasSidecarCache sidecarCache, LogChannelInterface log) throws KettleException {
+        ParsoService parsoService = null;
+        try {
+            parsoService = new ParsoService(file, binaryEncoding != null);
+            parsoService.setDecompressorType(stepMeta.getDecompressor());
+            parsoService.setSidecarCache(sidecarCache);
+            if (statistics != null) {
+                statistics.addFile();
+                parsoService.setStatistics(statistics);
+            }
+            List<SasInputField> inputFields = new ArrayList<>();
+            for (SasInputField inputField : stepMeta.getInputFields()) {
+                inputFields.add(new SasInputField(inputField));
+            }
+            stepMeta.checkColumnPresence(inputFields, null, null, parsoService);
+            if (stepMeta.hasRowRange()) {
+                parsoService.readRowRange(stepMeta.getRowOffset(), stepMeta.getRowLimit());
+            }
+            //the filter adds its columns to the projection of input fields
+            RowConverter rowConverter = new RowConverter(inputFields, parsoService, binaryEncoding, stepMeta.getDateUnit());
+            RowFilter rowFilter = RowFilter.create(stepMeta.getFilterConditions(), parsoService);
+            OpenedSasFile openedFile = new OpenedSasFile(file, parsoService, inputFields, rowConverter, rowFilter);
+            parsoService = null;
+            return openedFile;
+        } catch (IOException | KettleException ex) {
+            throw new KettleException(BaseMessages.getString(PKG, "Error.InFile").replace("$file", file.getPath()), ex);
+        } finally {
+            if (parsoService != null) {
+                try {
+                    parsoService.dispose();
+                } catch (IOException ex) {
+                    log.logError(BaseMessages.getString(PKG, "Error.CloseFile").replace("$file", file.getPath())
+                            .replace("$error", String.valueOf(ex.getMessage())), ex);
+                }
+            }
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public ParsoService getParsoService() {
+        return parsoService;
+    }
+
+    public List<SasInputField> getInputFields() {
+        return inputFields;
+    }
+
+    public RowConverter getRowConverter() {
+        return rowConverter;
+    }
+
+    /**
+     * @return filter of rows or null if all rows are read
+     */
+    public RowFilter getRowFilter() {
+        return rowFilter;
+    }
+
+    /**
+     * Close the file, failures of conversions are added to statistics of
+     * reading.
+     *
+     * @throws IOException
+     */
+    public void dispose() throws IOException {
+        if (parsoService.getStatistics() != null) {
+            parsoService.getStatistics().addConversionFailures(rowConverter.getConversionFailures());
+        }
+        parsoService.dispose();
+    }
+}
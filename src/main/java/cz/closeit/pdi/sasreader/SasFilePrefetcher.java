@@ -0,0 +1,131 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+
+import cz.closeit.pdi.sasreader.parso.SasReadStatistics;
+import cz.closeit.pdi.sasreader.parso.SasSidecarCache;
+
+/**
+ * Opens the next sas file in a background thread while rows of the current
+ * file are emitted, so opening of the file and parsing of its header doesn't
+ * delay the step. Only one file is opened in advance.
+ */
+public class SasFilePrefetcher {
+
+    private final SasReaderStepMeta stepMeta;
+    private final SasReadStatistics statistics;
+    private final String binaryEncoding;
+    private final SasSidecarCache sidecarCache;
+    private final LogChannelInterface log;
+    private final ExecutorService executor;
+    private Future<OpenedSasFile> next = null;
+
+    /**
+     * @param stepMeta meta with input fields
+     * @param threadName name of the opening thread
+     * @param statistics statistics of reading, may be null
+     * @param binaryEncoding encoding of fields emitted as binary strings, null
+     * if lazy conversion isn't used
+     * @param sidecarCache cache of columnar copies of files, may be null
+     * @param log log of the step
+     */
+    public SasFilePrefetcher(SasReaderStepMeta stepMeta, final String threadName, SasReadStatistics statistics, String binaryEncoding,
+            SasSidecarCache sidecarCache, LogChannelInterface log) {
+        this.stepMeta = stepMeta;
+        this.statistics = statistics;
+        this.binaryEncoding = binaryEncoding;
+        this.sidecarCache = sidecarCache;
+        this.log = log;
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Start opening of the file, previously prefetched file has to be taken
+     * first.
+     *
+     * @param file file to open
+     */
+    public void prefetch(final File file) {
+        if (next != null) {
+            throw new IllegalStateException("Previous file wasn't taken");
+        }
+        next = executor.submit(new Callable<OpenedSasFile>() {
+            @Override
+            public OpenedSasFile call() throws Exception {
+                return OpenedSasFile.open(stepMeta, file, statistics, binaryEncoding, sidecarCache, log);
+            }
+        });
+    }
+
+    /**
+     * Get the prefetched file, wait for its opening if necessary.
+     *
+     * @return opened file or null if no file is prefetched
+     * @throws KettleException if the file couldn't be opened
+     */
+    public OpenedSasFile takeNext() throws KettleException {
+        if (next == null) {
+            return null;
+        }
+        Future<OpenedSasFile> future = next;
+        next = null;
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new KettleException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof KettleException) {
+                throw (KettleException) ex.getCause();
+            }
+            throw new KettleException(ex.getCause());
+        }
+    }
+
+    /**
+     * Stop the opening thread and close the prefetched file.
+     */
+    public void stop() {
+        executor.shutdown();
+        try {
+            OpenedSasFile openedFile = takeNext();
+            if (openedFile != null) {
+                openedFile.dispose();
+            }
+        } catch (KettleException | IOException ex) {
+            // the file isn't used anymore
+        }
+    }
+}
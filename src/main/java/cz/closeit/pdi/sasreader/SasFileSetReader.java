@@ -0,0 +1,302 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.core.row.RowDataUtil;
+
+import cz.closeit.pdi.sasreader.input.RowConverter;
+import cz.closeit.pdi.sasreader.input.RowFilter;
+import cz.closeit.pdi.sasreader.parso.ParsoService;
+import cz.closeit.pdi.sasreader.parso.SasColumnBatch;
+import cz.closeit.pdi.sasreader.parso.SasPageDecoder;
+import cz.closeit.pdi.sasreader.parso.SasReadStatistics;
+import cz.closeit.pdi.sasreader.parso.SasSidecarCache;
+
+/**
+ * Reads more sas files at once on a pool of threads. Every file has its own
+ * ParsoService and its own mapping of columns, rows are converted to output
+ * rows by the reading threads and passed to the step in batches through a
+ * bounded queue. Rows of different files are interleaved.
+ */
+public class SasFileSetReader {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int QUEUED_BATCHES_PER_THREAD = 4;
+
+    // marks the end of all files in the queue
+    private static final Object[][] END = new Object[0][];
+
+    private final SasReaderStepMeta stepMeta;
+    private final List<File> files;
+    private final int outputSize;
+    private final boolean addFilename;
+    private final ExecutorService executor;
+    private final BlockingQueue<Object[][]> queue;
+    private final AtomicInteger runningFiles;
+    private final SasReadStatistics statistics;
+    private final String binaryEncoding;
+    private final SasSidecarCache sidecarCache;
+    private final LogChannelInterface log;
+
+    private volatile Exception error = null;
+    private volatile boolean stopped = false;
+    private boolean finished = false;
+
+    /**
+     * @param stepMeta meta with input fields
+     * @param files files to read
+     * @param threads number of reading threads
+     * @param outputSize size of output row
+     * @param threadName prefix of names of reading threads
+     * @param statistics statistics of reading, may be null
+     * @param binaryEncoding encoding of fields emitted as binary strings, null
+     * if lazy conversion isn't used
+     * @param sidecarCache cache of columnar copies of files, may be null
+     * @param log log of the step
+     */
+    public SasFileSetReader(SasReaderStepMeta stepMeta, List<File> files, int threads, int outputSize, final String threadName,
+            SasReadStatistics statistics, String binaryEncoding, SasSidecarCache sidecarCache, LogChannelInterface log) {
+        this.stepMeta = stepMeta;
+        this.statistics = statistics;
+        this.binaryEncoding = binaryEncoding;
+        this.sidecarCache = sidecarCache;
+        this.log = log;
+        this.files = files;
+        this.outputSize = outputSize;
+        this.addFilename = !stepMeta.getFilenameField().isEmpty();
+        this.runningFiles = new AtomicInteger(files.size());
+
+        int poolSize = Math.max(1, Math.min(threads, files.size()));
+        this.queue = new ArrayBlockingQueue<>(poolSize * QUEUED_BATCHES_PER_THREAD + 1);
+        this.executor = Executors.newFixedThreadPool(poolSize, new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, threadName + " " + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Start reading of all files.
+     */
+    public void start() {
+        if (files.isEmpty()) {
+            queue.add(END);
+            return;
+        }
+        for (final File file : files) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (!stopped) {
+                            readFile(file);
+                        }
+                    } catch (Exception ex) {
+                        if (error == null) {
+                            error = ex;
+                        }
+                        stopped = true;
+                        queue.clear();
+                        queue.offer(END);
+                    } finally {
+                        if (runningFiles.decrementAndGet() == 0) {
+                            try {
+                                queue.put(END);
+                            } catch (InterruptedException ex) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+    }
+
+    private void readFile(File file) throws Exception {
+        OpenedSasFile openedFile = OpenedSasFile.open(stepMeta, file, statistics, binaryEncoding, sidecarCache, log);
+        try {
+            ParsoService parsoService = openedFile.getParsoService();
+            RowConverter rowConverter = openedFile.getRowConverter();
+            RowFilter rowFilter = openedFile.getRowFilter();
+            int filenameIndex = openedFile.getInputFields().size();
+            String filename = file.getAbsolutePath();
+
+            SasColumnBatch columnBatch = rowFilter == null ? parsoService.openColumnBatch(BATCH_SIZE) : null;
+            if (columnBatch != null) {
+                readColumnBatches(parsoService, columnBatch, rowConverter, filenameIndex, filename);
+                return;
+            }
+            SasPageDecoder pageDecoder = parsoService.openDecoder();
+            if (pageDecoder != null) {
+                readDecodedRows(pageDecoder, rowConverter, rowFilter, filenameIndex, filename);
+                return;
+            }
+
+            Object[][] rowBuffer = new Object[BATCH_SIZE][];
+            int rowCount;
+            while (!stopped && (rowCount = parsoService.getNextRows(rowBuffer)) > 0) {
+                //rejected rows aren't converted at all
+                long start = System.nanoTime();
+                int accepted = rowFilter == null ? rowCount : rowFilter.acceptAll(rowBuffer, rowCount);
+                long filtered = System.nanoTime();
+
+                Object[][] batch = new Object[accepted][];
+                for (int i = 0; i < accepted; i++) {
+                    Object[] rowValues = RowDataUtil.allocateRowData(outputSize);
+                    rowConverter.convert(rowBuffer[i], rowValues);
+                    rowBuffer[i] = null;
+                    if (addFilename) {
+                        rowValues[filenameIndex] = filename;
+                    }
+                    batch[i] = rowValues;
+                }
+                if (statistics != null) {
+                    statistics.addFiltered(rowCount - accepted, filtered - start);
+                    statistics.addConversion(System.nanoTime() - filtered);
+                }
+                if (accepted > 0) {
+                    queue.put(batch);
+                }
+            }
+        } finally {
+            openedFile.dispose();
+        }
+    }
+
+    /**
+     * Read rows decoded into column vectors and build output rows from them.
+     */
+    private void readColumnBatches(ParsoService parsoService, SasColumnBatch columnBatch, RowConverter rowConverter,
+            int filenameIndex, String filename) throws IOException, InterruptedException {
+        int rowCount;
+        while (!stopped && (rowCount = parsoService.getNextBatch(columnBatch)) > 0) {
+            long start = System.nanoTime();
+            Object[][] batch = new Object[rowCount][];
+            for (int i = 0; i < rowCount; i++) {
+                Object[] rowValues = RowDataUtil.allocateRowData(outputSize);
+                rowConverter.convert(columnBatch, i, rowValues);
+                if (addFilename) {
+                    rowValues[filenameIndex] = filename;
+                }
+                batch[i] = rowValues;
+            }
+            if (statistics != null) {
+                statistics.addConversion(System.nanoTime() - start);
+            }
+            queue.put(batch);
+        }
+    }
+
+    /**
+     * Read rows by the page decoder, they are filtered and converted as they
+     * are decoded.
+     */
+    private void readDecodedRows(SasPageDecoder pageDecoder, RowConverter rowConverter, RowFilter rowFilter,
+            int filenameIndex, String filename) throws IOException, InterruptedException {
+        Object[][] rowBuffer = new Object[BATCH_SIZE][];
+        while (!stopped) {
+            long start = System.nanoTime();
+            int rowCount = 0;
+            int accepted = 0;
+            while (rowCount < BATCH_SIZE && pageDecoder.next()) {
+                rowCount++;
+                if (rowFilter == null || rowFilter.accept(pageDecoder)) {
+                    Object[] rowValues = RowDataUtil.allocateRowData(outputSize);
+                    rowConverter.convert(pageDecoder, rowValues);
+                    if (addFilename) {
+                        rowValues[filenameIndex] = filename;
+                    }
+                    rowBuffer[accepted++] = rowValues;
+                }
+            }
+            if (statistics != null) {
+                statistics.addRowsRead(rowCount);
+                statistics.addDecode(System.nanoTime() - start);
+                statistics.addFiltered(rowCount - accepted, 0);
+            }
+            if (rowCount == 0) {
+                return;
+            }
+            if (accepted > 0) {
+                queue.put(Arrays.copyOf(rowBuffer, accepted));
+            }
+        }
+    }
+
+    /**
+     * Get next batch of output rows, wait for reading threads if necessary.
+     *
+     * @return batch of rows or null if all files were read
+     * @throws KettleException if reading of some file failed
+     */
+    public Object[][] getNextBatch() throws KettleException {
+        if (finished) {
+            return null;
+        }
+        Object[][] batch;
+        try {
+            batch = queue.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new KettleException(ex);
+        }
+        if (batch == END) {
+            finished = true;
+            if (error != null) {
+                if (error instanceof KettleException) {
+                    throw (KettleException) error;
+                }
+                throw new KettleException(error);
+            }
+            return null;
+        }
+        return batch;
+    }
+
+    /**
+     * Stop all reading threads and wait for their end.
+     */
+    public void stop() {
+        stopped = true;
+        executor.shutdownNow();
+        queue.clear();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -16,13 +16,15 @@
 package cz.closeit.pdi.sasreader;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import org.apache.commons.io.FilenameUtils;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.JMException;
 
 import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.i18n.BaseMessages;
@@ -34,13 +36,18 @@ import org.pentaho.di.trans.step.StepInterface;
 import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaInterface;
 
-import cz.closeit.pdi.sasreader.input.SasInputField;
+import cz.closeit.pdi.sasreader.input.RowConverter;
+import cz.closeit.pdi.sasreader.input.RowFilter;
+import cz.closeit.pdi.sasreader.input.SasMetadataField;
 import cz.closeit.pdi.sasreader.parso.ParsoService;
-import java.util.ArrayList;
+import cz.closeit.pdi.sasreader.parso.SasColumnBatch;
+import cz.closeit.pdi.sasreader.parso.SasPageDecoder;
+import cz.closeit.pdi.sasreader.parso.SasReadStatistics;
 
 public class SasReaderStep extends BaseStep implements StepInterface {
 
     private static final Class<?> PKG = SasReaderStepMeta.PKG;
+    private static final int ROW_BATCH_SIZE = 1000;
 
     //NO FIELDS HERE PLEASE
     public SasReaderStep(StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta, Trans trans) {
@@ -50,15 +57,31 @@ public class SasReaderStep extends BaseStep implements StepInterface {
     @Override
     public void dispose(StepMetaInterface smi, StepDataInterface sdi) {
         SasReaderStepData stepData = (SasReaderStepData) sdi;
-        try {
-            if (stepData.parsoService != null) {
-                stepData.parsoService.dispose();
-            }
-        } catch (IOException ex) {
-            //TODO - better error handling
+        if (stepData.parsoService != null) {
+            closeCurrentFile(stepData);
+        }
+        if (stepData.fileSetReader != null) {
+            stepData.fileSetReader.stop();
+        }
+        if (stepData.filePrefetcher != null) {
+            stepData.filePrefetcher.stop();
+        }
+        if (stepData.statistics != null) {
+            logStatistics(stepData.statistics);
+            stepData.statistics.unregister();
         }
         stepData.parsoService = null;
+        stepData.pageDecoder = null;
+        stepData.columnBatch = null;
+        stepData.fileSetReader = null;
+        stepData.filePrefetcher = null;
         stepData.outputRowMeta = null;
+        stepData.rowConverter = null;
+        stepData.rowFilter = null;
+        stepData.filename = null;
+        stepData.rowBuffer = null;
+        stepData.statistics = null;
+        stepData.metadataFiles = null;
         super.dispose(smi, sdi);
     }
 
@@ -70,88 +93,503 @@ public class SasReaderStep extends BaseStep implements StepInterface {
         if (first) {
             first = false;
 
-            if (stepMeta.getFileName().isEmpty()) {
+            //with file names from input the file name is used only by Get fields
+            if (stepMeta.getFileName().isEmpty() && !stepMeta.isAcceptFilenames()) {
                 throw new KettleException(BaseMessages.getString(PKG, "Error.NoFilename"));
             }
 
-            String filename = environmentSubstitute(stepMeta.getFileName());
-            filename = FilenameUtils.normalize(filename).replace("file:", "");
-            File sasFile = new File(filename);
+            stepData.statistics = new SasReadStatistics();
+            try {
+                stepData.statistics.register(getTransMeta().getName(), getStepname(), getCopy());
+            } catch (JMException ex) {
+                logDetailed(BaseMessages.getString(PKG, "Log.StatisticsNotRegistered").replace("$error", ex.getMessage()));
+            }
+
+            stepData.sidecarCache = stepMeta.createSidecarCache(this);
+
+            stepData.outputRowMeta = new RowMeta();
+            //set the description of output rows based on input
+            stepMeta.getFields(stepData.outputRowMeta, getStepname(), null, null, this, null, null); //set meta of output
+
+            if (stepMeta.isMetadataOnly()) {
+                //only headers are read, file names come from input or from the file name and mask
+                if (!stepMeta.isAcceptFilenames()) {
+                    List<File> files = stepMeta.resolveFiles(this);
+                    if (files.isEmpty()) {
+                        throw new KettleException(BaseMessages.getString(PKG, "Error.NoFilesFound"));
+                    }
+                    stepData.metadataFiles = selectCopyFiles(stepMeta, files);
+                }
+                return processMetadataRow(stepMeta, stepData);
+            }
+
+            if (stepMeta.isAcceptFilenames()) {
+                //files are opened one by one as their names come from input
+                stepData.rowBuffer = new Object[ROW_BATCH_SIZE][];
+                File sasFile = getNextInputFile(stepMeta, stepData);
+                String binaryEncoding = sasFile == null ? null : getBinaryEncoding(stepMeta, stepData, sasFile);
+                stepData.filePrefetcher = new SasFilePrefetcher(stepMeta, getStepname() + " file opener " + getCopy(),
+                        stepData.statistics, binaryEncoding, stepData.sidecarCache, getLogChannel());
+                if (sasFile != null) {
+                    stepData.filePrefetcher.prefetch(sasFile);
+                }
+                return true;
+            }
+
+            List<File> files = stepMeta.resolveFiles(this);
+            if (files.isEmpty()) {
+                throw new KettleException(BaseMessages.getString(PKG, "Error.NoFilesFound"));
+            }
+            if (!stepMeta.getFileMask().isEmpty()) {
+                files = selectCopyFiles(stepMeta, files);
+                if (isDetailed()) {
+                    logDetailed(BaseMessages.getString(PKG, "Log.FilesFound").replace("$files", String.valueOf(files.size())));
+                }
+                String binaryEncoding = files.isEmpty() ? null : getBinaryEncoding(stepMeta, stepData, files.get(0));
+                stepData.fileSetReader = new SasFileSetReader(stepMeta, files, stepMeta.getReaderThreads(),
+                        stepData.outputRowMeta.size(), getStepname() + " reader " + getCopy(), stepData.statistics, binaryEncoding,
+                        stepData.sidecarCache, getLogChannel());
+                stepData.fileSetReader.start();
+                return true;
+            }
+
+            File sasFile = files.get(0);
             if (!sasFile.exists() || !sasFile.canRead()) {
                 throw new KettleException(BaseMessages.getString(PKG, "Error.CantRead"));
             }
-            InputStream stream = null;
             try {
-                stream = new FileInputStream(sasFile);
+                stepData.parsoService = new ParsoService(sasFile, stepMeta.isLazyConversion());
+                stepData.parsoService.setStatistics(stepData.statistics);
+                stepData.parsoService.setDecompressorType(stepMeta.getDecompressor());
+                stepData.parsoService.setSidecarCache(stepData.sidecarCache);
+                stepData.statistics.addFile();
             } catch (FileNotFoundException ex) {
                 throw new KettleException(BaseMessages.getString(PKG, "Error.FileNotFound"));
+            } catch (IOException ex) {
+                throw new KettleException(BaseMessages.getString(PKG, "Error.CantRead"), ex);
             }
 
-            stepData.parsoService = new ParsoService(stream);
-
             //check if names of defined columns are in sas file
             stepMeta.checkColumnPresence(null, null, stepData.parsoService);
 
-            stepData.outputRowMeta = new RowMeta();
-            //set the description of output rows based on input
-            stepMeta.getFields(stepData.outputRowMeta, getStepname(), null, null, this, null, null); //set meta of output
+            //decode only columns used by input fields and choose their conversions
+            String binaryEncoding = null;
+            if (stepMeta.isLazyConversion()) {
+                binaryEncoding = stepData.parsoService.getEncoding();
+                SasReaderStepMeta.setBinaryStringEncoding(stepData.outputRowMeta, binaryEncoding);
+            }
+            stepData.rowConverter = new RowConverter(stepMeta.getInputFields(), stepData.parsoService, binaryEncoding, stepMeta.getDateUnit());
+            //rows are filtered before conversion, columns of conditions are added to the projection
+            stepData.rowFilter = RowFilter.create(stepMeta.getFilterConditions(), stepData.parsoService);
+            if (!stepMeta.getFilenameField().isEmpty()) {
+                stepData.filename = sasFile.getAbsolutePath();
+            }
+
+            //every copy of partitioned step reads its own part of data pages
+            int copies = getStepMeta().getCopies();
+            if (stepMeta.hasRowRange()) {
+                //only pages with the requested rows are read, the range isn't split between copies
+                if (stepMeta.isPartitioned() && copies > 1 && getCopy() > 0) {
+                    setOutputDone();
+                    return false;
+                }
+                try {
+                    stepData.parsoService.readRowRange(stepMeta.getRowOffset(), stepMeta.getRowLimit());
+                } catch (IOException ex) {
+                    throw new KettleException(BaseMessages.getString(PKG, "Error.CantRead"), ex);
+                }
+            } else if (stepMeta.isPartitioned() && copies > 1) {
+                long firstPage = stepData.parsoService.getFirstDataPage();
+                long dataPages = stepData.parsoService.getPageCount() - firstPage;
+                long fromPage = firstPage + dataPages * getCopy() / copies;
+                long toPage = firstPage + dataPages * (getCopy() + 1) / copies;
+                if (isDetailed()) {
+                    logDetailed(BaseMessages.getString(PKG, "Log.PageRange")
+                            .replace("$from", String.valueOf(fromPage))
+                            .replace("$to", String.valueOf(toPage))
+                            .replace("$pages", String.valueOf(stepData.parsoService.getPageCount())));
+                }
+                try {
+                    stepData.parsoService.readPageRange(fromPage, toPage);
+                } catch (IOException ex) {
+                    throw new KettleException(BaseMessages.getString(PKG, "Error.CantRead"), ex);
+                }
+            }
+
+            startReading(stepMeta, stepData);
+            stepData.rowBuffer = new Object[ROW_BATCH_SIZE][];
         }
 
-        Object[] rowFileValues;
+        if (stepMeta.isMetadataOnly()) {
+            return processMetadataRow(stepMeta, stepData);
+        }
+        if (stepData.fileSetReader != null) {
+            return processFileSetBatch(stepData);
+        }
+        if (stepData.filePrefetcher != null && stepData.parsoService == null && !openNextFile(stepMeta, stepData)) {
+            setOutputDone();
+            return false;
+        }
+
+        if (stepData.columnBatch != null) {
+            return processColumnBatch(stepData);
+        }
+        if (stepData.pageDecoder != null) {
+            return processDecodedBatch(stepData);
+        }
+
+        long start = System.nanoTime();
+        int rowCount;
         try {
-            rowFileValues = stepData.parsoService.getNextRow();
+            rowCount = stepData.parsoService.getNextRows(stepData.rowBuffer);
         } catch (IOException ex) {
             setErrors(1);
-            rowFileValues = null;
+            rowCount = 0;
+        }
+        long read = System.nanoTime();
+        stepData.statistics.addWait(read - start);
+        setLinesInput(stepData.statistics.getRowsRead());
+        if (rowCount == 0) {
+            return finishCurrentFile(stepData);
         }
-        if (rowFileValues == null) {
+
+        //rejected rows aren't converted at all
+        int accepted = stepData.rowFilter == null ? rowCount : stepData.rowFilter.acceptAll(stepData.rowBuffer, rowCount);
+        long filtered = System.nanoTime();
+        for (int i = 0; i < accepted; i++) {
+            stepData.rowBuffer[i] = convertRow(stepData, stepData.rowBuffer[i]);
+        }
+        long converted = System.nanoTime();
+        stepData.statistics.addFiltered(rowCount - accepted, filtered - read);
+        stepData.statistics.addConversion(converted - filtered);
+        putBatch(stepData, accepted);
+        return true;
+    }
+
+    /**
+     * Emit one row with metadata of the next file. Only the header of the
+     * file is read (or taken from the metadata cache), rows aren't decoded.
+     */
+    private boolean processMetadataRow(SasReaderStepMeta stepMeta, SasReaderStepData stepData) throws KettleException {
+        File sasFile;
+        if (stepMeta.isAcceptFilenames()) {
+            sasFile = getNextInputFile(stepMeta, stepData);
+        } else if (stepData.nextMetadataFile < stepData.metadataFiles.size()) {
+            sasFile = stepData.metadataFiles.get(stepData.nextMetadataFile++);
+        } else {
+            sasFile = null;
+        }
+        if (sasFile == null) {
             setOutputDone();
             return false;
         }
 
-        Object[] rowValues = RowDataUtil.allocateRowData(stepData.outputRowMeta.size());
+        Object[] rowValues;
+        try {
+            ParsoService parsoService = new ParsoService(sasFile);
+            parsoService.setStatistics(stepData.statistics);
+            try {
+                rowValues = SasMetadataField.getValues(sasFile, parsoService, stepData.outputRowMeta.size());
+            } finally {
+                parsoService.dispose();
+            }
+        } catch (IOException ex) {
+            throw new KettleException(BaseMessages.getString(PKG, "Error.InFile").replace("$file", sasFile.getPath()), ex);
+        }
+        stepData.statistics.addFile();
+        setLinesInput(stepData.statistics.getFiles());
+        long start = System.nanoTime();
+        putRow(stepData.outputRowMeta, rowValues);
+        stepData.statistics.addWritten(1, System.nanoTime() - start);
+        return true;
+    }
 
-        int outputIndex = 0;
-        for (SasInputField inputField : stepMeta.getInputFields()) {
+    /**
+     * Select files read by this copy, every copy of partitioned step reads
+     * its own files.
+     */
+    private List<File> selectCopyFiles(SasReaderStepMeta stepMeta, List<File> files) {
+        int copies = getStepMeta().getCopies();
+        if (!stepMeta.isPartitioned() || copies <= 1) {
+            return files;
+        }
+        List<File> copyFiles = new ArrayList<>();
+        for (int i = getCopy(); i < files.size(); i += copies) {
+            copyFiles.add(files.get(i));
+        }
+        return copyFiles;
+    }
 
-            int originalIndex = inputField.getOriginalId();
-            
-            //The Id starts from 1 not 0 so we need to check against the length
-            if (originalIndex > rowFileValues.length) {
-                throw new IndexOutOfBoundsException(BaseMessages.getString(PKG, "Error.IndexOOB").replaceFirst("$name", inputField.getSasName()));
-            }
-            else if (inputField.getOptional() && originalIndex == -1) {
-                rowValues[outputIndex] = null;
-                outputIndex++;
-                continue;
+    /**
+     * Read the next batch of rows by the page decoder. Rows are filtered and
+     * converted as they are decoded, so only the output rows are allocated.
+     */
+    private boolean processDecodedBatch(SasReaderStepData stepData) throws KettleException {
+        long start = System.nanoTime();
+        SasPageDecoder pageDecoder = stepData.pageDecoder;
+        int rowCount = 0;
+        int accepted = 0;
+        try {
+            while (rowCount < stepData.rowBuffer.length && pageDecoder.next()) {
+                rowCount++;
+                if (stepData.rowFilter == null || stepData.rowFilter.accept(pageDecoder)) {
+                    Object[] rowValues = allocateOutputRow(stepData);
+                    stepData.rowConverter.convert(pageDecoder, rowValues);
+                    stepData.rowBuffer[accepted++] = rowValues;
+                }
             }
+        } catch (IOException ex) {
+            setErrors(1);
+            rowCount = 0;
+        }
+        stepData.statistics.addRowsRead(rowCount);
+        stepData.statistics.addDecode(System.nanoTime() - start);
+        setLinesInput(stepData.statistics.getRowsRead());
+        if (rowCount == 0) {
+            return finishCurrentFile(stepData);
+        }
+        stepData.statistics.addFiltered(rowCount - accepted, 0);
+        putBatch(stepData, accepted);
+        return true;
+    }
+
+    /**
+     * Decode the next batch of rows into column vectors and build output rows
+     * from them.
+     */
+    private boolean processColumnBatch(SasReaderStepData stepData) throws KettleException {
+        long start = System.nanoTime();
+        SasColumnBatch columnBatch = stepData.columnBatch;
+        int rowCount;
+        try {
+            rowCount = stepData.parsoService.getNextBatch(columnBatch);
+        } catch (IOException ex) {
+            setErrors(1);
+            rowCount = 0;
+        }
+        long read = System.nanoTime();
+        stepData.statistics.addWait(read - start);
+        setLinesInput(stepData.statistics.getRowsRead());
+        if (rowCount == 0) {
+            return finishCurrentFile(stepData);
+        }
+        for (int i = 0; i < rowCount; i++) {
+            Object[] rowValues = allocateOutputRow(stepData);
+            stepData.rowConverter.convert(columnBatch, i, rowValues);
+            stepData.rowBuffer[i] = rowValues;
+        }
+        stepData.statistics.addConversion(System.nanoTime() - read);
+        putBatch(stepData, rowCount);
+        return true;
+    }
 
+    /**
+     * Emit the whole batch, the step may be stopped in the middle (e.g.
+     * preview).
+     */
+    private void putBatch(SasReaderStepData stepData, int accepted) throws KettleStepException {
+        long start = System.nanoTime();
 
-            Object objectFromSasFile = rowFileValues[originalIndex - 1];
+        int written = 0;
+        for (; written < accepted && !isStopped(); written++) {
+            putRow(stepData.outputRowMeta, stepData.rowBuffer[written]);
+            stepData.rowBuffer[written] = null;
+        }
+        stepData.statistics.addWritten(written, System.nanoTime() - start);
+    }
 
-            if (objectFromSasFile == null) {
-                rowValues[outputIndex] = null;
-            } else if (inputField.getKettleType().needConversion(objectFromSasFile)) {
-                try {
-                    rowValues[outputIndex] = inputField.getKettleType().convert(objectFromSasFile);
-                } catch (ClassCastException e) {
-                    String msg = String.format("Converting attribute %s - %s(%s) -> %s(%s) failed [%s]",
-                            inputField.getSasName(),
-                            inputField.getOriginalId(),
-                            objectFromSasFile.getClass().getName(),
-                            inputField.getName(),
-                            inputField.getKettleType(),
-                            e.getMessage());
-                    throw new ClassCastException(msg);
+    /**
+     * All rows of the current file were read, continue with the next accepted
+     * file or finish.
+     */
+    private boolean finishCurrentFile(SasReaderStepData stepData) {
+        if (stepData.filePrefetcher != null) {
+            closeCurrentFile(stepData);
+            return true;
+        }
+        setOutputDone();
+        return false;
+    }
+
+    /**
+     * Get the name of next file to read from input rows, rows without file
+     * name are skipped.
+     *
+     * @return file or null if there isn't any other input row
+     */
+    private File getNextInputFile(SasReaderStepMeta stepMeta, SasReaderStepData stepData) throws KettleException {
+        Object[] row;
+        while ((row = getRow()) != null) {
+            if (stepData.acceptingFieldIndex < 0) {
+                stepData.acceptingFieldIndex = getInputRowMeta().indexOfValue(stepMeta.getAcceptingField());
+                if (stepData.acceptingFieldIndex < 0) {
+                    throw new KettleException(BaseMessages.getString(PKG, "Error.NoAcceptingField")
+                            .replace("$name", stepMeta.getAcceptingField()));
                 }
+            }
+            String filename = getInputRowMeta().getString(row, stepData.acceptingFieldIndex);
+            if (filename != null && !filename.isEmpty()) {
+                return SasReaderStepMeta.toLocalFile(environmentSubstitute(filename));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Take the prefetched file as the current one and start opening of the
+     * following file.
+     *
+     * @return false if there isn't any other file
+     */
+    private boolean openNextFile(SasReaderStepMeta stepMeta, SasReaderStepData stepData) throws KettleException {
+        OpenedSasFile openedFile = stepData.filePrefetcher.takeNext();
+        if (openedFile == null) {
+            return false;
+        }
+        File nextFile = getNextInputFile(stepMeta, stepData);
+        if (nextFile != null) {
+            stepData.filePrefetcher.prefetch(nextFile);
+        }
+
+        if (isDetailed()) {
+            logDetailed(BaseMessages.getString(PKG, "Log.ReadingFile").replace("$file", openedFile.getFile().getPath()));
+        }
+        stepData.parsoService = openedFile.getParsoService();
+        stepData.rowConverter = openedFile.getRowConverter();
+        stepData.rowFilter = openedFile.getRowFilter();
+        stepData.filename = stepMeta.getFilenameField().isEmpty() ? null : openedFile.getFile().getAbsolutePath();
+        startReading(stepMeta, stepData);
+        return true;
+    }
+
+    /**
+     * Start parallel decompression of a compressed file or reading ahead of
+     * rows of the current file if they are enabled, otherwise rows of
+     * uncompressed files are decoded directly from pages.
+     * Without filter they are decoded into column vectors, filtered rows are
+     * decoded one by one, so columns of rejected rows aren't decoded at all.
+     */
+    private void startReading(SasReaderStepMeta stepMeta, SasReaderStepData stepData) throws KettleException {
+        try {
+            if (stepMeta.getDecompressionThreads() > 1 && stepData.parsoService.startParallelDecoding(
+                    stepMeta.getDecompressionThreads(), getStepname() + " decompression " + getCopy())) {
+                return;
+            }
+            if (stepMeta.getReadAheadRows() > 0) {
+                stepData.parsoService.startReadAhead(stepMeta.getReadAheadRows(), getStepname() + " read-ahead " + getCopy());
+            } else if (stepData.rowFilter == null) {
+                stepData.columnBatch = stepData.parsoService.openColumnBatch(ROW_BATCH_SIZE);
             } else {
-                rowValues[outputIndex] = objectFromSasFile;
+                stepData.pageDecoder = stepData.parsoService.openDecoder();
             }
-            outputIndex++;
+        } catch (IOException ex) {
+            throw new KettleException(BaseMessages.getString(PKG, "Error.CantRead"), ex);
         }
-        putRow(stepData.outputRowMeta, rowValues);
+    }
+
+    /**
+     * Get the encoding of fields emitted as binary strings. It's the encoding
+     * of the first file, values of other files are re-encoded if necessary.
+     * The encoding is set to the output row meta.
+     *
+     * @return encoding or null if lazy conversion isn't used
+     */
+    private String getBinaryEncoding(SasReaderStepMeta stepMeta, SasReaderStepData stepData, File sasFile) throws KettleException {
+        if (!stepMeta.isLazyConversion()) {
+            return null;
+        }
+        String encoding;
+        try {
+            //the header is cached, so opening of the file later is cheap
+            ParsoService parsoService = new ParsoService(sasFile);
+            encoding = parsoService.getEncoding();
+            parsoService.dispose();
+        } catch (IOException ex) {
+            throw new KettleException(BaseMessages.getString(PKG, "Error.InFile").replace("$file", sasFile.getPath()), ex);
+        }
+        SasReaderStepMeta.setBinaryStringEncoding(stepData.outputRowMeta, encoding);
+        return encoding;
+    }
+
+    private void closeCurrentFile(SasReaderStepData stepData) {
+        if (stepData.statistics != null && stepData.rowConverter != null) {
+            stepData.statistics.addConversionFailures(stepData.rowConverter.getConversionFailures());
+        }
+        try {
+            stepData.parsoService.dispose();
+        } catch (IOException ex) {
+            // rows were already read, the step continues
+            File sasFile = stepData.parsoService.getFile();
+            logError(BaseMessages.getString(PKG, "Error.CloseFile")
+                    .replace("$file", sasFile == null ? "" : sasFile.getPath())
+                    .replace("$error", String.valueOf(ex.getMessage())), ex);
+        }
+        stepData.parsoService = null;
+        stepData.pageDecoder = null;
+        stepData.columnBatch = null;
+        stepData.rowConverter = null;
+        stepData.rowFilter = null;
+        stepData.filename = null;
+    }
 
+    /**
+     * Emit the next batch of rows read by the file set reader.
+     */
+    private boolean processFileSetBatch(SasReaderStepData stepData) throws KettleException {
+        long start = System.nanoTime();
+        Object[][] batch = stepData.fileSetReader.getNextBatch();
+        long read = System.nanoTime();
+        stepData.statistics.addWait(read - start);
+        setLinesInput(stepData.statistics.getRowsRead());
+        if (batch == null) {
+            setOutputDone();
+            return false;
+        }
+        int written = 0;
+        for (; written < batch.length && !isStopped(); written++) {
+            putRow(stepData.outputRowMeta, batch[written]);
+        }
+        stepData.statistics.addWritten(written, System.nanoTime() - read);
         return true;
     }
 
+    private void logStatistics(SasReadStatistics statistics) {
+        logBasic(BaseMessages.getString(PKG, "Log.Statistics")
+                .replace("$files", String.valueOf(statistics.getFiles()))
+                .replace("$bytes", String.valueOf(statistics.getBytesRead()))
+                .replace("$pages", String.valueOf(statistics.getPagesRead()))
+                .replace("$rowsPerSecond", String.valueOf(statistics.getRowsPerSecond()))
+                .replace("$rows", String.valueOf(statistics.getRowsRead()))
+                .replace("$skipped", String.valueOf(statistics.getRowsSkipped()))
+                .replace("$filtered", String.valueOf(statistics.getRowsFiltered()))
+                .replace("$written", String.valueOf(statistics.getRowsWritten()))
+                .replace("$failures", String.valueOf(statistics.getConversionFailures()))
+                .replace("$io", String.valueOf(statistics.getIoMillis()))
+                .replace("$decode", String.valueOf(statistics.getDecodeMillis()))
+                .replace("$wait", String.valueOf(statistics.getWaitMillis()))
+                .replace("$filter", String.valueOf(statistics.getFilterMillis()))
+                .replace("$conversion", String.valueOf(statistics.getConversionMillis()))
+                .replace("$putRow", String.valueOf(statistics.getPutRowMillis())));
+    }
+
+    /**
+     * Create output row from the row of sas file using prepared converters.
+     */
+    private Object[] convertRow(SasReaderStepData stepData, Object[] rowFileValues) {
+        Object[] rowValues = allocateOutputRow(stepData);
+        stepData.rowConverter.convert(rowFileValues, rowValues);
+        return rowValues;
+    }
+
+    /**
+     * Allocate output row with the filename already set.
+     */
+    private Object[] allocateOutputRow(SasReaderStepData stepData) {
+        Object[] rowValues = RowDataUtil.allocateRowData(stepData.outputRowMeta.size());
+        if (stepData.filename != null) {
+            rowValues[stepData.outputRowMeta.size() - 1] = stepData.filename;
+        }
+        return rowValues;
+    }
+
 }
@@ -16,16 +16,37 @@
 
 package cz.closeit.pdi.sasreader;
 
+import java.io.File;
+import java.util.List;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
 
+import cz.closeit.pdi.sasreader.input.RowConverter;
+import cz.closeit.pdi.sasreader.input.RowFilter;
 import cz.closeit.pdi.sasreader.parso.ParsoService;
+import cz.closeit.pdi.sasreader.parso.SasColumnBatch;
+import cz.closeit.pdi.sasreader.parso.SasPageDecoder;
+import cz.closeit.pdi.sasreader.parso.SasReadStatistics;
+import cz.closeit.pdi.sasreader.parso.SasSidecarCache;
 
 public class SasReaderStepData extends BaseStepData implements StepDataInterface{
     
     public RowMetaInterface outputRowMeta = null;
     public ParsoService parsoService = null;
+    public SasPageDecoder pageDecoder = null;
+    public SasColumnBatch columnBatch = null;
+    public SasFileSetReader fileSetReader = null;
+    public SasFilePrefetcher filePrefetcher = null;
+    public int acceptingFieldIndex = -1;
+    public RowConverter rowConverter = null;
+    public RowFilter rowFilter = null;
+    public String filename = null;
+    public Object[][] rowBuffer = null;
+    public SasReadStatistics statistics = null;
+    public SasSidecarCache sidecarCache = null;
+    public List<File> metadataFiles = null;
+    public int nextMetadataFile = 0;
     
     public SasReaderStepData() {
         super();
@@ -16,14 +16,13 @@
 package cz.closeit.pdi.sasreader;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CCombo;
 import org.eclipse.swt.events.ModifyEvent;
 import org.eclipse.swt.events.ModifyListener;
 import org.eclipse.swt.events.SelectionAdapter;
@@ -46,6 +45,7 @@ import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.swt.widgets.Text;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
@@ -61,7 +61,10 @@ import org.pentaho.di.ui.core.widget.TextVar;
 import org.pentaho.di.ui.trans.dialog.TransPreviewProgressDialog;
 import org.pentaho.di.ui.trans.step.BaseStepDialog;
 
+import cz.closeit.pdi.sasreader.input.EpochUnit;
+import cz.closeit.pdi.sasreader.input.SasFilterCondition;
 import cz.closeit.pdi.sasreader.input.SasInputField;
+import cz.closeit.pdi.sasreader.parso.DecompressorType;
 import cz.closeit.pdi.sasreader.parso.ParsoService;
 import org.eclipse.swt.events.MouseEvent;
 import org.eclipse.swt.events.MouseListener;
@@ -85,11 +88,84 @@ public class SasReaderStepDialog extends BaseStepDialog implements StepDialogInt
     private FormData fdlFilename, fdbFilename, fdFilename;
 
     // Prefer BigNumber check
+    private Label wlFileMask;
+    private TextVar wFileMask;
+    private FormData fdlFileMask, fdFileMask;
+
     private Label wlBigNumber;
     private Button wbBigNumber;
     private FormData fdlBigNumber, fdbBigNumber;
 
+    // Partitioned read check
+    private Label wlPartitioned;
+    private Button wbPartitioned;
+    private FormData fdlPartitioned, fdbPartitioned;
+
+    // Read-ahead buffer size
+    private Label wlReadAhead;
+    private Text wReadAhead;
+    private FormData fdlReadAhead, fdReadAhead;
+
     // Column table
+    private Label wlReaderThreads;
+    private Text wReaderThreads;
+    private FormData fdlReaderThreads, fdReaderThreads;
+
+    private Label wlDecompressionThreads;
+    private Text wDecompressionThreads;
+    private FormData fdlDecompressionThreads, fdDecompressionThreads;
+
+    private Label wlDecompressor;
+    private CCombo wDecompressor;
+    private FormData fdlDecompressor, fdDecompressor;
+
+    private Label wlSidecarDirectory;
+    private TextVar wSidecarDirectory;
+    private FormData fdlSidecarDirectory, fdSidecarDirectory;
+
+    private Label wlSidecarMaxSize;
+    private Text wSidecarMaxSize;
+    private FormData fdlSidecarMaxSize, fdSidecarMaxSize;
+
+    private Label wlFilenameField;
+    private Text wFilenameField;
+    private FormData fdlFilenameField, fdFilenameField;
+
+    private Label wlAcceptFilenames;
+    private Button wbAcceptFilenames;
+    private FormData fdlAcceptFilenames, fdbAcceptFilenames;
+
+    private Label wlAcceptingField;
+    private Text wAcceptingField;
+    private FormData fdlAcceptingField, fdAcceptingField;
+
+    private Label wlRowOffset;
+    private Text wRowOffset;
+    private FormData fdlRowOffset, fdRowOffset;
+
+    private Label wlRowLimit;
+    private Text wRowLimit;
+    private FormData fdlRowLimit, fdRowLimit;
+
+    // Lazy conversion check
+    private Label wlLazyConversion;
+    private Button wbLazyConversion;
+    private FormData fdlLazyConversion, fdbLazyConversion;
+
+    // Unit of dates read as Integer
+    private Label wlDateUnit;
+    private CCombo wDateUnit;
+    private FormData fdlDateUnit, fdDateUnit;
+
+    // Metadata only check
+    private Label wlMetadataOnly;
+    private Button wbMetadataOnly;
+    private FormData fdlMetadataOnly, fdbMetadataOnly;
+
+    private Label wlFilters;
+    private TableView wFilters;
+    private FormData fdlFilters, fdFilters;
+
     private Label wlColumns;
     private TableView wColumns;
     private FormData fdlColumns, fdColumns;
@@ -207,6 +283,28 @@ public class SasReaderStepDialog extends BaseStepDialog implements StepDialogInt
             }
         });
 
+        /////////////////////
+        ///// FILE MASK /////
+        /////////////////////
+        wlFileMask = new Label(shell, SWT.RIGHT);
+        wlFileMask.setText(BaseMessages.getString(PKG, "Dialog.Label.FileMask"));
+        props.setLook(wlFileMask);
+        fdlFileMask = new FormData();
+        fdlFileMask.left = new FormAttachment(0, 0);
+        fdlFileMask.top = new FormAttachment(wFilename, margin);
+        fdlFileMask.right = new FormAttachment(middle, -margin);
+        wlFileMask.setLayoutData(fdlFileMask);
+
+        wFileMask = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        wFileMask.setToolTipText(BaseMessages.getString(PKG, "Dialog.Tooltip.FileMask"));
+        props.setLook(wFileMask);
+        wFileMask.addModifyListener(modifyListener);
+        fdFileMask = new FormData();
+        fdFileMask.left = new FormAttachment(middle, 0);
+        fdFileMask.top = new FormAttachment(wFilename, margin);
+        fdFileMask.right = new FormAttachment(100, 0);
+        wFileMask.setLayoutData(fdFileMask);
+
         ////////////////////////////
         ///// PREFER BIGNUMBER /////
         ////////////////////////////
@@ -215,7 +313,7 @@ public class SasReaderStepDialog extends BaseStepDialog implements StepDialogInt
         props.setLook(wlBigNumber);
         fdlBigNumber = new FormData();
         fdlBigNumber.left = new FormAttachment(0, 0);
-        fdlBigNumber.top = new FormAttachment(wFilename, margin);
+        fdlBigNumber.top = new FormAttachment(wFileMask, margin);
         fdlBigNumber.right = new FormAttachment(middle, -margin);
         wlBigNumber.setLayoutData(fdlBigNumber);
 
@@ -231,10 +329,388 @@ public class SasReaderStepDialog extends BaseStepDialog implements StepDialogInt
         });*/
         fdbBigNumber = new FormData();
         fdbBigNumber.left = new FormAttachment(middle, 0);
-        fdbBigNumber.top = new FormAttachment(wFilename, margin);
+        fdbBigNumber.top = new FormAttachment(wFileMask, margin);
         fdbBigNumber.right = new FormAttachment(100, 0);
         wbBigNumber.setLayoutData(fdbBigNumber);
 
+        ////////////////////////////
+        ///// PARTITIONED READ /////
+        ////////////////////////////
+        wlPartitioned = new Label(shell, SWT.RIGHT);
+        wlPartitioned.setText(BaseMessages.getString(PKG, "Dialog.Label.Partitioned"));
+        props.setLook(wlPartitioned);
+        fdlPartitioned = new FormData();
+        fdlPartitioned.left = new FormAttachment(0, 0);
+        fdlPartitioned.top = new FormAttachment(wbBigNumber, margin);
+        fdlPartitioned.right = new FormAttachment(middle, -margin);
+        wlPartitioned.setLayoutData(fdlPartitioned);
+
+        wbPartitioned = new Button(shell, SWT.CHECK | SWT.LEFT | SWT.BORDER);
+        wbPartitioned.setToolTipText(BaseMessages.getString(PKG, "Dialog.Tooltip.Partitioned"));
+        props.setLook(wbPartitioned);
+        wbPartitioned.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                stepMeta.setChanged();
+            }
+        });
+        fdbPartitioned = new FormData();
+        fdbPartitioned.left = new FormAttachment(middle, 0);
+        fdbPartitioned.top = new FormAttachment(wbBigNumber, margin);
+        fdbPartitioned.right = new FormAttachment(100, 0);
+        wbPartitioned.setLayoutData(fdbPartitioned);
+
+        //////////////////////
+        ///// READ-AHEAD /////
+        //////////////////////
+        wlReadAhead = new Label(shell, SWT.RIGHT);
+        wlReadAhead.setText(BaseMessages.getString(PKG, "Dialog.Label.ReadAhead"));
+        props.setLook(wlReadAhead);
+        fdlReadAhead = new FormData();
+        fdlReadAhead.left = new FormAttachment(0, 0);
+        fdlReadAhead.top = new FormAttachment(wbPartitioned, margin);
+        fdlReadAhead.right = new FormAttachment(middle, -margin);
+        wlReadAhead.setLayoutData(fdlReadAhead);
+
+        wReadAhead = new Text(shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        wReadAhead.setToolTipText(BaseMessages.getString(PKG, "Dialog.Tooltip.ReadAhead"));
+        props.setLook(wReadAhead);
+        wReadAhead.addModifyListener(modifyListener);
+        fdReadAhead = new FormData();
+        fdReadAhead.left = new FormAttachment(middle, 0);
+        fdReadAhead.top = new FormAttachment(wbPartitioned, margin);
+        fdReadAhead.right = new FormAttachment(100, 0);
+        wReadAhead.setLayoutData(fdReadAhead);
+
+        //////////////////////////
+        ///// READER THREADS /////
+        //////////////////////////
+        wlReaderThreads = new Label(shell, SWT.RIGHT);
+        wlReaderThreads.setText(BaseMessages.getString(PKG, "Dialog.Label.ReaderThreads"));
+        props.setLook(wlReaderThreads);
+        fdlReaderThreads = new FormData();
+        fdlReaderThreads.left = new FormAttachment(0, 0);
+        fdlReaderThreads.top = new FormAttachment(wReadAhead, margin);
+        fdlReaderThreads.right = new FormAttachment(middle, -margin);
+        wlReaderThreads.setLayoutData(fdlReaderThreads);
+
+        wReaderThreads = new Text(shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        wReaderThreads.setToolTipText(BaseMessages.getString(PKG, "Dialog.Tooltip.ReaderThreads"));
+        props.setLook(wReaderThreads);
+        wReaderThreads.addModifyListener(modifyListener);
+        fdReaderThreads = new FormData();
+        fdReaderThreads.left = new FormAttachment(middle, 0);
+        fdReaderThreads.top = new FormAttachment(wReadAhead, margin);
+        fdReaderThreads.right = new FormAttachment(100, 0);
+        wReaderThreads.setLayoutData(fdReaderThreads);
+
+        /////////////////////////////////
+        ///// DECOMPRESSION THREADS /////
+        /////////////////////////////////
+        wlDecompressionThreads = new Label(shell, SWT.RIGHT);
+        wlDecompressionThreads.setText(BaseMessages.getString(PKG, "Dialog.Label.DecompressionThreads"));
+        props.setLook(wlDecompressionThreads);
+        fdlDecompressionThreads = new FormData();
+        fdlDecompressionThreads.left = new FormAttachment(0, 0);
+        fdlDecompressionThreads.top = new FormAttachment(wReaderThreads, margin);
+        fdlDecompressionThreads.right = new FormAttachment(middle, -margin);
+        wlDecompressionThreads.setLayoutData(fdlDecompressionThreads);
+
+        wDecompressionThreads = new Text(shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        wDecompressionThreads.setToolTipText(BaseMessages.getString(PKG, "Dialog.Tooltip.DecompressionThreads"));
+        props.setLook(wDecompressionThreads);
+        wDecompressionThreads.addModifyListener(modifyListener);
+        fdDecompressionThreads = new FormData();
+        fdDecompressionThreads.left = new FormAttachment(middle, 0);
+        fdDecompressionThreads.top = new FormAttachment(wReaderThreads, margin);
+        fdDecompressionThreads.right = new FormAttachment(100, 0);
+        wDecompressionThreads.setLayoutData(fdDecompressionThreads);
+
+        ////////////////////////
+        ///// DECOMPRESSOR /////
+        ////////////////////////
+        wlDecompressor = new Label(shell, SWT.RIGHT);
+        wlDecompressor.setText(BaseMessages.getString(PKG, "Dialog.Label.Decompressor"));
+        props.setLook(wlDecompressor);
+        fdlDecompressor = new FormData();
+        fdlDecompressor.left = new FormAttachment(0, 0);
+        fdlDecompressor.top = new FormAttachment(wDecompressionThreads, margin);
+        fdlDecompressor.right = new FormAttachment(middle, -margin);
+        wlDecompressor.setLayoutData(fdlDecompressor);
+
+        wDecompressor = new CCombo(shell, SWT.BORDER | SWT.READ_ONLY);
+        wDecompressor.setItems(DecompressorType.getNames());
+        wDecompressor.setToolTipText(BaseMessages.getString(PKG, "Dialog.Tooltip.Decompressor"));
+        props.setLook(wDecompressor);
+        wDecompressor.addModifyListener(modifyListener);
+        fdDecompressor = new FormData();
+        fdDecompressor.left = new FormAttachment(middle, 0);
+        fdDecompressor.top = new FormAttachment(wDecompressionThreads, margin);
+        fdDecompressor.right = new FormAttachment(100, 0);
+        wDecompressor.setLayoutData(fdDecompressor);
+
+        /////////////////////////////
+        ///// SIDECAR DIRECTORY /////
+        /////////////////////////////
+        wlSidecarDirectory = new Label(shell, SWT.RIGHT);
+        wlSidecarDirectory.setText(BaseMessages.getString(PKG, "Dialog.Label.SidecarDirectory"));
+        props.setLook(wlSidecarDirectory);
+        fdlSidecarDirectory = new FormData();
+        fdlSidecarDirectory.left = new FormAttachment(0, 0);
+        fdlSidecarDirectory.top = new FormAttachment(wDecompressor, margin);
+        fdlSidecarDirectory.right = new FormAttachment(middle, -margin);
+        wlSidecarDirectory.setLayoutData(fdlSidecarDirectory);
+
+        wSidecarDirectory = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        wSidecarDirectory.setToolTipText(BaseMessages.getString(PKG, "Dialog.Tooltip.SidecarDirectory"));
+        props.setLook(wSidecarDirectory);
+        wSidecarDirectory.addModifyListener(modifyListener);
+        fdSidecarDirectory = new FormData();
+        fdSidecarDirectory.left = new FormAttachment(middle, 0);
+        fdSidecarDirectory.top = new FormAttachment(wDecompressor, margin);
+        fdSidecarDirectory.right = new FormAttachment(100, 0);
+        wSidecarDirectory.setLayoutData(fdSidecarDirectory);
+
+        ////////////////////////////
+        ///// SIDECAR MAX SIZE /////
+        ////////////////////////////
+        wlSidecarMaxSize = new Label(shell, SWT.RIGHT);
+        wlSidecarMaxSize.setText(BaseMessages.getString(PKG, "Dialog.Label.SidecarMaxSize"));
+        props.setLook(wlSidecarMaxSize);
+        fdlSidecarMaxSize = new FormData();
+        fdlSidecarMaxSize.left = new FormAttachment(0, 0);
+        fdlSidecarMaxSize.top = new FormAttachment(wSidecarDirectory, margin);
+        fdlSidecarMaxSize.right = new FormAttachment(middle, -margin);
+        wlSidecarMaxSize.setLayoutData(fdlSidecarMaxSize);
+
+        wSidecarMaxSize = new Text(shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        wSidecarMaxSize.setToolTipText(BaseMessages.getString(PKG, "Dialog.Tooltip.SidecarMaxSize"));
+        props.setLook(wSidecarMaxSize);
+        wSidecarMaxSize.addModifyListener(modifyListener);
+        fdSidecarMaxSize = new FormData();
+        fdSidecarMaxSize.left = new FormAttachment(middle, 0);
+        fdSidecarMaxSize.top = new FormAttachment(wSidecarDirectory, margin);
+        fdSidecarMaxSize.right = new FormAttachment(100, 0);
+        wSidecarMaxSize.setLayoutData(fdSidecarMaxSize);
+
+        //////////////////////////
+        ///// FILENAME FIELD /////
+        //////////////////////////
+        wlFilenameField = new Label(shell, SWT.RIGHT);
+        wlFilenameField.setText(BaseMessages.getString(PKG, "Dialog.Label.FilenameField"));
+        props.setLook(wlFilenameField);
+        fdlFilenameField = new FormData();
+        fdlFilenameField.left = new FormAttachment(0, 0);
+        fdlFilenameField.top = new FormAttachment(wSidecarMaxSize, margin);
+        fdlFilenameField.right = new FormAttachment(middle, -margin);
+        wlFilenameField.setLayoutData(fdlFilenameField);
+
+        wFilenameField = new Text(shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        wFilenameField.setToolTipText(BaseMessages.getString(PKG, "Dialog.Tooltip.FilenameField"));
+        props.setLook(wFilenameField);
+        wFilenameField.addModifyListener(modifyListener);
+        fdFilenameField = new FormData();
+        fdFilenameField.left = new FormAttachment(middle, 0);
+        fdFilenameField.top = new FormAttachment(wSidecarMaxSize, margin);
+        fdFilenameField.right = new FormAttachment(100, 0);
+        wFilenameField.setLayoutData(fdFilenameField);
+
+        ////////////////////////////
+        ///// ACCEPT FILENAMES /////
+        ////////////////////////////
+        wlAcceptFilenames = new Label(shell, SWT.RIGHT);
+        wlAcceptFilenames.setText(BaseMessages.getString(PKG, "Dialog.Label.AcceptFilenames"));
+        props.setLook(wlAcceptFilenames);
+        fdlAcceptFilenames = new FormData();
+        fdlAcceptFilenames.left = new FormAttachment(0, 0);
+        fdlAcceptFilenames.top = new FormAttachment(wFilenameField, margin);
+        fdlAcceptFilenames.right = new FormAttachment(middle, -margin);
+        wlAcceptFilenames.setLayoutData(fdlAcceptFilenames);
+
+        wbAcceptFilenames = new Button(shell, SWT.CHECK | SWT.LEFT | SWT.BORDER);
+        wbAcceptFilenames.setToolTipText(BaseMessages.getString(PKG, "Dialog.Tooltip.AcceptFilenames"));
+        props.setLook(wbAcceptFilenames);
+        wbAcceptFilenames.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                stepMeta.setChanged();
+                wAcceptingField.setEnabled(wbAcceptFilenames.getSelection());
+            }
+        });
+        fdbAcceptFilenames = new FormData();
+        fdbAcceptFilenames.left = new FormAttachment(middle, 0);
+        fdbAcceptFilenames.top = new FormAttachment(wFilenameField, margin);
+        fdbAcceptFilenames.right = new FormAttachment(100, 0);
+        wbAcceptFilenames.setLayoutData(fdbAcceptFilenames);
+
+        wlAcceptingField = new Label(shell, SWT.RIGHT);
+        wlAcceptingField.setText(BaseMessages.getString(PKG, "Dialog.Label.AcceptingField"));
+        props.setLook(wlAcceptingField);
+        fdlAcceptingField = new FormData();
+        fdlAcceptingField.left = new FormAttachment(0, 0);
+        fdlAcceptingField.top = new FormAttachment(wbAcceptFilenames, margin);
+        fdlAcceptingField.right = new FormAttachment(middle, -margin);
+        wlAcceptingField.setLayoutData(fdlAcceptingField);
+
+        wAcceptingField = new Text(shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        wAcceptingField.setToolTipText(BaseMessages.getString(PKG, "Dialog.Tooltip.AcceptingField"));
+        props.setLook(wAcceptingField);
+        wAcceptingField.addModifyListener(modifyListener);
+        fdAcceptingField = new FormData();
+        fdAcceptingField.left = new FormAttachment(middle, 0);
+        fdAcceptingField.top = new FormAttachment(wbAcceptFilenames, margin);
+        fdAcceptingField.right = new FormAttachment(100, 0);
+        wAcceptingField.setLayoutData(fdAcceptingField);
+
+        //////////////////////
+        ///// ROW OFFSET /////
+        //////////////////////
+        wlRowOffset = new Label(shell, SWT.RIGHT);
+        wlRowOffset.setText(BaseMessages.getString(PKG, "Dialog.Label.RowOffset"));
+        props.setLook(wlRowOffset);
+        fdlRowOffset = new FormData();
+        fdlRowOffset.left = new FormAttachment(0, 0);
+        fdlRowOffset.top = new FormAttachment(wAcceptingField, margin);
+        fdlRowOffset.right = new FormAttachment(middle, -margin);
+        wlRowOffset.setLayoutData(fdlRowOffset);
+
+        wRowOffset = new Text(shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        wRowOffset.setToolTipText(BaseMessages.getString(PKG, "Dialog.Tooltip.RowOffset"));
+        props.setLook(wRowOffset);
+        wRowOffset.addModifyListener(modifyListener);
+        fdRowOffset = new FormData();
+        fdRowOffset.left = new FormAttachment(middle, 0);
+        fdRowOffset.top = new FormAttachment(wAcceptingField, margin);
+        fdRowOffset.right = new FormAttachment(100, 0);
+        wRowOffset.setLayoutData(fdRowOffset);
+
+        /////////////////////
+        ///// ROW LIMIT /////
+        /////////////////////
+        wlRowLimit = new Label(shell, SWT.RIGHT);
+        wlRowLimit.setText(BaseMessages.getString(PKG, "Dialog.Label.RowLimit"));
+        props.setLook(wlRowLimit);
+        fdlRowLimit = new FormData();
+        fdlRowLimit.left = new FormAttachment(0, 0);
+        fdlRowLimit.top = new FormAttachment(wRowOffset, margin);
+        fdlRowLimit.right = new FormAttachment(middle, -margin);
+        wlRowLimit.setLayoutData(fdlRowLimit);
+
+        wRowLimit = new Text(shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+        wRowLimit.setToolTipText(BaseMessages.getString(PKG, "Dialog.Tooltip.RowLimit"));
+        props.setLook(wRowLimit);
+        wRowLimit.addModifyListener(modifyListener);
+        fdRowLimit = new FormData();
+        fdRowLimit.left = new FormAttachment(middle, 0);
+        fdRowLimit.top = new FormAttachment(wRowOffset, margin);
+        fdRowLimit.right = new FormAttachment(100, 0);
+        wRowLimit.setLayoutData(fdRowLimit);
+
+        ///////////////////////////
+        ///// LAZY CONVERSION /////
+        ///////////////////////////
+        wlLazyConversion = new Label(shell, SWT.RIGHT);
+        wlLazyConversion.setText(BaseMessages.getString(PKG, "Dialog.Label.LazyConversion"));
+        props.setLook(wlLazyConversion);
+        fdlLazyConversion = new FormData();
+        fdlLazyConversion.left = new FormAttachment(0, 0);
+        fdlLazyConversion.top = new FormAttachment(wRowLimit, margin);
+        fdlLazyConversion.right = new FormAttachment(middle, -margin);
+        wlLazyConversion.setLayoutData(fdlLazyConversion);
+
+        wbLazyConversion = new Button(shell, SWT.CHECK | SWT.LEFT | SWT.BORDER);
+        wbLazyConversion.setToolTipText(BaseMessages.getString(PKG, "Dialog.Tooltip.LazyConversion"));
+        props.setLook(wbLazyConversion);
+        wbLazyConversion.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                stepMeta.setChanged();
+            }
+        });
+        fdbLazyConversion = new FormData();
+        fdbLazyConversion.left = new FormAttachment(middle, 0);
+        fdbLazyConversion.top = new FormAttachment(wRowLimit, margin);
+        fdbLazyConversion.right = new FormAttachment(100, 0);
+        wbLazyConversion.setLayoutData(fdbLazyConversion);
+
+        /////////////////////
+        ///// DATE UNIT /////
+        /////////////////////
+        wlDateUnit = new Label(shell, SWT.RIGHT);
+        wlDateUnit.setText(BaseMessages.getString(PKG, "Dialog.Label.DateUnit"));
+        props.setLook(wlDateUnit);
+        fdlDateUnit = new FormData();
+        fdlDateUnit.left = new FormAttachment(0, 0);
+        fdlDateUnit.top = new FormAttachment(wbLazyConversion, margin);
+        fdlDateUnit.right = new FormAttachment(middle, -margin);
+        wlDateUnit.setLayoutData(fdlDateUnit);
+
+        wDateUnit = new CCombo(shell, SWT.BORDER | SWT.READ_ONLY);
+        wDateUnit.setItems(EpochUnit.getNames());
+        wDateUnit.setToolTipText(BaseMessages.getString(PKG, "Dialog.Tooltip.DateUnit"));
+        props.setLook(wDateUnit);
+        wDateUnit.addModifyListener(modifyListener);
+        fdDateUnit = new FormData();
+        fdDateUnit.left = new FormAttachment(middle, 0);
+        fdDateUnit.top = new FormAttachment(wbLazyConversion, margin);
+        fdDateUnit.right = new FormAttachment(100, 0);
+        wDateUnit.setLayoutData(fdDateUnit);
+
+        /////////////////////////
+        ///// METADATA ONLY /////
+        /////////////////////////
+        wlMetadataOnly = new Label(shell, SWT.RIGHT);
+        wlMetadataOnly.setText(BaseMessages.getString(PKG, "Dialog.Label.MetadataOnly"));
+        props.setLook(wlMetadataOnly);
+        fdlMetadataOnly = new FormData();
+        fdlMetadataOnly.left = new FormAttachment(0, 0);
+        fdlMetadataOnly.top = new FormAttachment(wDateUnit, margin);
+        fdlMetadataOnly.right = new FormAttachment(middle, -margin);
+        wlMetadataOnly.setLayoutData(fdlMetadataOnly);
+
+        wbMetadataOnly = new Button(shell, SWT.CHECK | SWT.LEFT | SWT.BORDER);
+        wbMetadataOnly.setToolTipText(BaseMessages.getString(PKG, "Dialog.Tooltip.MetadataOnly"));
+        props.setLook(wbMetadataOnly);
+        wbMetadataOnly.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                stepMeta.setChanged();
+            }
+        });
+        fdbMetadataOnly = new FormData();
+        fdbMetadataOnly.left = new FormAttachment(middle, 0);
+        fdbMetadataOnly.top = new FormAttachment(wDateUnit, margin);
+        fdbMetadataOnly.right = new FormAttachment(100, 0);
+        wbMetadataOnly.setLayoutData(fdbMetadataOnly);
+
+        ///////////////////////////////
+        ///// TABLE OF CONDITIONS /////
+        ///////////////////////////////
+        wlFilters = new Label(shell, SWT.NONE);
+        wlFilters.setText(BaseMessages.getString(PKG, "Dialog.Label.Filters"));
+        props.setLook(wlFilters);
+        fdlFilters = new FormData();
+        fdlFilters.left = new FormAttachment(0, 0);
+        fdlFilters.top = new FormAttachment(wbMetadataOnly, margin);
+        wlFilters.setLayoutData(fdlFilters);
+
+        ColumnInfo[] fci = new ColumnInfo[3];
+        fci[0] = new ColumnInfo(BaseMessages.getString(PKG, "Dialog.Column.SasName"), ColumnInfo.COLUMN_TYPE_TEXT);
+        fci[0].setToolTip(BaseMessages.getString(PKG, "Dialog.Tooltip.FilterColumn"));
+        fci[1] = new ColumnInfo(BaseMessages.getString(PKG, "Dialog.Column.Operator"), ColumnInfo.COLUMN_TYPE_CCOMBO, SasFilterCondition.Operator.getSymbols());
+        fci[1].setToolTip(BaseMessages.getString(PKG, "Dialog.Tooltip.FilterOperator"));
+        fci[2] = new ColumnInfo(BaseMessages.getString(PKG, "Dialog.Column.Value"), ColumnInfo.COLUMN_TYPE_TEXT);
+        fci[2].setToolTip(BaseMessages.getString(PKG, "Dialog.Tooltip.FilterValue"));
+
+        wFilters = new TableView(transMeta, shell, SWT.BORDER | SWT.FULL_SELECTION | SWT.MULTI | SWT.V_SCROLL | SWT.H_SCROLL, fci, 1, modifyListener, props);
+
+        fdFilters = new FormData();
+        fdFilters.left = new FormAttachment(0, 0);
+        fdFilters.top = new FormAttachment(wlFilters, margin);
+        fdFilters.right = new FormAttachment(100, 0);
+        fdFilters.height = 80;
+        wFilters.setLayoutData(fdFilters);
+
         ////////////////////////////
         ///// TABLE OF COLUMNS /////
         ////////////////////////////
@@ -243,10 +719,10 @@ public class SasReaderStepDialog extends BaseStepDialog implements StepDialogInt
         props.setLook(wlColumns);
         fdlColumns = new FormData();
         fdlColumns.left = new FormAttachment(0, 0);
-        fdlColumns.top = new FormAttachment(wbBigNumber, margin);
+        fdlColumns.top = new FormAttachment(wFilters, margin);
         wlColumns.setLayoutData(fdlColumns);
 
-        int numberOfColumns = 8;
+        int numberOfColumns = 9;
         int numberOfRows = 1;
 
         ColumnInfo[] ci = new ColumnInfo[numberOfColumns];
@@ -268,6 +744,9 @@ public class SasReaderStepDialog extends BaseStepDialog implements StepDialogInt
         ci[7] = new ColumnInfo(BaseMessages.getString(PKG, "Dialog.Column.Optional"), ColumnInfo.COLUMN_TYPE_CCOMBO, new String[]{
             BaseMessages.getString(PKG, "System.Combo.Yes"), BaseMessages.getString(PKG, "System.Combo.No"),});
         ci[7].setToolTip(BaseMessages.getString(PKG, "Dialog.Tooltip.ColumnOptional"));
+        ci[8] = new ColumnInfo(BaseMessages.getString(PKG, "Dialog.Column.Dictionary"), ColumnInfo.COLUMN_TYPE_CCOMBO, new String[]{
+            BaseMessages.getString(PKG, "System.Combo.Yes"), BaseMessages.getString(PKG, "System.Combo.No"),});
+        ci[8].setToolTip(BaseMessages.getString(PKG, "Dialog.Tooltip.ColumnDictionary"));
 
         wColumns = new TableView(transMeta, shell, SWT.BORDER | SWT.FULL_SELECTION | SWT.MULTI | SWT.V_SCROLL | SWT.H_SCROLL, ci, numberOfRows, modifyListener, props);
         wColumns.setSortable(true);
@@ -401,6 +880,23 @@ public class SasReaderStepDialog extends BaseStepDialog implements StepDialogInt
 
         wFilename.setText(stepMeta.getFileName());
         //TODO fill check prefer BigNumber
+        wbPartitioned.setSelection(stepMeta.isPartitioned());
+        wReadAhead.setText(Integer.toString(stepMeta.getReadAheadRows()));
+        wFileMask.setText(stepMeta.getFileMask());
+        wReaderThreads.setText(Integer.toString(stepMeta.getReaderThreads()));
+        wDecompressionThreads.setText(Integer.toString(stepMeta.getDecompressionThreads()));
+        wDecompressor.setText(stepMeta.getDecompressor().toString());
+        wSidecarDirectory.setText(stepMeta.getSidecarDirectory());
+        wSidecarMaxSize.setText(Long.toString(stepMeta.getSidecarMaxSize()));
+        wFilenameField.setText(stepMeta.getFilenameField());
+        wbAcceptFilenames.setSelection(stepMeta.isAcceptFilenames());
+        wAcceptingField.setText(stepMeta.getAcceptingField());
+        wAcceptingField.setEnabled(stepMeta.isAcceptFilenames());
+        wRowOffset.setText(Long.toString(stepMeta.getRowOffset()));
+        wRowLimit.setText(Long.toString(stepMeta.getRowLimit()));
+        wbLazyConversion.setSelection(stepMeta.isLazyConversion());
+        wDateUnit.setText(stepMeta.getDateUnit().toString());
+        wbMetadataOnly.setSelection(stepMeta.isMetadataOnly());
 
         List<SasInputField> inputFields = stepMeta.getInputFields();
 
@@ -421,9 +917,25 @@ public class SasReaderStepDialog extends BaseStepDialog implements StepDialogInt
             if (inputFields.get(i).getOptional()) {
                 item.setText(8, BaseMessages.getString(PKG, "System.Combo.Yes"));
             }
+            if (inputFields.get(i).getDictionary()) {
+                item.setText(9, BaseMessages.getString(PKG, "System.Combo.Yes"));
+            }
         }
         wColumns.setRowNums();
         wColumns.optWidth(true);
+
+        List<SasFilterCondition> filterConditions = stepMeta.getFilterConditions();
+        wFilters.table.removeAll();
+        wFilters.table.setItemCount(filterConditions.size());
+        for (int i = 0; i < filterConditions.size(); i++) {
+            TableItem item = wFilters.table.getItem(i);
+
+            item.setText(1, filterConditions.get(i).getSasName());
+            item.setText(2, filterConditions.get(i).getOperator().getSymbol());
+            item.setText(3, filterConditions.get(i).getValue());
+        }
+        wFilters.setRowNums();
+        wFilters.optWidth(true);
     }
 
     /**
@@ -432,6 +944,22 @@ public class SasReaderStepDialog extends BaseStepDialog implements StepDialogInt
     private void saveData(SasReaderStepMeta stepMeta) {
         stepMeta.setFileName(wFilename.getText());
         //TODO maybe save checkbox prefer BigNumber over Number
+        stepMeta.setPartitioned(wbPartitioned.getSelection());
+        stepMeta.setReadAheadRows(Const.toInt(wReadAhead.getText(), 0));
+        stepMeta.setFileMask(wFileMask.getText());
+        stepMeta.setReaderThreads(Const.toInt(wReaderThreads.getText(), 1));
+        stepMeta.setDecompressionThreads(Const.toInt(wDecompressionThreads.getText(), 1));
+        stepMeta.setDecompressor(DecompressorType.fromName(wDecompressor.getText()));
+        stepMeta.setSidecarDirectory(wSidecarDirectory.getText());
+        stepMeta.setSidecarMaxSize(Const.toLong(wSidecarMaxSize.getText(), 0));
+        stepMeta.setFilenameField(wFilenameField.getText());
+        stepMeta.setAcceptFilenames(wbAcceptFilenames.getSelection());
+        stepMeta.setAcceptingField(wAcceptingField.getText());
+        stepMeta.setRowOffset(Const.toLong(wRowOffset.getText(), 0));
+        stepMeta.setRowLimit(Const.toLong(wRowLimit.getText(), 0));
+        stepMeta.setLazyConversion(wbLazyConversion.getSelection());
+        stepMeta.setDateUnit(EpochUnit.fromName(wDateUnit.getText()));
+        stepMeta.setMetadataOnly(wbMetadataOnly.getSelection());
 
         List<SasInputField> inputFields = new ArrayList<>();
 
@@ -472,9 +1000,28 @@ public class SasReaderStepDialog extends BaseStepDialog implements StepDialogInt
                         BaseMessages.getString(PKG, "System.Combo.Yes")) ? true : false);
             }
 
+            if (wColumns.table.getItem(i).getText(9) != null) {
+                inputField.setDictionary(wColumns.table.getItem(i).getText(9).equalsIgnoreCase(
+                        BaseMessages.getString(PKG, "System.Combo.Yes")));
+            }
+
             inputFields.add(inputField);
         }
         stepMeta.setInputFields(inputFields);
+
+        List<SasFilterCondition> filterConditions = new ArrayList<>();
+        for (int i = 0; i < wFilters.table.getItemCount(); i++) {
+            TableItem item = wFilters.table.getItem(i);
+            if (item.getText(1) == null || item.getText(1).isEmpty()) {
+                continue;
+            }
+            SasFilterCondition filterCondition = new SasFilterCondition();
+            filterCondition.setSasName(item.getText(1));
+            filterCondition.setOperator(SasFilterCondition.Operator.fromSymbol(item.getText(2)));
+            filterCondition.setValue(item.getText(3));
+            filterConditions.add(filterCondition);
+        }
+        stepMeta.setFilterConditions(filterConditions);
     }
 
     private void ok() {
@@ -489,14 +1036,26 @@ public class SasReaderStepDialog extends BaseStepDialog implements StepDialogInt
     }
 
     private void getFields() {
-        File sasFile = new File(stepMeta.getFileName());
-        InputStream stream;
+        SasReaderStepMeta fileMeta = new SasReaderStepMeta();
+        saveData(fileMeta);
+        //fields are taken from the first of matching files
+        List<File> files;
+        try {
+            files = fileMeta.resolveFiles(transMeta);
+        } catch (KettleException ex) {
+            //invalid file mask is reported by step checks
+            return;
+        }
+        if (files.isEmpty()) {
+            return;
+        }
+        File sasFile = files.get(0);
+        stepMeta.setFileName(fileMeta.getFileName());
+        stepMeta.setFileMask(fileMeta.getFileMask());
 
         try {
-            stream = new FileInputStream(sasFile);
-            ParsoService.getFieldsFromFile(stream, stepMeta, wbBigNumber.getSelection());
+            ParsoService.getFieldsFromFile(sasFile, stepMeta, wbBigNumber.getSelection(), transMeta);
             fillData();
-            stream.close();
         } catch (FileNotFoundException ex) {
             //TODO - better error handling
             return;
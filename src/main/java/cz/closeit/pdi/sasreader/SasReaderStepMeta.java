@@ -16,13 +16,15 @@
 package cz.closeit.pdi.sasreader;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import org.apache.commons.io.FilenameUtils;
 import org.eclipse.swt.widgets.Shell;
 import org.pentaho.di.core.CheckResult;
 import org.pentaho.di.core.CheckResultInterface;
@@ -31,9 +33,12 @@ import org.pentaho.di.core.Counter;
 import org.pentaho.di.core.annotations.Step;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettlePluginException;
 import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.exception.KettleXMLException;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaFactory;
 import org.pentaho.di.core.variables.VariableSpace;
 import org.pentaho.di.core.xml.XMLHandler;
 import org.pentaho.di.i18n.BaseMessages;
@@ -50,8 +55,13 @@ import org.pentaho.di.trans.step.StepMetaInterface;
 import org.pentaho.metastore.api.IMetaStore;
 import org.w3c.dom.Node;
 
+import cz.closeit.pdi.sasreader.input.EpochUnit;
+import cz.closeit.pdi.sasreader.input.SasFilterCondition;
 import cz.closeit.pdi.sasreader.input.SasInputField;
+import cz.closeit.pdi.sasreader.input.SasMetadataField;
+import cz.closeit.pdi.sasreader.parso.DecompressorType;
 import cz.closeit.pdi.sasreader.parso.ParsoService;
+import cz.closeit.pdi.sasreader.parso.SasSidecarCache;
 
 @Step(id = "CloseITSasReader",
         i18nPackageName = "cz.closeit.pdi.sasreader",
@@ -63,9 +73,42 @@ public class SasReaderStepMeta extends BaseStepMeta implements StepMetaInterface
 
     public static final Class<?> PKG = SasReaderStepMeta.class;
     public static final String KEY_FILENAME = "filename";
+    public static final String KEY_PARTITIONED = "partitioned";
+    public static final String KEY_READ_AHEAD_ROWS = "readaheadrows";
+    public static final String KEY_FILE_MASK = "filemask";
+    public static final String KEY_READER_THREADS = "readerthreads";
+    public static final String KEY_DECOMPRESSION_THREADS = "decompressionthreads";
+    public static final String KEY_DECOMPRESSOR = "decompressor";
+    public static final String KEY_SIDECAR_DIRECTORY = "sidecardirectory";
+    public static final String KEY_SIDECAR_MAX_SIZE = "sidecarmaxsize";
+    public static final String KEY_FILENAME_FIELD = "filenamefield";
+    public static final String KEY_ACCEPT_FILENAMES = "acceptfilenames";
+    public static final String KEY_ACCEPTING_FIELD = "acceptingfield";
+    public static final String KEY_ROW_OFFSET = "rowoffset";
+    public static final String KEY_ROW_LIMIT = "rowlimit";
+    public static final String KEY_LAZY_CONVERSION = "lazyconversion";
+    public static final String KEY_DATE_UNIT = "dateunit";
+    public static final String KEY_METADATA_ONLY = "metadataonly";
 
     private String fileName = "";
+    private boolean partitioned = false;
+    private int readAheadRows = 0;
+    private String fileMask = "";
+    private int readerThreads = 1;
+    private int decompressionThreads = 1;
+    private DecompressorType decompressor = DecompressorType.Native;
+    private String sidecarDirectory = "";
+    private long sidecarMaxSize = 0;
+    private String filenameField = "";
+    private boolean acceptFilenames = false;
+    private String acceptingField = "";
+    private long rowOffset = 0;
+    private long rowLimit = 0;
+    private boolean lazyConversion = false;
+    private EpochUnit dateUnit = EpochUnit.Milliseconds;
+    private boolean metadataOnly = false;
     private List<SasInputField> inputFields = null;
+    private List<SasFilterCondition> filterConditions = null;
 
     public SasReaderStepMeta() {
         super();
@@ -84,8 +127,38 @@ public class SasReaderStepMeta extends BaseStepMeta implements StepMetaInterface
      */
     @Override
     public void getFields(RowMetaInterface inputRowMeta, String name, RowMetaInterface[] info, StepMeta nextStep, VariableSpace space, Repository repository, IMetaStore metaStore) throws KettleStepException {
+        if (acceptFilenames) {
+            // rows with file names aren't passed to output
+            inputRowMeta.clear();
+        }
+        if (metadataOnly) {
+            // one row per file with values from its header
+            try {
+                SasMetadataField.addFields(inputRowMeta, name);
+            } catch (KettlePluginException ex) {
+                throw new KettleStepException(ex);
+            }
+            return;
+        }
         for (SasInputField inputField : inputFields) {
-            inputRowMeta.addValueMeta(inputField.getValueMetaInterface(name));
+            ValueMetaInterface valueMeta = inputField.getValueMetaInterface(name);
+            if (lazyConversion && inputField.isCharacterString()) {
+                //bytes of the file are passed as they are, String is created only when needed
+                ValueMetaInterface storageMeta = valueMeta.clone();
+                storageMeta.setStorageType(ValueMetaInterface.STORAGE_TYPE_NORMAL);
+                valueMeta.setStorageMetadata(storageMeta);
+                valueMeta.setStorageType(ValueMetaInterface.STORAGE_TYPE_BINARY_STRING);
+            }
+            inputRowMeta.addValueMeta(valueMeta);
+        }
+        if (!filenameField.isEmpty()) {
+            try {
+                ValueMetaInterface filenameMeta = ValueMetaFactory.createValueMeta(filenameField, ValueMetaInterface.TYPE_STRING);
+                filenameMeta.setOrigin(name);
+                inputRowMeta.addValueMeta(filenameMeta);
+            } catch (KettlePluginException ex) {
+                throw new KettleStepException(ex);
+            }
         }
     }
 
@@ -109,6 +182,22 @@ public class SasReaderStepMeta extends BaseStepMeta implements StepMetaInterface
         copy.setDefault();
 
         copy.setFileName(fileName);
+        copy.setPartitioned(partitioned);
+        copy.setReadAheadRows(readAheadRows);
+        copy.setFileMask(fileMask);
+        copy.setReaderThreads(readerThreads);
+        copy.setDecompressionThreads(decompressionThreads);
+        copy.setDecompressor(decompressor);
+        copy.setSidecarDirectory(sidecarDirectory);
+        copy.setSidecarMaxSize(sidecarMaxSize);
+        copy.setFilenameField(filenameField);
+        copy.setAcceptFilenames(acceptFilenames);
+        copy.setAcceptingField(acceptingField);
+        copy.setRowOffset(rowOffset);
+        copy.setRowLimit(rowLimit);
+        copy.setLazyConversion(lazyConversion);
+        copy.setDateUnit(dateUnit);
+        copy.setMetadataOnly(metadataOnly);
 
         List<SasInputField> list = new ArrayList<>();
         for (SasInputField inputField : inputFields) {
@@ -116,12 +205,35 @@ public class SasReaderStepMeta extends BaseStepMeta implements StepMetaInterface
         }
         copy.setInputFields(list);
 
+        List<SasFilterCondition> conditions = new ArrayList<>();
+        for (SasFilterCondition filterCondition : filterConditions) {
+            conditions.add(new SasFilterCondition(filterCondition));
+        }
+        copy.setFilterConditions(conditions);
+
         return copy;
     }
 
     @Override
     public void setDefault() {
         inputFields = new ArrayList<>();
+        filterConditions = new ArrayList<>();
+        partitioned = false;
+        readAheadRows = 0;
+        fileMask = "";
+        readerThreads = 1;
+        decompressionThreads = 1;
+        decompressor = DecompressorType.Native;
+        sidecarDirectory = "";
+        sidecarMaxSize = 0;
+        filenameField = "";
+        acceptFilenames = false;
+        acceptingField = "";
+        rowOffset = 0;
+        rowLimit = 0;
+        lazyConversion = false;
+        dateUnit = EpochUnit.Milliseconds;
+        metadataOnly = false;
     }
 
     @Override
@@ -129,6 +241,22 @@ public class SasReaderStepMeta extends BaseStepMeta implements StepMetaInterface
         StringBuilder xml = new StringBuilder();
 
         xml.append("    ").append(XMLHandler.addTagValue(KEY_FILENAME, fileName));
+        xml.append("    ").append(XMLHandler.addTagValue(KEY_PARTITIONED, partitioned));
+        xml.append("    ").append(XMLHandler.addTagValue(KEY_READ_AHEAD_ROWS, readAheadRows));
+        xml.append("    ").append(XMLHandler.addTagValue(KEY_FILE_MASK, fileMask));
+        xml.append("    ").append(XMLHandler.addTagValue(KEY_READER_THREADS, readerThreads));
+        xml.append("    ").append(XMLHandler.addTagValue(KEY_DECOMPRESSION_THREADS, decompressionThreads));
+        xml.append("    ").append(XMLHandler.addTagValue(KEY_DECOMPRESSOR, decompressor.toString()));
+        xml.append("    ").append(XMLHandler.addTagValue(KEY_SIDECAR_DIRECTORY, sidecarDirectory));
+        xml.append("    ").append(XMLHandler.addTagValue(KEY_SIDECAR_MAX_SIZE, sidecarMaxSize));
+        xml.append("    ").append(XMLHandler.addTagValue(KEY_FILENAME_FIELD, filenameField));
+        xml.append("    ").append(XMLHandler.addTagValue(KEY_ACCEPT_FILENAMES, acceptFilenames));
+        xml.append("    ").append(XMLHandler.addTagValue(KEY_ACCEPTING_FIELD, acceptingField));
+        xml.append("    ").append(XMLHandler.addTagValue(KEY_ROW_OFFSET, rowOffset));
+        xml.append("    ").append(XMLHandler.addTagValue(KEY_ROW_LIMIT, rowLimit));
+        xml.append("    ").append(XMLHandler.addTagValue(KEY_LAZY_CONVERSION, lazyConversion));
+        xml.append("    ").append(XMLHandler.addTagValue(KEY_DATE_UNIT, dateUnit.toString()));
+        xml.append("    ").append(XMLHandler.addTagValue(KEY_METADATA_ONLY, metadataOnly));
 
         for (SasInputField inputField : inputFields) {
             xml.append("    <inputfield>").append(Const.CR);
@@ -140,8 +268,16 @@ public class SasReaderStepMeta extends BaseStepMeta implements StepMetaInterface
             xml.append("        ").append(XMLHandler.addTagValue(SasInputField.KEY_LENGTH, inputField.getLength()));
             xml.append("        ").append(XMLHandler.addTagValue(SasInputField.KEY_LABEL, inputField.getLabel()));
             xml.append("        ").append(XMLHandler.addTagValue(SasInputField.KEY_OPTIONAL, inputField.getOptional()));
+            xml.append("        ").append(XMLHandler.addTagValue(SasInputField.KEY_DICTIONARY, inputField.getDictionary()));
             xml.append("    </inputfield>").append(Const.CR);
         }
+        for (SasFilterCondition filterCondition : filterConditions) {
+            xml.append("    <filtercondition>").append(Const.CR);
+            xml.append("        ").append(XMLHandler.addTagValue(SasFilterCondition.KEY_COLUMN, filterCondition.getSasName()));
+            xml.append("        ").append(XMLHandler.addTagValue(SasFilterCondition.KEY_OPERATOR, filterCondition.getOperator().toString()));
+            xml.append("        ").append(XMLHandler.addTagValue(SasFilterCondition.KEY_VALUE, filterCondition.getValue()));
+            xml.append("    </filtercondition>").append(Const.CR);
+        }
         return xml.toString();
     }
 
@@ -150,6 +286,22 @@ public class SasReaderStepMeta extends BaseStepMeta implements StepMetaInterface
         setDefault();
         try {
             setFileName(XMLHandler.getTagValue(stepnode, KEY_FILENAME));
+            setPartitioned("Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, KEY_PARTITIONED)));
+            setReadAheadRows(Const.toInt(XMLHandler.getTagValue(stepnode, KEY_READ_AHEAD_ROWS), 0));
+            setFileMask(XMLHandler.getTagValue(stepnode, KEY_FILE_MASK));
+            setReaderThreads(Const.toInt(XMLHandler.getTagValue(stepnode, KEY_READER_THREADS), 1));
+            setDecompressionThreads(Const.toInt(XMLHandler.getTagValue(stepnode, KEY_DECOMPRESSION_THREADS), 1));
+            setDecompressor(DecompressorType.fromName(XMLHandler.getTagValue(stepnode, KEY_DECOMPRESSOR)));
+            setSidecarDirectory(XMLHandler.getTagValue(stepnode, KEY_SIDECAR_DIRECTORY));
+            setSidecarMaxSize(Const.toLong(XMLHandler.getTagValue(stepnode, KEY_SIDECAR_MAX_SIZE), 0));
+            setFilenameField(XMLHandler.getTagValue(stepnode, KEY_FILENAME_FIELD));
+            setAcceptFilenames("Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, KEY_ACCEPT_FILENAMES)));
+            setAcceptingField(XMLHandler.getTagValue(stepnode, KEY_ACCEPTING_FIELD));
+            setRowOffset(Const.toLong(XMLHandler.getTagValue(stepnode, KEY_ROW_OFFSET), 0));
+            setRowLimit(Const.toLong(XMLHandler.getTagValue(stepnode, KEY_ROW_LIMIT), 0));
+            setLazyConversion("Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, KEY_LAZY_CONVERSION)));
+            setDateUnit(EpochUnit.fromName(XMLHandler.getTagValue(stepnode, KEY_DATE_UNIT)));
+            setMetadataOnly("Y".equalsIgnoreCase(XMLHandler.getTagValue(stepnode, KEY_METADATA_ONLY)));
 
             int numberOfInputFields = XMLHandler.countNodes(stepnode, "inputfield");
             for (int i = 0; i < numberOfInputFields; i++) {
@@ -164,9 +316,22 @@ public class SasReaderStepMeta extends BaseStepMeta implements StepMetaInterface
                 inputField.setLength(Integer.parseInt(XMLHandler.getTagValue(fieldNode, SasInputField.KEY_LENGTH)));
                 inputField.setLabel(XMLHandler.getTagValue(fieldNode, SasInputField.KEY_LABEL));
                 inputField.setOptional(XMLHandler.getTagValue(fieldNode, SasInputField.KEY_OPTIONAL));
+                inputField.setDictionary(XMLHandler.getTagValue(fieldNode, SasInputField.KEY_DICTIONARY));
 
                 inputFields.add(inputField);
             }
+
+            int numberOfConditions = XMLHandler.countNodes(stepnode, "filtercondition");
+            for (int i = 0; i < numberOfConditions; i++) {
+                SasFilterCondition filterCondition = new SasFilterCondition();
+                Node conditionNode = XMLHandler.getSubNodeByNr(stepnode, "filtercondition", i);
+
+                filterCondition.setSasName(XMLHandler.getTagValue(conditionNode, SasFilterCondition.KEY_COLUMN));
+                filterCondition.setOperator(SasFilterCondition.Operator.valueOf(XMLHandler.getTagValue(conditionNode, SasFilterCondition.KEY_OPERATOR)));
+                filterCondition.setValue(XMLHandler.getTagValue(conditionNode, SasFilterCondition.KEY_VALUE));
+
+                filterConditions.add(filterCondition);
+            }
         } catch (Exception ex) {
             throw new KettleXMLException(BaseMessages.getString(PKG, "Exception.XML.UnableToRead"), ex);
         }
@@ -175,6 +340,22 @@ public class SasReaderStepMeta extends BaseStepMeta implements StepMetaInterface
     @Override
     public void saveRep(Repository rep, ObjectId id_transformation, ObjectId id_step) throws KettleException {
         rep.saveStepAttribute(id_transformation, id_step, KEY_FILENAME, fileName);
+        rep.saveStepAttribute(id_transformation, id_step, KEY_PARTITIONED, partitioned);
+        rep.saveStepAttribute(id_transformation, id_step, KEY_READ_AHEAD_ROWS, readAheadRows);
+        rep.saveStepAttribute(id_transformation, id_step, KEY_FILE_MASK, fileMask);
+        rep.saveStepAttribute(id_transformation, id_step, KEY_READER_THREADS, readerThreads);
+        rep.saveStepAttribute(id_transformation, id_step, KEY_DECOMPRESSION_THREADS, decompressionThreads);
+        rep.saveStepAttribute(id_transformation, id_step, KEY_DECOMPRESSOR, decompressor.toString());
+        rep.saveStepAttribute(id_transformation, id_step, KEY_SIDECAR_DIRECTORY, sidecarDirectory);
+        rep.saveStepAttribute(id_transformation, id_step, KEY_SIDECAR_MAX_SIZE, sidecarMaxSize);
+        rep.saveStepAttribute(id_transformation, id_step, KEY_FILENAME_FIELD, filenameField);
+        rep.saveStepAttribute(id_transformation, id_step, KEY_ACCEPT_FILENAMES, acceptFilenames);
+        rep.saveStepAttribute(id_transformation, id_step, KEY_ACCEPTING_FIELD, acceptingField);
+        rep.saveStepAttribute(id_transformation, id_step, KEY_ROW_OFFSET, rowOffset);
+        rep.saveStepAttribute(id_transformation, id_step, KEY_ROW_LIMIT, rowLimit);
+        rep.saveStepAttribute(id_transformation, id_step, KEY_LAZY_CONVERSION, lazyConversion);
+        rep.saveStepAttribute(id_transformation, id_step, KEY_DATE_UNIT, dateUnit.toString());
+        rep.saveStepAttribute(id_transformation, id_step, KEY_METADATA_ONLY, metadataOnly);
 
         int i = 0;
         for (SasInputField inputField : inputFields) {
@@ -186,6 +367,15 @@ public class SasReaderStepMeta extends BaseStepMeta implements StepMetaInterface
             rep.saveStepAttribute(id_transformation, id_step, i, SasInputField.KEY_LENGTH, inputField.getLength());
             rep.saveStepAttribute(id_transformation, id_step, i, SasInputField.KEY_LABEL, inputField.getLabel());
             rep.saveStepAttribute(id_transformation, id_step, i, SasInputField.KEY_OPTIONAL, inputField.getOptional());
+            rep.saveStepAttribute(id_transformation, id_step, i, SasInputField.KEY_DICTIONARY, inputField.getDictionary());
+            i++;
+        }
+
+        i = 0;
+        for (SasFilterCondition filterCondition : filterConditions) {
+            rep.saveStepAttribute(id_transformation, id_step, i, SasFilterCondition.KEY_COLUMN, filterCondition.getSasName());
+            rep.saveStepAttribute(id_transformation, id_step, i, SasFilterCondition.KEY_OPERATOR, filterCondition.getOperator().toString());
+            rep.saveStepAttribute(id_transformation, id_step, i, SasFilterCondition.KEY_VALUE, filterCondition.getValue());
             i++;
         }
     }
@@ -195,6 +385,22 @@ public class SasReaderStepMeta extends BaseStepMeta implements StepMetaInterface
         setDefault();
         try {
             setFileName(rep.getStepAttributeString(id_step, KEY_FILENAME));
+            setPartitioned(rep.getStepAttributeBoolean(id_step, KEY_PARTITIONED));
+            setReadAheadRows((int) rep.getStepAttributeInteger(id_step, KEY_READ_AHEAD_ROWS));
+            setFileMask(rep.getStepAttributeString(id_step, KEY_FILE_MASK));
+            setReaderThreads((int) rep.getStepAttributeInteger(id_step, KEY_READER_THREADS));
+            setDecompressionThreads((int) rep.getStepAttributeInteger(id_step, KEY_DECOMPRESSION_THREADS));
+            setDecompressor(DecompressorType.fromName(rep.getStepAttributeString(id_step, KEY_DECOMPRESSOR)));
+            setSidecarDirectory(rep.getStepAttributeString(id_step, KEY_SIDECAR_DIRECTORY));
+            setSidecarMaxSize(rep.getStepAttributeInteger(id_step, KEY_SIDECAR_MAX_SIZE));
+            setFilenameField(rep.getStepAttributeString(id_step, KEY_FILENAME_FIELD));
+            setAcceptFilenames(rep.getStepAttributeBoolean(id_step, KEY_ACCEPT_FILENAMES));
+            setAcceptingField(rep.getStepAttributeString(id_step, KEY_ACCEPTING_FIELD));
+            setRowOffset(rep.getStepAttributeInteger(id_step, KEY_ROW_OFFSET));
+            setRowLimit(rep.getStepAttributeInteger(id_step, KEY_ROW_LIMIT));
+            setLazyConversion(rep.getStepAttributeBoolean(id_step, KEY_LAZY_CONVERSION));
+            setDateUnit(EpochUnit.fromName(rep.getStepAttributeString(id_step, KEY_DATE_UNIT)));
+            setMetadataOnly(rep.getStepAttributeBoolean(id_step, KEY_METADATA_ONLY));
 
             int numberOfInputFields = rep.countNrStepAttributes(id_step, SasInputField.KEY_ID);
             for (int i = 0; i < numberOfInputFields; i++) {
@@ -208,10 +414,22 @@ public class SasReaderStepMeta extends BaseStepMeta implements StepMetaInterface
                 inputField.setLength((int) rep.getStepAttributeInteger(id_step, i, SasInputField.KEY_LENGTH));
                 inputField.setLabel(rep.getStepAttributeString(id_step, i, SasInputField.KEY_LABEL));
                 inputField.setOptional(rep.getStepAttributeString(id_step, i, SasInputField.KEY_OPTIONAL));
+                inputField.setDictionary(rep.getStepAttributeString(id_step, i, SasInputField.KEY_DICTIONARY));
 
                 inputFields.add(inputField);
             }
 
+            int numberOfConditions = rep.countNrStepAttributes(id_step, SasFilterCondition.KEY_COLUMN);
+            for (int i = 0; i < numberOfConditions; i++) {
+                SasFilterCondition filterCondition = new SasFilterCondition();
+
+                filterCondition.setSasName(rep.getStepAttributeString(id_step, i, SasFilterCondition.KEY_COLUMN));
+                filterCondition.setOperator(SasFilterCondition.Operator.valueOf(rep.getStepAttributeString(id_step, i, SasFilterCondition.KEY_OPERATOR)));
+                filterCondition.setValue(rep.getStepAttributeString(id_step, i, SasFilterCondition.KEY_VALUE));
+
+                filterConditions.add(filterCondition);
+            }
+
         } catch (Exception ex) {
             throw new KettleException(BaseMessages.getString(PKG, "Exception.Rep.UnableToRead") + id_step, ex);
         }
@@ -229,20 +447,43 @@ public class SasReaderStepMeta extends BaseStepMeta implements StepMetaInterface
     public void check(List<CheckResultInterface> remarks, TransMeta transmeta, StepMeta stepMeta, RowMetaInterface prev, String input[], String output[], RowMetaInterface info) {
         CheckResult cr;
 
-        File sasFile = new File(fileName);
+        List<File> files = new ArrayList<>();
+        String fileMaskError = null;
+        try {
+            files = resolveFiles(transmeta);
+        } catch (KettleException ex) {
+            fileMaskError = ex.getMessage().trim();
+        }
+        File sasFile = files.isEmpty() ? null : files.get(0);
         if (fileName.isEmpty()) {
-            // No filename defined
-            cr = new CheckResult(CheckResult.TYPE_RESULT_WARNING, BaseMessages.getString(PKG, "Error.NoFilename"), stepMeta);
+            if (!acceptFilenames) {
+                // No filename defined
+                cr = new CheckResult(CheckResult.TYPE_RESULT_WARNING, BaseMessages.getString(PKG, "Error.NoFilename"), stepMeta);
+                remarks.add(cr);
+            }
+        } else if (fileMaskError != null) {
+            // File mask isn't a valid regular expression
+            cr = new CheckResult(CheckResult.TYPE_RESULT_ERROR, fileMaskError, stepMeta);
+            remarks.add(cr);
+        } else if (sasFile == null) {
+            // No file matches the mask
+            cr = new CheckResult(CheckResult.TYPE_RESULT_WARNING, BaseMessages.getString(PKG, "Error.NoFilesFound"), stepMeta);
             remarks.add(cr);
         } else if (!sasFile.exists() || !sasFile.canRead()) {
             // File cannot be read
             cr = new CheckResult(CheckResult.TYPE_RESULT_ERROR, BaseMessages.getString(PKG, "Error.CantRead"), stepMeta);
             remarks.add(cr);
         } else {
-            InputStream stream = null;
+            if (files.size() > 1) {
+                // Only the first file is checked
+                cr = new CheckResult(CheckResult.TYPE_RESULT_COMMENT, BaseMessages.getString(PKG, "Comment.FilesFound")
+                        .replace("$files", String.valueOf(files.size()))
+                        .replace("$file", sasFile.getName()), stepMeta);
+                remarks.add(cr);
+            }
+            ParsoService parsoService = null;
             try {
-                stream = new FileInputStream(sasFile);
-                ParsoService parsoService = new ParsoService(stream);
+                parsoService = new ParsoService(sasFile);
 
                 if (parsoService.getNumberOfRows() == 0) {
                     // Provided sas file is empty
@@ -250,11 +491,23 @@ public class SasReaderStepMeta extends BaseStepMeta implements StepMetaInterface
                     remarks.add(cr);
                 }
 
-                try {
-                    checkColumnPresence(remarks, stepMeta, parsoService);
-                } catch (KettleException ex) {
-                    cr = new CheckResult(CheckResult.TYPE_RESULT_WARNING, BaseMessages.getString(PKG, "Warning.UnexpectedException"), stepMeta);
-                    remarks.add(cr);
+                if (!metadataOnly) {
+                    // columns aren't read in metadata only mode
+                    for (SasFilterCondition filterCondition : filterConditions) {
+                        if (parsoService.findColumn(filterCondition.getSasName()) == null) {
+                            // Column of filter condition is missing
+                            cr = new CheckResult(CheckResult.TYPE_RESULT_ERROR, BaseMessages.getString(PKG, "Error.NoFilterColumn")
+                                    .replace("$name", filterCondition.getSasName()), stepMeta);
+                            remarks.add(cr);
+                        }
+                    }
+
+                    try {
+                        checkColumnPresence(remarks, stepMeta, parsoService);
+                    } catch (KettleException ex) {
+                        cr = new CheckResult(CheckResult.TYPE_RESULT_WARNING, BaseMessages.getString(PKG, "Warning.UnexpectedException"), stepMeta);
+                        remarks.add(cr);
+                    }
                 }
 
                 // Information about file
@@ -266,21 +519,37 @@ public class SasReaderStepMeta extends BaseStepMeta implements StepMetaInterface
                 // File wasn't found
                 cr = new CheckResult(CheckResult.TYPE_RESULT_ERROR, BaseMessages.getString(PKG, "Error.FileNotFound"), stepMeta);
                 remarks.add(cr);
+            } catch (IOException ex) {
+                // File cannot be read
+                cr = new CheckResult(CheckResult.TYPE_RESULT_ERROR, BaseMessages.getString(PKG, "Error.CantRead"), stepMeta);
+                remarks.add(cr);
             } finally {
                 try {
-                    if (stream != null) {
-                        stream.close();
+                    if (parsoService != null) {
+                        parsoService.dispose();
                     }
                 } catch (IOException ex) {
                 }
             }
         }
-        if (inputFields.isEmpty()) {
+        if (inputFields.isEmpty() && !metadataOnly) {
             // No field is defined
             cr = new CheckResult(CheckResult.TYPE_RESULT_WARNING, BaseMessages.getString(PKG, "Error.NoFields"), stepMeta);
             remarks.add(cr);
         }
-        if (input.length != 0) {
+        if (acceptFilenames) {
+            if (input.length == 0) {
+                // File names are expected on input
+                cr = new CheckResult(CheckResult.TYPE_RESULT_ERROR, BaseMessages.getString(PKG, "Error.NoFilenameInput"), stepMeta);
+                remarks.add(cr);
+            }
+            if (acceptingField.isEmpty() || (prev != null && prev.indexOfValue(acceptingField) < 0)) {
+                // Field with file names isn't on input
+                cr = new CheckResult(CheckResult.TYPE_RESULT_ERROR, BaseMessages.getString(PKG, "Error.NoAcceptingField")
+                        .replace("$name", acceptingField), stepMeta);
+                remarks.add(cr);
+            }
+        } else if (input.length != 0) {
             // Step input is connected
             cr = new CheckResult(CheckResult.TYPE_RESULT_WARNING, BaseMessages.getString(PKG, "Error.Inputs"), stepMeta);
             remarks.add(cr);
@@ -304,6 +573,313 @@ public class SasReaderStepMeta extends BaseStepMeta implements StepMetaInterface
         return fileName;
     }
 
+    /**
+     * @param partitioned if true, every copy of the step reads only its own
+     * range of data pages instead of the whole file
+     */
+    public void setPartitioned(boolean partitioned) {
+        this.partitioned = partitioned;
+    }
+
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+
+    /**
+     * @param readAheadRows number of rows decoded in advance by a background
+     * thread, 0 disables the background reading
+     */
+    public void setReadAheadRows(int readAheadRows) {
+        this.readAheadRows = Math.max(0, readAheadRows);
+    }
+
+    public int getReadAheadRows() {
+        return readAheadRows;
+    }
+
+    /**
+     * @param fileMask regular expression of file names, if it's set, the file
+     * name is a directory and all matching files in it are read
+     */
+    public void setFileMask(String fileMask) {
+        if (fileMask == null) {
+            this.fileMask = "";
+        } else {
+            this.fileMask = fileMask;
+        }
+    }
+
+    public String getFileMask() {
+        return fileMask;
+    }
+
+    /**
+     * @param readerThreads number of files read at once
+     */
+    public void setReaderThreads(int readerThreads) {
+        this.readerThreads = Math.max(1, readerThreads);
+    }
+
+    public int getReaderThreads() {
+        return readerThreads;
+    }
+
+    /**
+     * @param decompressionThreads number of threads decompressing pages of
+     * one compressed file, 1 means pages are decompressed sequentially
+     */
+    public void setDecompressionThreads(int decompressionThreads) {
+        this.decompressionThreads = Math.max(1, decompressionThreads);
+    }
+
+    public int getDecompressionThreads() {
+        return decompressionThreads;
+    }
+
+    /**
+     * @param decompressor decompressors of rows of compressed files, Native
+     * decompressors of the plugin or decompressors of Parso
+     */
+    public void setDecompressor(DecompressorType decompressor) {
+        this.decompressor = decompressor == null ? DecompressorType.Native : decompressor;
+    }
+
+    public DecompressorType getDecompressor() {
+        return decompressor;
+    }
+
+    /**
+     * @param sidecarDirectory directory of columnar copies of read files,
+     * empty if copies aren't written
+     */
+    public void setSidecarDirectory(String sidecarDirectory) {
+        if (sidecarDirectory == null) {
+            this.sidecarDirectory = "";
+        } else {
+            this.sidecarDirectory = sidecarDirectory;
+        }
+    }
+
+    public String getSidecarDirectory() {
+        return sidecarDirectory;
+    }
+
+    /**
+     * @param sidecarMaxSize maximal size of the sidecar directory in MB, the
+     * least recently used copies are deleted when it's exceeded, 0 means no
+     * limit
+     */
+    public void setSidecarMaxSize(long sidecarMaxSize) {
+        this.sidecarMaxSize = Math.max(0, sidecarMaxSize);
+    }
+
+    public long getSidecarMaxSize() {
+        return sidecarMaxSize;
+    }
+
+    /**
+     * @param space variables used in the sidecar directory
+     * @return cache of sidecars or null if the directory isn't set
+     */
+    public SasSidecarCache createSidecarCache(VariableSpace space) {
+        if (sidecarDirectory.isEmpty()) {
+            return null;
+        }
+        File directory = toLocalFile(space.environmentSubstitute(sidecarDirectory));
+        return new SasSidecarCache(directory, sidecarMaxSize * 1024 * 1024);
+    }
+
+    /**
+     * @param filenameField name of output field with the name of source file,
+     * empty if the field isn't added
+     */
+    public void setFilenameField(String filenameField) {
+        if (filenameField == null) {
+            this.filenameField = "";
+        } else {
+            this.filenameField = filenameField;
+        }
+    }
+
+    public String getFilenameField() {
+        return filenameField;
+    }
+
+    /**
+     * @param acceptFilenames if true, names of files to read are taken from
+     * the input field of the step
+     */
+    public void setAcceptFilenames(boolean acceptFilenames) {
+        this.acceptFilenames = acceptFilenames;
+    }
+
+    public boolean isAcceptFilenames() {
+        return acceptFilenames;
+    }
+
+    /**
+     * @param acceptingField name of the input field with file names
+     */
+    public void setAcceptingField(String acceptingField) {
+        if (acceptingField == null) {
+            this.acceptingField = "";
+        } else {
+            this.acceptingField = acceptingField;
+        }
+    }
+
+    public String getAcceptingField() {
+        return acceptingField;
+    }
+
+    /**
+     * @param rowOffset index of the first row read from every file, negative
+     * offset is counted from the end of file
+     */
+    public void setRowOffset(long rowOffset) {
+        this.rowOffset = rowOffset;
+    }
+
+    public long getRowOffset() {
+        return rowOffset;
+    }
+
+    /**
+     * @param rowLimit maximal number of rows read from every file, 0 means no
+     * limit
+     */
+    public void setRowLimit(long rowLimit) {
+        this.rowLimit = Math.max(0, rowLimit);
+    }
+
+    public long getRowLimit() {
+        return rowLimit;
+    }
+
+    /**
+     * @param lazyConversion character columns read as String fields are
+     * emitted as binary strings
+     */
+    public void setLazyConversion(boolean lazyConversion) {
+        this.lazyConversion = lazyConversion;
+    }
+
+    public boolean isLazyConversion() {
+        return lazyConversion;
+    }
+
+    /**
+     * @param metadataOnly emit one row with metadata of every file (see
+     * SasMetadataField) instead of its rows, only headers of files are read
+     */
+    public void setMetadataOnly(boolean metadataOnly) {
+        this.metadataOnly = metadataOnly;
+    }
+
+    public boolean isMetadataOnly() {
+        return metadataOnly;
+    }
+
+    /**
+     * @param dateUnit unit of Integer fields of SAS dates and datetimes
+     */
+    public void setDateUnit(EpochUnit dateUnit) {
+        this.dateUnit = dateUnit == null ? EpochUnit.Milliseconds : dateUnit;
+    }
+
+    public EpochUnit getDateUnit() {
+        return dateUnit;
+    }
+
+    /**
+     * Set the encoding of binary strings of lazily converted fields. The
+     * encoding isn't known before a file is opened, so it's set by the step.
+     *
+     * @param rowMeta output row meta created by getFields
+     * @param encoding Java name of the encoding
+     */
+    public static void setBinaryStringEncoding(RowMetaInterface rowMeta, String encoding) {
+        for (ValueMetaInterface valueMeta : rowMeta.getValueMetaList()) {
+            if (valueMeta.getStorageType() == ValueMetaInterface.STORAGE_TYPE_BINARY_STRING) {
+                valueMeta.setStringEncoding(encoding);
+                valueMeta.getStorageMetadata().setStringEncoding(encoding);
+            }
+        }
+    }
+
+    /**
+     * @return true if only a range of rows is read from every file
+     */
+    public boolean hasRowRange() {
+        return rowOffset != 0 || rowLimit > 0;
+    }
+
+    /**
+     * Get the list of files to read. Without file mask it's the file itself,
+     * otherwise files in the directory matching the mask sorted by name.
+     *
+     * @param space variables used in file name and mask
+     * @return files to read, may be empty
+     * @throws KettleException if the file mask isn't a valid regular
+     * expression
+     */
+    public List<File> resolveFiles(VariableSpace space) throws KettleException {
+        List<File> files = new ArrayList<>();
+        if (fileName.isEmpty()) {
+            return files;
+        }
+        File file = toLocalFile(space.environmentSubstitute(fileName));
+        if (fileMask.isEmpty()) {
+            files.add(file);
+            return files;
+        }
+
+        String mask = space.environmentSubstitute(fileMask);
+        Pattern pattern;
+        try {
+            pattern = Pattern.compile(mask);
+        } catch (PatternSyntaxException ex) {
+            throw new KettleException(BaseMessages.getString(PKG, "Error.FileMask")
+                    .replace("$mask", mask)
+                    .replace("$error", ex.getDescription()));
+        }
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (child.isFile() && pattern.matcher(child.getName()).matches()) {
+                    files.add(child);
+                }
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Convert file name (possibly with file: prefix) to local file.
+     *
+     * @param filename name of file with substituted variables
+     * @return local file
+     */
+    public static File toLocalFile(String filename) {
+        String normalized = FilenameUtils.normalize(filename);
+        if (normalized == null) {
+            normalized = filename;
+        }
+        return new File(normalized.replace("file:", ""));
+    }
+
+    /**
+     * @param filterConditions conditions which must be met by all read rows
+     */
+    public void setFilterConditions(List<SasFilterCondition> filterConditions) {
+        this.filterConditions = filterConditions;
+    }
+
+    public List<SasFilterCondition> getFilterConditions() {
+        return filterConditions;
+    }
+
     public void setInputFields(List<SasInputField> inputFields) {
         this.inputFields = inputFields;
     }
@@ -323,9 +899,26 @@ public class SasReaderStepMeta extends BaseStepMeta implements StepMetaInterface
      * @param parsoService
      */
     public void checkColumnPresence(List<CheckResultInterface> remarks, StepMeta stepMeta, ParsoService parsoService) throws KettleException {
+        checkColumnPresence(inputFields, remarks, stepMeta, parsoService);
+    }
+
+    /**
+     * Same as checkColumnPresence but the check is done on provided fields.
+     * It's used when more files are read at once, because the original ids of
+     * fields are set for the file.
+     *
+     * @param inputFields fields to be checked
+     * @param remarks null if check is executed from processRow
+     * @param stepMeta null if check is executed from processRow
+     * @param parsoService
+     */
+    public void checkColumnPresence(List<SasInputField> inputFields, List<CheckResultInterface> remarks, StepMeta stepMeta, ParsoService parsoService) throws KettleException {
         CheckResult cr;
-        for (SasInputField inputField : inputFields) {
-            int numberOfFoundColumnsInFile = parsoService.countColumnsWithNameSetOrigId(inputField);
+        //all fields are resolved at once using the index of columns
+        int[] numbersOfFoundColumns = parsoService.resolveColumns(inputFields);
+        for (int i = 0; i < inputFields.size(); i++) {
+            SasInputField inputField = inputFields.get(i);
+            int numberOfFoundColumnsInFile = numbersOfFoundColumns == null ? -1 : numbersOfFoundColumns[i];
             if (numberOfFoundColumnsInFile == 0 && !inputField.getOptional()) {
                 if (remarks != null) {
                     cr = new CheckResult(CheckResult.TYPE_RESULT_ERROR, BaseMessages.getString(SasReaderStepMeta.PKG, "Error.NoNameFound").replace("$name", inputField.getSasName()), stepMeta);
@@ -0,0 +1,64 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.input;
+
+/**
+ * Unit of Integer fields created from SAS dates and datetimes. Values are
+ * counted from 1970-01-01 00:00:00 UTC. Days and seconds are rounded down, so
+ * dates before 1970 stay on the right day.
+ */
+public enum EpochUnit {
+    Milliseconds(1L), Seconds(1000L), Days(86400000L);
+
+    private final long millis;
+
+    private EpochUnit(long millis) {
+        this.millis = millis;
+    }
+
+    /**
+     * @param time milliseconds since 1970-01-01 UTC
+     * @return number of units since 1970-01-01 UTC
+     */
+    public long fromMillis(long time) {
+        long units = time / millis;
+        if (time % millis < 0) {
+            units--;
+        }
+        return units;
+    }
+
+    /**
+     * @param name name of unit
+     * @return unit or Milliseconds if there isn't unit with the name
+     */
+    public static EpochUnit fromName(String name) {
+        for (EpochUnit unit : values()) {
+            if (unit.name().equalsIgnoreCase(name)) {
+                return unit;
+            }
+        }
+        return Milliseconds;
+    }
+
+    public static String[] getNames() {
+        String[] names = new String[values().length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = values()[i].name();
+        }
+        return names;
+    }
+}
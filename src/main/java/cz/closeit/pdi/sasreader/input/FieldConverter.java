@@ -0,0 +1,375 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.input;
+
+import cz.closeit.pdi.sasreader.parso.SasPageDecoder;
+
+import java.nio.charset.Charset;
+import java.util.Date;
+
+/**
+ * Converts values of one column from the Java type returned by Parso to the
+ * Kettle type of the field. Converters are chosen once per field before the
+ * first row, so converting of a cell doesn't need to decide between all the
+ * possible combinations of types again.
+ *
+ * Values passed to convert are never null. If a value has unexpected type,
+ * the general conversion of KettleType is used, so results are always the
+ * same as of KettleType.convert.
+ */
+public abstract class FieldConverter {
+
+    protected final SasInputField.KettleType kettleType;
+
+    protected FieldConverter(SasInputField.KettleType kettleType) {
+        this.kettleType = kettleType;
+    }
+
+    /**
+     * @param value non-null value from parso row
+     * @return value of the kettle type
+     */
+    public abstract Object convert(Object value);
+
+    /**
+     * Convert number of a primitive vector. The result is the same as of
+     * convert of the value boxed by Parso, converters of numeric fields
+     * override it to avoid the boxing.
+     *
+     * @param value number which isn't missing
+     * @return value of the kettle type
+     */
+    public Object convertNumber(double value) {
+        return convert(SasPageDecoder.boxNumber(value));
+    }
+
+    /**
+     * Convert date of a primitive vector.
+     *
+     * @param millis date in milliseconds since 1970
+     * @return value of the kettle type
+     */
+    public Object convertMillis(long millis) {
+        return convert(new Date(millis));
+    }
+
+    /**
+     * Create the converter for given types.
+     *
+     * @param valueType Java type of values returned by Parso for the column -
+     * String.class, Date.class, Number.class or null if the type isn't known
+     * @param kettleType type of the output field
+     * @return converter
+     */
+    public static FieldConverter create(Class<?> valueType, SasInputField.KettleType kettleType) {
+        return create(valueType, kettleType, EpochUnit.Milliseconds);
+    }
+
+    /**
+     * Create the converter for given types.
+     *
+     * @param valueType Java type of values returned by Parso for the column -
+     * String.class, Date.class, Number.class or null if the type isn't known
+     * @param kettleType type of the output field
+     * @param dateUnit unit of Integer fields of date columns
+     * @return converter
+     */
+    public static FieldConverter create(Class<?> valueType, SasInputField.KettleType kettleType, EpochUnit dateUnit) {
+        if (valueType == Number.class) {
+            switch (kettleType) {
+                case Integer:
+                    return new NumberToInteger(kettleType);
+                case Number:
+                    return new NumberToNumber(kettleType);
+                case BigNumber:
+                    return new NumberToBigNumber(kettleType);
+                case String:
+                    return new ToText(kettleType);
+                default:
+                    return new General(kettleType);
+            }
+        } else if (valueType == String.class && kettleType == SasInputField.KettleType.String) {
+            return new Identity(kettleType, String.class);
+        } else if (valueType == Date.class) {
+            switch (kettleType) {
+                case Date:
+                    return new Identity(kettleType, Date.class);
+                case Integer:
+                    return new DateToInteger(kettleType, dateUnit);
+                default:
+                    return new General(kettleType);
+            }
+        }
+        return new General(kettleType);
+    }
+
+    /**
+     * Create the converter of a String field with binary string storage (lazy
+     * conversion). Byte arrays of character values are passed unchanged if
+     * the encodings are the same, values of other types are converted to
+     * String and encoded.
+     *
+     * @param fileEncoding encoding of byte arrays returned by Parso
+     * @param outputEncoding encoding of the binary string of output field
+     * @return converter
+     */
+    public static FieldConverter createBinaryString(String fileEncoding, String outputEncoding) {
+        return new ToBinaryString(Charset.forName(fileEncoding), Charset.forName(outputEncoding));
+    }
+
+    /**
+     * Create the converter of a character column read as byte arrays to a
+     * field with normal storage. Byte arrays are decoded to String first.
+     *
+     * @param converter converter of String values
+     * @param fileEncoding encoding of byte arrays returned by Parso
+     * @return converter
+     */
+    public static FieldConverter createDecoding(FieldConverter converter, String fileEncoding) {
+        return new DecodingBytes(converter, Charset.forName(fileEncoding));
+    }
+
+    /**
+     * Create the converter which shares equal converted values through a
+     * dictionary of the column.
+     *
+     * @param converter converter of values
+     * @param dictionary dictionary of the column
+     * @return converter
+     */
+    public static FieldConverter createDictionary(FieldConverter converter, ValueDictionary dictionary) {
+        return new Dictionary(converter, dictionary);
+    }
+
+    /**
+     * Fallback using KettleType conversion.
+     */
+    private static final class General extends FieldConverter {
+
+        General(SasInputField.KettleType kettleType) {
+            super(kettleType);
+        }
+
+        @Override
+        public Object convert(Object value) {
+            return kettleType.needConversion(value) ? kettleType.convert(value) : value;
+        }
+    }
+
+    private static final class Identity extends FieldConverter {
+
+        private final Class<?> valueType;
+
+        Identity(SasInputField.KettleType kettleType, Class<?> valueType) {
+            super(kettleType);
+            this.valueType = valueType;
+        }
+
+        @Override
+        public Object convert(Object value) {
+            if (value.getClass() == valueType) {
+                return value;
+            }
+            return kettleType.needConversion(value) ? kettleType.convert(value) : value;
+        }
+    }
+
+    private static final class NumberToInteger extends FieldConverter {
+
+        NumberToInteger(SasInputField.KettleType kettleType) {
+            super(kettleType);
+        }
+
+        @Override
+        public Object convert(Object value) {
+            if (value instanceof Long) {
+                return value;
+            } else if (value instanceof Number) {
+                return ValueCache.toLong(((Number) value).longValue());
+            }
+            return kettleType.convert(value);
+        }
+
+        @Override
+        public Object convertNumber(double value) {
+            return ValueCache.toLong(SasPageDecoder.isWholeNumber(value) ? Math.round(value) : (long) value);
+        }
+    }
+
+    private static final class NumberToNumber extends FieldConverter {
+
+        NumberToNumber(SasInputField.KettleType kettleType) {
+            super(kettleType);
+        }
+
+        @Override
+        public Object convert(Object value) {
+            if (value instanceof Double) {
+                return value;
+            } else if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            }
+            return kettleType.convert(value);
+        }
+
+        @Override
+        public Object convertNumber(double value) {
+            return SasPageDecoder.isWholeNumber(value) ? (double) Math.round(value) : value;
+        }
+    }
+
+    private static final class NumberToBigNumber extends FieldConverter {
+
+        NumberToBigNumber(SasInputField.KettleType kettleType) {
+            super(kettleType);
+        }
+
+        @Override
+        public Object convert(Object value) {
+            if (value instanceof Double) {
+                return ValueCache.toBigDecimal(((Double) value).doubleValue());
+            } else if (value instanceof Long || value instanceof Integer) {
+                return ValueCache.toBigDecimal(((Number) value).longValue());
+            }
+            return kettleType.convert(value);
+        }
+
+        @Override
+        public Object convertNumber(double value) {
+            return SasPageDecoder.isWholeNumber(value) ? ValueCache.toBigDecimal(Math.round(value)) : ValueCache.toBigDecimal(value);
+        }
+    }
+
+    private static final class ToText extends FieldConverter {
+
+        ToText(SasInputField.KettleType kettleType) {
+            super(kettleType);
+        }
+
+        @Override
+        public Object convert(Object value) {
+            return value.toString();
+        }
+
+        @Override
+        public Object convertNumber(double value) {
+            return SasPageDecoder.isWholeNumber(value) ? Long.toString(Math.round(value)) : Double.toString(value);
+        }
+    }
+
+    private static final class ToBinaryString extends FieldConverter {
+
+        private final Charset fileCharset;
+        private final Charset outputCharset;
+        private final boolean sameCharset;
+
+        ToBinaryString(Charset fileCharset, Charset outputCharset) {
+            super(SasInputField.KettleType.String);
+            this.fileCharset = fileCharset;
+            this.outputCharset = outputCharset;
+            this.sameCharset = fileCharset.equals(outputCharset);
+        }
+
+        @Override
+        public Object convert(Object value) {
+            if (value instanceof byte[]) {
+                return sameCharset ? value : new String((byte[]) value, fileCharset).getBytes(outputCharset);
+            }
+            Object text = kettleType.convert(value);
+            return text == null ? null : ((String) text).getBytes(outputCharset);
+        }
+    }
+
+    private static final class DecodingBytes extends FieldConverter {
+
+        private final FieldConverter converter;
+        private final Charset fileCharset;
+
+        DecodingBytes(FieldConverter converter, Charset fileCharset) {
+            super(converter.kettleType);
+            this.converter = converter;
+            this.fileCharset = fileCharset;
+        }
+
+        @Override
+        public Object convert(Object value) {
+            if (value instanceof byte[]) {
+                return converter.convert(new String((byte[]) value, fileCharset));
+            }
+            return converter.convert(value);
+        }
+
+        @Override
+        public Object convertNumber(double value) {
+            return converter.convertNumber(value);
+        }
+
+        @Override
+        public Object convertMillis(long millis) {
+            return converter.convertMillis(millis);
+        }
+    }
+
+    private static final class Dictionary extends FieldConverter {
+
+        private final FieldConverter converter;
+        private final ValueDictionary dictionary;
+
+        Dictionary(FieldConverter converter, ValueDictionary dictionary) {
+            super(converter.kettleType);
+            this.converter = converter;
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        public Object convert(Object value) {
+            return dictionary.intern(converter.convert(value));
+        }
+
+        @Override
+        public Object convertNumber(double value) {
+            return dictionary.intern(converter.convertNumber(value));
+        }
+
+        @Override
+        public Object convertMillis(long millis) {
+            return dictionary.intern(converter.convertMillis(millis));
+        }
+    }
+
+    private static final class DateToInteger extends FieldConverter {
+
+        private final EpochUnit unit;
+
+        DateToInteger(SasInputField.KettleType kettleType, EpochUnit unit) {
+            super(kettleType);
+            this.unit = unit;
+        }
+
+        @Override
+        public Object convert(Object value) {
+            if (value instanceof Date) {
+                return ValueCache.toLong(unit.fromMillis(((Date) value).getTime()));
+            }
+            return kettleType.convert(value);
+        }
+
+        @Override
+        public Object convertMillis(long millis) {
+            return ValueCache.toLong(unit.fromMillis(millis));
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.input;
+
+import com.epam.parso.Column;
+
+import cz.closeit.pdi.sasreader.parso.ParsoService;
+import cz.closeit.pdi.sasreader.parso.SasColumnBatch;
+import cz.closeit.pdi.sasreader.parso.SasFormats;
+import cz.closeit.pdi.sasreader.parso.SasRowValues;
+
+import java.util.List;
+
+/**
+ * Mapping of rows of one sas file to output rows. It sets the projection of
+ * provided ParsoService to the columns of input fields and chooses the
+ * converter of every field, so it has to be created for every file.
+ */
+public class RowConverter {
+
+    private final List<SasInputField> inputFields;
+    private final int[] rowIndexes;
+    private final FieldConverter[] converters;
+    private long conversionFailures = 0;
+
+    /**
+     * @param inputFields fields with original ids found in the file
+     * @param parsoService service reading the file
+     */
+    public RowConverter(List<SasInputField> inputFields, ParsoService parsoService) {
+        this(inputFields, parsoService, null);
+    }
+
+    /**
+     * @param inputFields fields with original ids found in the file
+     * @param parsoService service reading the file
+     * @param binaryEncoding encoding of String fields of character columns
+     * emitted as binary strings (lazy conversion), null if all fields have
+     * normal storage
+     */
+    public RowConverter(List<SasInputField> inputFields, ParsoService parsoService, String binaryEncoding) {
+        this(inputFields, parsoService, binaryEncoding, EpochUnit.Milliseconds);
+    }
+
+    /**
+     * @param inputFields fields with original ids found in the file
+     * @param parsoService service reading the file
+     * @param binaryEncoding encoding of String fields of character columns
+     * emitted as binary strings (lazy conversion), null if all fields have
+     * normal storage
+     * @param dateUnit unit of Integer fields of date columns
+     */
+    public RowConverter(List<SasInputField> inputFields, ParsoService parsoService, String binaryEncoding, EpochUnit dateUnit) {
+        this.inputFields = inputFields;
+
+        //decode only columns used by input fields
+        rowIndexes = parsoService.setProjection(inputFields);
+
+        //choose the conversion of every field once for all rows
+        converters = new FieldConverter[inputFields.size()];
+        for (int i = 0; i < inputFields.size(); i++) {
+            SasInputField inputField = inputFields.get(i);
+            Column column = parsoService.getColumn(inputField.getOriginalId());
+            Class<?> valueType = column == null ? null : SasFormats.getValueType(column);
+            if (binaryEncoding != null && inputField.isCharacterString()) {
+                converters[i] = FieldConverter.createBinaryString(parsoService.getEncoding(), binaryEncoding);
+            } else {
+                converters[i] = FieldConverter.create(valueType, inputField.getKettleType(), dateUnit);
+                if (valueType == String.class && parsoService.isByteOutput()) {
+                    converters[i] = FieldConverter.createDecoding(converters[i], parsoService.getEncoding());
+                }
+            }
+            if (inputField.getDictionary() && inputField.getKettleType() == SasInputField.KettleType.String) {
+                converters[i] = FieldConverter.createDictionary(converters[i], new ValueDictionary());
+            }
+        }
+    }
+
+    /**
+     * Convert row of sas file and put values of input fields to the beginning
+     * of the output row.
+     *
+     * @param rowFileValues row returned by ParsoService
+     * @param rowValues output row
+     * @throws ClassCastException if conversion of some value failed
+     */
+    public void convert(Object[] rowFileValues, Object[] rowValues) {
+        convert(rowFileValues, null, rowValues);
+    }
+
+    /**
+     * Convert the current row of SasPageDecoder, values of projected columns
+     * are decoded directly into the output row.
+     *
+     * @param rowFileValues current row of the decoder
+     * @param rowValues output row
+     * @throws ClassCastException if conversion of some value failed
+     */
+    public void convert(SasRowValues rowFileValues, Object[] rowValues) {
+        convert(null, rowFileValues, rowValues);
+    }
+
+    /**
+     * Convert row of a batch of column vectors. Numbers and dates are
+     * converted from primitive values without boxing.
+     *
+     * @param batch batch decoded by SasPageDecoder
+     * @param row index of the row in the batch
+     * @param rowValues output row
+     * @throws ClassCastException if conversion of some value failed
+     */
+    public void convert(SasColumnBatch batch, int row, Object[] rowValues) {
+        int outputIndex = 0;
+        try {
+            for (; outputIndex < converters.length; outputIndex++) {
+                int rowIndex = rowIndexes[outputIndex];
+                if (rowIndex < 0 || batch.isNull(rowIndex, row)) {
+                    rowValues[outputIndex] = null;
+                    continue;
+                }
+                Object value;
+                switch (batch.getType(rowIndex)) {
+                    case SasColumnBatch.VECTOR_NUMBER:
+                        value = converters[outputIndex].convertNumber(batch.getNumber(rowIndex, row));
+                        break;
+                    case SasColumnBatch.VECTOR_MILLIS:
+                        value = converters[outputIndex].convertMillis(batch.getMillis(rowIndex, row));
+                        break;
+                    default:
+                        value = converters[outputIndex].convert(batch.getObject(rowIndex, row));
+                        break;
+                }
+                if (value == null) {
+                    //the value couldn't be converted to the kettle type
+                    conversionFailures++;
+                }
+                rowValues[outputIndex] = value;
+            }
+        } catch (ClassCastException e) {
+            batch.setRow(row);
+            throw conversionFailed(outputIndex, batch.getValue(rowIndexes[outputIndex]), e);
+        }
+    }
+
+    private void convert(Object[] rowFileArray, SasRowValues rowFileValues, Object[] rowValues) {
+        int outputIndex = 0;
+        try {
+            for (; outputIndex < converters.length; outputIndex++) {
+                //missing optional fields have index -1
+                int rowIndex = rowIndexes[outputIndex];
+                Object objectFromSasFile = rowIndex < 0 ? null : getValue(rowFileArray, rowFileValues, rowIndex);
+                Object value = objectFromSasFile == null ? null : converters[outputIndex].convert(objectFromSasFile);
+                if (value == null && objectFromSasFile != null) {
+                    //the value couldn't be converted to the kettle type
+                    conversionFailures++;
+                }
+                rowValues[outputIndex] = value;
+            }
+        } catch (ClassCastException e) {
+            throw conversionFailed(outputIndex, getValue(rowFileArray, rowFileValues, rowIndexes[outputIndex]), e);
+        }
+    }
+
+    private ClassCastException conversionFailed(int outputIndex, Object objectFromSasFile, ClassCastException e) {
+        SasInputField inputField = inputFields.get(outputIndex);
+        String msg = String.format("Converting attribute %s - %s(%s) -> %s(%s) failed [%s]",
+                inputField.getSasName(),
+                inputField.getOriginalId(),
+                objectFromSasFile.getClass().getName(),
+                inputField.getName(),
+                inputField.getKettleType(),
+                e.getMessage());
+        return new ClassCastException(msg);
+    }
+
+    private static Object getValue(Object[] rowFileArray, SasRowValues rowFileValues, int rowIndex) {
+        return rowFileArray != null ? rowFileArray[rowIndex] : rowFileValues.getValue(rowIndex);
+    }
+
+    /**
+     * @return number of non-null values converted to null so far
+     */
+    public long getConversionFailures() {
+        return conversionFailures;
+    }
+}
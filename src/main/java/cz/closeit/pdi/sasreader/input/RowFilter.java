@@ -0,0 +1,246 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.input;
+
+import com.epam.parso.Column;
+
+import cz.closeit.pdi.sasreader.SasReaderStepMeta;
+import cz.closeit.pdi.sasreader.parso.ParsoService;
+import cz.closeit.pdi.sasreader.parso.SasFormats;
+import cz.closeit.pdi.sasreader.parso.SasRowValues;
+
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.i18n.BaseMessages;
+
+/**
+ * Filter of rows of one sas file. Conditions are evaluated on values returned
+ * by Parso before any conversion, all conditions must be met (AND). Columns of
+ * conditions are added to the projection of provided ParsoService, so the
+ * filter has to be created after the projection of input fields is set.
+ */
+public class RowFilter {
+
+    private static final Class<?> PKG = SasReaderStepMeta.PKG;
+    private static final String[] DATE_FORMATS = {"yyyy-MM-dd HH:mm:ss.SSS", "yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd",
+        "yyyy/MM/dd HH:mm:ss.SSS", "yyyy/MM/dd HH:mm:ss", "yyyy/MM/dd"};
+
+    private final Condition[] conditions;
+
+    /**
+     * @param filterConditions conditions of the step
+     * @param parsoService service reading the file
+     * @throws KettleException if column of some condition isn't in the file or
+     * the value can't be parsed
+     */
+    public RowFilter(List<SasFilterCondition> filterConditions, ParsoService parsoService) throws KettleException {
+        conditions = new Condition[filterConditions.size()];
+        for (int i = 0; i < conditions.length; i++) {
+            SasFilterCondition filterCondition = filterConditions.get(i);
+            Column column = parsoService.findColumn(filterCondition.getSasName());
+            if (column == null) {
+                throw new KettleException(BaseMessages.getString(PKG, "Error.NoFilterColumn")
+                        .replace("$name", filterCondition.getSasName()));
+            }
+            conditions[i] = new Condition(parsoService.addToProjection(column), filterCondition.getOperator(),
+                    SasFormats.getValueType(column), parsoService.isByteOutput() ? Charset.forName(parsoService.getEncoding()) : null);
+            if (filterCondition.getOperator() == SasFilterCondition.Operator.In) {
+                for (String item : filterCondition.getValue().split(",")) {
+                    conditions[i].values.add(parseValue(item.trim(), conditions[i].valueType, filterCondition));
+                }
+            } else if (filterCondition.getOperator() != SasFilterCondition.Operator.IsNull
+                    && filterCondition.getOperator() != SasFilterCondition.Operator.IsNotNull) {
+                conditions[i].value = parseValue(filterCondition.getValue(), conditions[i].valueType, filterCondition);
+            }
+        }
+    }
+
+    /**
+     * Create filter of rows if there is any condition.
+     *
+     * @param filterConditions conditions of the step
+     * @param parsoService service reading the file
+     * @return filter or null if there isn't any condition
+     * @throws KettleException if column of some condition isn't in the file or
+     * the value can't be parsed
+     */
+    public static RowFilter create(List<SasFilterCondition> filterConditions, ParsoService parsoService) throws KettleException {
+        if (filterConditions == null || filterConditions.isEmpty()) {
+            return null;
+        }
+        return new RowFilter(filterConditions, parsoService);
+    }
+
+    /**
+     * @param rowFileValues row returned by ParsoService
+     * @return true if the row meets all conditions
+     */
+    public boolean accept(Object[] rowFileValues) {
+        for (Condition condition : conditions) {
+            if (!condition.accept(rowFileValues[condition.rowIndex])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param rowFileValues current row of SasPageDecoder, only columns of
+     * conditions are decoded
+     * @return true if the row meets all conditions
+     */
+    public boolean accept(SasRowValues rowFileValues) {
+        for (Condition condition : conditions) {
+            if (!condition.accept(rowFileValues.getValue(condition.rowIndex))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Filter a batch of rows in place. Accepted rows are moved to the
+     * beginning of the buffer in their original order, the rest of the buffer
+     * is cleared.
+     *
+     * @param rows buffer with rows returned by ParsoService
+     * @param count number of rows in the buffer
+     * @return number of accepted rows
+     */
+    public int acceptAll(Object[][] rows, int count) {
+        int accepted = 0;
+        for (int i = 0; i < count; i++) {
+            Object[] row = rows[i];
+            rows[i] = null;
+            if (accept(row)) {
+                rows[accepted++] = row;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Convert value of condition to the type used for comparison, numbers are
+     * compared as doubles and dates as milliseconds.
+     */
+    private static Comparable<?> parseValue(String text, Class<?> valueType, SasFilterCondition filterCondition) throws KettleException {
+        if (valueType == String.class) {
+            return text;
+        }
+        if (valueType == Date.class) {
+            for (String format : DATE_FORMATS) {
+                SimpleDateFormat dateFormat = new SimpleDateFormat(format);
+                dateFormat.setLenient(false);
+                // Parso creates dates in UTC
+                dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+                try {
+                    return dateFormat.parse(text.trim()).getTime();
+                } catch (ParseException ex) {
+                    // try next format
+                }
+            }
+        } else {
+            try {
+                return Double.valueOf(text.trim());
+            } catch (NumberFormatException ex) {
+                // reported below
+            }
+        }
+        throw new KettleException(BaseMessages.getString(PKG, "Error.FilterValue")
+                .replace("$value", text)
+                .replace("$name", filterCondition.getSasName()));
+    }
+
+    /**
+     * Convert value returned by Parso to the type used for comparison.
+     */
+    private static Object normalize(Object value, Charset charset) {
+        if (value instanceof byte[]) {
+            return new String((byte[]) value, charset);
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        return value;
+    }
+
+    private static class Condition {
+
+        private final int rowIndex;
+        private final SasFilterCondition.Operator operator;
+        private final Class<?> valueType;
+        private final Charset charset;
+        private final Set<Object> values = new HashSet<>();
+        private Comparable<?> value;
+
+        Condition(int rowIndex, SasFilterCondition.Operator operator, Class<?> valueType, Charset charset) {
+            this.rowIndex = rowIndex;
+            this.operator = operator;
+            this.valueType = valueType;
+            this.charset = charset;
+        }
+
+        @SuppressWarnings("unchecked")
+        boolean accept(Object rowValue) {
+            switch (operator) {
+                case IsNull:
+                    return rowValue == null;
+                case IsNotNull:
+                    return rowValue != null;
+                default:
+                    break;
+            }
+            if (rowValue == null) {
+                return false;
+            }
+            Object key = normalize(rowValue, charset);
+            if (operator == SasFilterCondition.Operator.In) {
+                return values.contains(key);
+            }
+            if (key.getClass() != value.getClass()) {
+                return false;
+            }
+            int result = ((Comparable<Object>) key).compareTo(value);
+            switch (operator) {
+                case Equal:
+                    return result == 0;
+                case NotEqual:
+                    return result != 0;
+                case Less:
+                    return result < 0;
+                case LessOrEqual:
+                    return result <= 0;
+                case Greater:
+                    return result > 0;
+                case GreaterOrEqual:
+                    return result >= 0;
+                default:
+                    return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.input;
+
+/**
+ * Condition on a column of sas file. Rows not matching the condition are
+ * dropped before they are converted to output rows.
+ */
+public class SasFilterCondition {
+
+    public static final String KEY_COLUMN = "filtercolumn";
+    public static final String KEY_OPERATOR = "filteroperator";
+    public static final String KEY_VALUE = "filtervalue";
+
+    private String sasName = "";
+    private Operator operator = Operator.Equal;
+    private String value = "";
+
+    public SasFilterCondition() {
+    }
+
+    public SasFilterCondition(SasFilterCondition conditionToClone) {
+        sasName = conditionToClone.getSasName();
+        operator = conditionToClone.getOperator();
+        value = conditionToClone.getValue();
+    }
+
+    public enum Operator {
+        Equal("="),
+        NotEqual("<>"),
+        Less("<"),
+        LessOrEqual("<="),
+        Greater(">"),
+        GreaterOrEqual(">="),
+        In("IN"),
+        IsNull("IS NULL"),
+        IsNotNull("IS NOT NULL");
+
+        private final String symbol;
+
+        private Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        /**
+         * @param symbol symbol of operator (e.g. &lt;=)
+         * @return operator or null if there isn't operator with the symbol
+         */
+        public static Operator fromSymbol(String symbol) {
+            for (Operator operator : values()) {
+                if (operator.symbol.equalsIgnoreCase(symbol)) {
+                    return operator;
+                }
+            }
+            return null;
+        }
+
+        public static String[] getSymbols() {
+            String[] symbols = new String[values().length];
+            for (int i = 0; i < symbols.length; i++) {
+                symbols[i] = values()[i].symbol;
+            }
+            return symbols;
+        }
+    }
+
+    public void setSasName(String sasName) {
+        if (sasName == null) {
+            this.sasName = "";
+        } else {
+            this.sasName = sasName;
+        }
+    }
+
+    public String getSasName() {
+        return sasName;
+    }
+
+    public void setOperator(Operator operator) {
+        this.operator = operator == null ? Operator.Equal : operator;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * @param value compared value, comma separated list for operator IN,
+     * dates in format yyyy-MM-dd or yyyy-MM-dd HH:mm:ss
+     */
+    public void setValue(String value) {
+        if (value == null) {
+            this.value = "";
+        } else {
+            this.value = value;
+        }
+    }
+
+    public String getValue() {
+        return value;
+    }
+}
@@ -33,6 +33,7 @@ public class SasInputField {
     public static final String KEY_LENGTH = "length";
     public static final String KEY_LABEL = "label";
     public static final String KEY_OPTIONAL = "optional";
+    public static final String KEY_DICTIONARY = "dictionary";
 
     private int originalId;
     private String sasName = "";
@@ -42,6 +43,7 @@ public class SasInputField {
     private int length = 0;
     private String label = "";
     private Boolean optional = false;
+    private Boolean dictionary = false;
 
     public SasInputField() {
     }
@@ -55,6 +57,7 @@ public class SasInputField {
         length = fieldToClone.getLength();
         label = fieldToClone.getLabel();
         optional = fieldToClone.getOptional();
+        dictionary = fieldToClone.getDictionary();
     }
 
     public enum SasType {
@@ -116,13 +119,13 @@ public class SasInputField {
             if (object instanceof Integer) {
                 switch (kettleConst) {
                     case ValueMetaInterface.TYPE_INTEGER:
-                        return ((Integer) object).longValue();
+                        return ValueCache.toLong((Integer) object);
                     case ValueMetaInterface.TYPE_STRING:
                         return ((Integer) object).toString();
                     case ValueMetaInterface.TYPE_NUMBER:
                         return ((Integer) object).doubleValue();
                     case ValueMetaInterface.TYPE_BIGNUMBER:
-                        return new BigDecimal((Integer) object);
+                        return ValueCache.toBigDecimal((Integer) object);
                     case ValueMetaInterface.TYPE_DATE:
                         return new Date(((Integer) object).longValue());
                     default:
@@ -137,7 +140,7 @@ public class SasInputField {
                     case ValueMetaInterface.TYPE_NUMBER:
                         return ((Long) object).doubleValue();
                     case ValueMetaInterface.TYPE_BIGNUMBER:
-                        return new BigDecimal((Long) object);
+                        return ValueCache.toBigDecimal((Long) object);
                     case ValueMetaInterface.TYPE_DATE:
                         return new Date((Long) object);
                     default:
@@ -148,9 +151,9 @@ public class SasInputField {
                     case ValueMetaInterface.TYPE_NUMBER:
                         return object;
                     case ValueMetaInterface.TYPE_BIGNUMBER:
-                        return new BigDecimal(((Double) object).toString());
+                        return ValueCache.toBigDecimal((Double) object);
                     case ValueMetaInterface.TYPE_INTEGER:
-                        return ((Double) object).longValue();
+                        return ValueCache.toLong(((Double) object).longValue());
                     case ValueMetaInterface.TYPE_STRING:
                         return ((Double) object).toString();
                     case ValueMetaInterface.TYPE_DATE:
@@ -163,9 +166,9 @@ public class SasInputField {
                     case ValueMetaInterface.TYPE_DATE:
                         return object;
                     case ValueMetaInterface.TYPE_NUMBER:
-                        return Long.valueOf(((Date) object).getTime()).doubleValue();
+                        return (double) ((Date) object).getTime();
                     case ValueMetaInterface.TYPE_BIGNUMBER:
-                        return new BigDecimal(((Date) object).getTime());
+                        return ValueCache.toBigDecimal(((Date) object).getTime());
                     case ValueMetaInterface.TYPE_INTEGER:
                         return ((Date) object).getTime();
                     case ValueMetaInterface.TYPE_STRING:
@@ -180,13 +183,13 @@ public class SasInputField {
                         case ValueMetaInterface.TYPE_STRING:
                             return object;
                         case ValueMetaInterface.TYPE_INTEGER:
-                            return new Long((String) object);
+                            return ValueCache.toLong(Long.parseLong((String) object));
                         case ValueMetaInterface.TYPE_NUMBER:
-                            return new Double((String) object);
+                            return Double.valueOf((String) object);
                         case ValueMetaInterface.TYPE_BIGNUMBER:
                             return new BigDecimal((String) object);
                         case ValueMetaInterface.TYPE_DATE:
-                            return new Date(new Long((String) object));
+                            return new Date(Long.parseLong((String) object));
                         default:
                             return null;
                     }
@@ -214,6 +217,14 @@ public class SasInputField {
         return vmi;
     }
 
+    /**
+     * @return true if character column is read as String field, so it can be
+     * emitted as binary string without any conversion
+     */
+    public boolean isCharacterString() {
+        return sasType == SasType.Character && kettleType == KettleType.String;
+    }
+
     public void setOriginalId(int id) {
         originalId = id;
     }
@@ -298,4 +309,24 @@ public class SasInputField {
         return optional;
     }
 
+    public void setDictionary(String dictionary) {
+        if ("Y".equalsIgnoreCase(dictionary) || "YES".equalsIgnoreCase(dictionary) || "TRUE".equalsIgnoreCase(dictionary)) {
+            setDictionary(Boolean.TRUE);
+        } else if ("N".equalsIgnoreCase(dictionary) || "NO".equalsIgnoreCase(dictionary) || "FALSE".equalsIgnoreCase(dictionary)) {
+            setDictionary(Boolean.FALSE);
+        }
+    }
+
+    /**
+     * @param dictionary true if equal values of the String field should share
+     * one instance (see ValueDictionary)
+     */
+    public void setDictionary(Boolean dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    public Boolean getDictionary() {
+        return dictionary;
+    }
+
 }
@@ -0,0 +1,112 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.input;
+
+import com.epam.parso.SasFileProperties;
+
+import cz.closeit.pdi.sasreader.parso.ParsoService;
+import cz.closeit.pdi.sasreader.parso.RdcDecompressor;
+import cz.closeit.pdi.sasreader.parso.RleDecompressor;
+
+import java.io.File;
+import org.pentaho.di.core.exception.KettlePluginException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaFactory;
+
+/**
+ * Fields of rows emitted in metadata only mode, one row per file. All values
+ * are taken from the header of the file, rows aren't read at all.
+ */
+public enum SasMetadataField {
+    Path("file", ValueMetaInterface.TYPE_STRING),
+    Rows("rows", ValueMetaInterface.TYPE_INTEGER),
+    Columns("columns", ValueMetaInterface.TYPE_INTEGER),
+    Compression("compression", ValueMetaInterface.TYPE_STRING),
+    Encoding("encoding", ValueMetaInterface.TYPE_STRING),
+    PageLength("page_length", ValueMetaInterface.TYPE_INTEGER),
+    PageCount("page_count", ValueMetaInterface.TYPE_INTEGER),
+    Created("created", ValueMetaInterface.TYPE_DATE),
+    Modified("modified", ValueMetaInterface.TYPE_DATE),
+    FileSize("file_size", ValueMetaInterface.TYPE_INTEGER);
+
+    private final String fieldName;
+    private final int kettleType;
+
+    private SasMetadataField(String fieldName, int kettleType) {
+        this.fieldName = fieldName;
+        this.kettleType = kettleType;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    /**
+     * Add all metadata fields to the row meta.
+     *
+     * @param rowMeta meta of output rows
+     * @param origin name of the step
+     * @throws KettlePluginException
+     */
+    public static void addFields(RowMetaInterface rowMeta, String origin) throws KettlePluginException {
+        for (SasMetadataField field : values()) {
+            ValueMetaInterface valueMeta = ValueMetaFactory.createValueMeta(field.fieldName, field.kettleType);
+            valueMeta.setOrigin(origin);
+            rowMeta.addValueMeta(valueMeta);
+        }
+    }
+
+    /**
+     * Get values of all metadata fields of the opened file.
+     *
+     * @param file sas file
+     * @param parsoService service of the file
+     * @param size size of output row
+     * @return output row
+     */
+    public static Object[] getValues(File file, ParsoService parsoService, int size) {
+        SasFileProperties properties = parsoService.getProperties();
+        Object[] row = new Object[Math.max(size, values().length)];
+        row[Path.ordinal()] = file.getAbsolutePath();
+        row[Rows.ordinal()] = parsoService.getNumberOfRows();
+        row[Columns.ordinal()] = parsoService.getNumberOfColumns();
+        row[Compression.ordinal()] = getCompression(properties.getCompressionMethod());
+        row[Encoding.ordinal()] = parsoService.getEncoding();
+        row[PageLength.ordinal()] = (long) properties.getPageLength();
+        row[PageCount.ordinal()] = properties.getPageCount();
+        row[Created.ordinal()] = properties.getDateCreated();
+        row[Modified.ordinal()] = properties.getDateModified();
+        row[FileSize.ordinal()] = file.length();
+        return row;
+    }
+
+    /**
+     * @param method compression method of the header
+     * @return value of SAS option COMPRESS (NO, CHAR or BINARY) or the method
+     * itself if it's unknown
+     */
+    private static String getCompression(String method) {
+        if (method == null) {
+            return "NO";
+        } else if (RleDecompressor.COMPRESSION_METHOD.equals(method)) {
+            return "CHAR";
+        } else if (RdcDecompressor.COMPRESSION_METHOD.equals(method)) {
+            return "BINARY";
+        }
+        return method;
+    }
+}
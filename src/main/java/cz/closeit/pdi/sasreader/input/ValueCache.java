@@ -0,0 +1,126 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.input;
+
+import java.math.BigDecimal;
+
+/**
+ * Allocation-light creation of numeric values of output fields. Long and
+ * BigDecimal instances of small integers (codes, counts, years, days since
+ * 1970...) are cached, so converting them doesn't create new objects, and
+ * BigDecimal is created from double without formatting the double to String
+ * and parsing it again.
+ *
+ * Cached values are immutable, so the caches are shared by all threads.
+ */
+public final class ValueCache {
+
+    public static final int CACHE_LOW = -32768;
+    public static final int CACHE_HIGH = 32767;
+
+    private static final double TWO_POW_53 = 9007199254740992.0;
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9};
+
+    private static final Long[] LONGS = new Long[CACHE_HIGH - CACHE_LOW + 1];
+    private static final BigDecimal[] BIG_DECIMALS = new BigDecimal[CACHE_HIGH - CACHE_LOW + 1];
+    private static final BigDecimal[] BIG_DECIMALS_SCALE_1 = new BigDecimal[CACHE_HIGH - CACHE_LOW + 1];
+
+    private ValueCache() {
+    }
+
+    /**
+     * @param value long value
+     * @return cached instance for small values, new Long otherwise
+     */
+    public static Long toLong(long value) {
+        if (value < CACHE_LOW || value > CACHE_HIGH) {
+            return value;
+        }
+        int index = (int) value - CACHE_LOW;
+        Long cached = LONGS[index];
+        if (cached == null) {
+            cached = value;
+            LONGS[index] = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * @param value long value
+     * @return BigDecimal with scale 0, cached for small values
+     */
+    public static BigDecimal toBigDecimal(long value) {
+        if (value < CACHE_LOW || value > CACHE_HIGH) {
+            return BigDecimal.valueOf(value);
+        }
+        int index = (int) value - CACHE_LOW;
+        BigDecimal cached = BIG_DECIMALS[index];
+        if (cached == null) {
+            cached = BigDecimal.valueOf(value);
+            BIG_DECIMALS[index] = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * Convert double to BigDecimal equal to new
+     * BigDecimal(Double.toString(value)). The shortest decimal which converts
+     * back to the same double is found by scaling the value by powers of ten,
+     * so no String is created for values with up to 9 decimal places. Like
+     * Double.toString, values between 10^-3 and 10^7 have at least one decimal
+     * place (e.g. 3.0). Values outside this range have the shortest scale, not
+     * the exponent of the scientific notation of Double.toString, so they are
+     * equal by compareTo only.
+     *
+     * @param value double value
+     * @return BigDecimal
+     * @throws NumberFormatException if value is NaN or infinite
+     */
+    public static BigDecimal toBigDecimal(double value) {
+        double magnitude = Math.abs(value);
+        boolean plain = magnitude == 0 || (magnitude >= 1e-3 && magnitude < 1e7);
+        for (int scale = 0; scale < POWERS_OF_TEN.length; scale++) {
+            double scaled = value * POWERS_OF_TEN[scale];
+            if (!(Math.abs(scaled) < TWO_POW_53)) {
+                break;
+            }
+            long unscaled = Math.round(scaled);
+            if (unscaled / POWERS_OF_TEN[scale] == value) {
+                if (scale > 0) {
+                    return BigDecimal.valueOf(unscaled, scale);
+                } else if (plain) {
+                    return toBigDecimalScale1(unscaled);
+                } else {
+                    return toBigDecimal(unscaled);
+                }
+            }
+        }
+        return new BigDecimal(Double.toString(value));
+    }
+
+    private static BigDecimal toBigDecimalScale1(long value) {
+        if (value < CACHE_LOW || value > CACHE_HIGH) {
+            return BigDecimal.valueOf(value * 10, 1);
+        }
+        int index = (int) value - CACHE_LOW;
+        BigDecimal cached = BIG_DECIMALS_SCALE_1[index];
+        if (cached == null) {
+            cached = BigDecimal.valueOf(value * 10, 1);
+            BIG_DECIMALS_SCALE_1[index] = cached;
+        }
+        return cached;
+    }
+}
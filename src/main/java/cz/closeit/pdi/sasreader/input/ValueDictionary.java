@@ -0,0 +1,88 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.input;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bounded dictionary of values of one column. Equal values are replaced by
+ * the first instance seen, so rows of low-cardinality columns (codes,
+ * statuses...) share one String or byte array per distinct value. When the
+ * column has more distinct values than the dictionary can hold, the
+ * dictionary is dropped and values are passed unchanged, because interning
+ * wouldn't save memory anymore and lookups would only cost time.
+ *
+ * The dictionary isn't thread safe, every converted file has its own one.
+ */
+public class ValueDictionary {
+
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    private final int maxSize;
+    private Map<Object, Object> values = new HashMap<>();
+
+    public ValueDictionary() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize maximal number of distinct values, the dictionary is
+     * disabled if the column has more of them
+     */
+    public ValueDictionary(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param value String, byte array (binary string) or other immutable
+     * value
+     * @return instance equal to value shared by all equal values, or value
+     * itself if it's null or the dictionary is disabled
+     */
+    public Object intern(Object value) {
+        if (value == null || values == null) {
+            return value;
+        }
+        Object key = value instanceof byte[] ? ByteBuffer.wrap((byte[]) value) : value;
+        Object shared = values.get(key);
+        if (shared != null) {
+            return shared;
+        }
+        if (values.size() >= maxSize) {
+            //too many distinct values, fall back to plain values
+            values = null;
+            return value;
+        }
+        values.put(key, value);
+        return value;
+    }
+
+    /**
+     * @return false if the cardinality of the column exceeded the limit
+     */
+    public boolean isEnabled() {
+        return values != null;
+    }
+
+    /**
+     * @return number of distinct values in the dictionary
+     */
+    public int size() {
+        return values == null ? 0 : values.size();
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Source reading the file using positional reads of file channel. It's the
+ * default source, the file is released as soon as the source is closed.
+ */
+public class ChannelSasInputSource extends SasInputSource {
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long length;
+
+    public ChannelSasInputSource(File file) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.channel = this.file.getChannel();
+        this.length = channel.size();
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public int read(long position, byte[] b, int off, int len) throws IOException {
+        if (position >= length) {
+            return -1;
+        }
+        return channel.read(ByteBuffer.wrap(b, off, len), position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import com.epam.parso.Column;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Index of columns of sas file by case insensitive name and by id. It's built
+ * once per file, so resolving of all input fields doesn't scan the columns
+ * again for every field.
+ */
+public class ColumnIndex {
+
+    private static final int[] NO_IDS = new int[0];
+
+    private final Map<String, int[]> idsByName;
+    private final Column[] columnsById;
+
+    public ColumnIndex(List<Column> columns) {
+        idsByName = new HashMap<>(columns.size() * 2);
+        int maxId = 0;
+        for (Column column : columns) {
+            maxId = Math.max(maxId, column.getId());
+        }
+        columnsById = new Column[maxId + 1];
+        for (Column column : columns) {
+            if (column.getId() >= 0) {
+                columnsById[column.getId()] = column;
+            }
+            String key = toKey(column.getName());
+            int[] ids = idsByName.get(key);
+            if (ids == null) {
+                ids = new int[]{column.getId()};
+            } else {
+                // duplicities are rare, so the array is just extended
+                int[] extended = new int[ids.length + 1];
+                System.arraycopy(ids, 0, extended, 0, ids.length);
+                extended[ids.length] = column.getId();
+                ids = extended;
+            }
+            idsByName.put(key, ids);
+        }
+    }
+
+    /**
+     * @param name name of column, case insensitive
+     * @return ids of all columns with the name in the order of columns, empty
+     * array if there isn't any
+     */
+    public int[] getIds(String name) {
+        if (name == null) {
+            return NO_IDS;
+        }
+        int[] ids = idsByName.get(toKey(name));
+        return ids == null ? NO_IDS : ids;
+    }
+
+    /**
+     * @param id id of column
+     * @return column or null if there isn't column with the id
+     */
+    public Column getColumn(int id) {
+        if (id < 0 || id >= columnsById.length) {
+            return null;
+        }
+        return columnsById[id];
+    }
+
+    /**
+     * @param name name of column, case insensitive
+     * @return the last column with the name or null if there isn't any
+     */
+    public Column findColumn(String name) {
+        int[] ids = getIds(name);
+        return ids.length == 0 ? null : getColumn(ids[ids.length - 1]);
+    }
+
+    private static String toKey(String name) {
+        return name.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * List of column names passed to Parso to decode only selected columns. Parso
+ * asks the list for every column of every row, so lookups are backed by a
+ * hash map instead of walking the list.
+ */
+public class ColumnProjection extends AbstractList<String> {
+
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    /**
+     * Add column to the projection. Column which is already present isn't
+     * added again.
+     *
+     * @param name exact name of the column in sas file
+     * @return index of the column in projected row
+     */
+    public int addColumn(String name) {
+        Integer index = indexes.get(name);
+        if (index == null) {
+            index = names.size();
+            names.add(name);
+            indexes.put(name, index);
+        }
+        return index;
+    }
+
+    @Override
+    public String get(int index) {
+        return names.get(index);
+    }
+
+    @Override
+    public int size() {
+        return names.size();
+    }
+
+    @Override
+    public boolean contains(Object name) {
+        return indexes.containsKey(name);
+    }
+
+    @Override
+    public int indexOf(Object name) {
+        Integer index = indexes.get(name);
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    public int lastIndexOf(Object name) {
+        return indexOf(name);
+    }
+}
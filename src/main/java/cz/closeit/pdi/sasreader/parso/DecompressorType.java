@@ -0,0 +1,65 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+/**
+ * Implementation of decompression of rows of compressed files. Native
+ * decompressors of the plugin decompress rows into reused buffers, Parso
+ * decompressors allocate a new array for every row. Native decompressors fall
+ * back to Parso for unknown compression methods.
+ */
+public enum DecompressorType {
+    Native, Parso;
+
+    private static final SasDecompressor RLE = new RleDecompressor();
+    private static final SasDecompressor RDC = new RdcDecompressor();
+
+    /**
+     * @param compressionMethod compression method of the file
+     * @return decompressor or null if the method isn't supported
+     */
+    public SasDecompressor forMethod(String compressionMethod) {
+        if (this == Native) {
+            if (RleDecompressor.COMPRESSION_METHOD.equals(compressionMethod)) {
+                return RLE;
+            } else if (RdcDecompressor.COMPRESSION_METHOD.equals(compressionMethod)) {
+                return RDC;
+            }
+        }
+        return ParsoDecompressor.forMethod(compressionMethod);
+    }
+
+    /**
+     * @param name name of type
+     * @return type or Native if there isn't type with the name
+     */
+    public static DecompressorType fromName(String name) {
+        for (DecompressorType type : values()) {
+            if (type.name().equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+        return Native;
+    }
+
+    public static String[] getNames() {
+        String[] names = new String[values().length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = values()[i].name();
+        }
+        return names;
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Source which maps the whole file to memory, so reading doesn't need any
+ * system call and the OS page cache is used directly. One mapping is limited
+ * to 2 GB, so bigger files are mapped in more segments.
+ *
+ * The mapping is released by garbage collector some time after the source is
+ * closed, the file stays locked on Windows until then. That's why the source
+ * is used only when it's enabled (see SasInputSource.open).
+ */
+public class MappedSasInputSource extends SasInputSource {
+
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+    private final long length;
+    private MappedByteBuffer[] segments;
+
+    public MappedSasInputSource(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            // mapping stays valid after the channel is closed
+            FileChannel channel = randomAccessFile.getChannel();
+            length = channel.size();
+            segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) >> SEGMENT_BITS)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << SEGMENT_BITS;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, length - start));
+            }
+        }
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public int read(long position, byte[] b, int off, int len) throws IOException {
+        if (segments == null) {
+            throw new IOException("Source is closed");
+        }
+        if (position >= length) {
+            return -1;
+        }
+        // reads don't cross the segment boundary, readFully continues in the next one
+        ByteBuffer segment = segments[(int) (position >> SEGMENT_BITS)].duplicate();
+        segment.position((int) (position & (SEGMENT_SIZE - 1)));
+        int count = Math.min(len, segment.remaining());
+        segment.get(b, off, count);
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        segments = null;
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream which looks like a complete sas7bdat file to Parso but contains
+ * only rows from the selected range of pages. The stream is composed of the
+ * file header, all metadata pages and then pages from the range. Rows are
+ * removed from the last metadata page if it isn't part of the range and pages
+ * without any row are skipped, because Parso can't handle them between data
+ * pages. Optionally only every n-th page of the range is served, which is
+ * used for sampling of rows across the whole file.
+ */
+public class PageRangeInputStream extends InputStream {
+
+    private final SasInputSource source;
+    private final SasFileLayout layout;
+    private final long firstDataPage;
+    private final long fromPage;
+    private final long toPage;
+    private final long pageStep;
+
+    private final byte[] buffer;
+    private int bufferPosition = 0;
+    private int bufferLimit = 0;
+    private long nextPage = -1;
+    private long bytesRead = 0;
+    private long readNanos = 0;
+
+    /**
+     * @param source opened sas file, it's closed together with this stream
+     * @param layout layout of the file
+     * @param firstDataPage first page with rows, all previous pages contain
+     * only metadata
+     * @param fromPage first page of the range (inclusive)
+     * @param toPage last page of the range (exclusive)
+     * @throws IOException
+     */
+    public PageRangeInputStream(SasInputSource source, SasFileLayout layout, long firstDataPage, long fromPage, long toPage) throws IOException {
+        this(source, layout, firstDataPage, fromPage, toPage, 1);
+    }
+
+    /**
+     * @param source opened sas file, it's closed together with this stream
+     * @param layout layout of the file
+     * @param firstDataPage first page with rows, all previous pages contain
+     * only metadata
+     * @param fromPage first page of the range (inclusive)
+     * @param toPage last page of the range (exclusive)
+     * @param pageStep only every pageStep-th page of the range is served
+     * @throws IOException
+     */
+    public PageRangeInputStream(SasInputSource source, SasFileLayout layout, long firstDataPage, long fromPage, long toPage, long pageStep) throws IOException {
+        this.source = source;
+        this.layout = layout;
+        this.firstDataPage = firstDataPage;
+        this.fromPage = Math.max(fromPage, firstDataPage);
+        this.toPage = Math.min(toPage, layout.getPageCount());
+        this.pageStep = Math.max(1, pageStep);
+        this.buffer = new byte[Math.max(layout.getHeaderLength(), layout.getPageLength())];
+
+        readSource(0, layout.getHeaderLength());
+        bufferLimit = layout.getHeaderLength();
+        nextPage = 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fillBuffer()) {
+            return -1;
+        }
+        return buffer[bufferPosition++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fillBuffer()) {
+            return -1;
+        }
+        int count = Math.min(len, bufferLimit - bufferPosition);
+        System.arraycopy(buffer, bufferPosition, b, off, count);
+        bufferPosition += count;
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && fillBuffer()) {
+            int count = (int) Math.min(n - skipped, bufferLimit - bufferPosition);
+            bufferPosition += count;
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return bufferLimit - bufferPosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    /**
+     * @return number of bytes read from the file (header and whole pages,
+     * including pages which were skipped)
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return time spent in reading from the file in nanoseconds
+     */
+    public long getReadNanos() {
+        return readNanos;
+    }
+
+    private void readSource(long position, int length) throws IOException {
+        long start = System.nanoTime();
+        source.readFully(position, buffer, 0, length);
+        readNanos += System.nanoTime() - start;
+        bytesRead += length;
+    }
+
+    /**
+     * Load next page which should be passed to Parso.
+     *
+     * @return false if there isn't any other page
+     */
+    private boolean fillBuffer() throws IOException {
+        while (bufferPosition == bufferLimit) {
+            long page = nextPage;
+            if (page > firstDataPage && page < fromPage) {
+                page = fromPage;
+            }
+            if (page >= layout.getPageCount() || (page > firstDataPage && page >= toPage)) {
+                return false;
+            }
+            nextPage = page >= fromPage ? page + pageStep : page + 1;
+            readSource(layout.getPageOffset(page), layout.getPageLength());
+            bufferPosition = 0;
+            bufferLimit = layout.getPageLength();
+
+            if (page == firstDataPage && (page < fromPage || page >= toPage)) {
+                // the page still contains metadata needed by Parso
+                if (layout.getPageType(buffer) == SasFileLayout.PAGE_DATA_TYPE) {
+                    bufferLimit = 0;
+                } else {
+                    layout.removeRows(buffer);
+                }
+            } else if (page > firstDataPage && layout.countRows(buffer) == 0) {
+                bufferLimit = 0;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,343 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import com.epam.parso.SasFileReader;
+import com.epam.parso.impl.SasFileReaderImpl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes rows of one file on a pool of threads. A background thread reads
+ * raw pages of the file sequentially in chunks of consecutive pages, every
+ * chunk is then decompressed and decoded by its own Parso reader on the pool.
+ * Decoded chunks are returned in the order of pages, so the order of rows is
+ * the same as of sequential reading. It pays off for compressed files, where
+ * decompression is the most expensive part of reading.
+ *
+ * The number of chunks read in advance is limited, the reading thread waits
+ * until the oldest chunks are taken.
+ */
+public class ParallelPageDecoder implements Runnable {
+
+    public static final int DEFAULT_CHUNK_PAGES = 4;
+
+    private static final Chunk END = new Chunk(null);
+
+    private final SasInputSource source;
+    private final SasFileLayout layout;
+    private final long firstDataPage;
+    private final long fromPage;
+    private final long toPage;
+    private final int chunkPages;
+    private final List<String> projection;
+    private final boolean byteOutput;
+    private final SasReadStatistics statistics;
+    private final byte[] metadata;
+    private final ExecutorService workers;
+    private final BlockingQueue<Chunk> chunks;
+    private final Thread thread;
+
+    private volatile IOException error = null;
+    private volatile boolean stopped = false;
+    private boolean finished = false;
+    private Object[][] current = null;
+    private int position = 0;
+    private long rowsToSkip;
+
+    /**
+     * Start decoding of the page range in new threads.
+     *
+     * @param source opened sas file, it's closed by stop
+     * @param layout layout of the file
+     * @param firstDataPage first page with rows, all previous pages contain
+     * only metadata
+     * @param fromPage first page of the range (inclusive)
+     * @param toPage last page of the range (exclusive)
+     * @param rowsToSkip number of rows at the beginning of the range which
+     * aren't returned
+     * @param projection names of decoded columns, null for all columns
+     * @param byteOutput return character values as byte arrays
+     * @param threads number of decoding threads
+     * @param chunkPages number of pages decoded by one task
+     * @param threadName prefix of names of threads
+     * @param statistics statistics collecting io and time of decoding, may be
+     * null
+     * @throws IOException if metadata of the file can't be read
+     */
+    public ParallelPageDecoder(SasInputSource source, SasFileLayout layout, long firstDataPage, long fromPage, long toPage,
+            long rowsToSkip, List<String> projection, boolean byteOutput, int threads, int chunkPages, final String threadName,
+            SasReadStatistics statistics) throws IOException {
+        this.source = source;
+        this.layout = layout;
+        this.firstDataPage = firstDataPage;
+        this.fromPage = Math.max(fromPage, firstDataPage);
+        this.toPage = Math.min(toPage, layout.getPageCount());
+        this.rowsToSkip = rowsToSkip;
+        this.chunkPages = Math.max(1, chunkPages);
+        this.projection = projection;
+        this.byteOutput = byteOutput;
+        this.statistics = statistics;
+
+        // the header and metadata pages are shared by readers of all chunks
+        long start = System.nanoTime();
+        metadata = new byte[(int) layout.getPageOffset(Math.min(firstDataPage + 1, layout.getPageCount()))];
+        source.readFully(0, metadata, 0, metadata.length);
+        addIo(metadata.length, System.nanoTime() - start);
+
+        final AtomicInteger threadNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread worker = new Thread(runnable, threadName + " " + threadNumber.incrementAndGet());
+                worker.setDaemon(true);
+                return worker;
+            }
+        });
+        chunks = new ArrayBlockingQueue<>(2 * Math.max(1, threads) + 1);
+        thread = new Thread(this, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            for (long page = fromPage; page < toPage && !stopped; page += chunkPages) {
+                final long chunkFrom = page;
+                final long chunkTo = Math.min(toPage, page + chunkPages);
+                final ChunkSource chunkSource = readChunk(chunkFrom, chunkTo);
+                chunks.put(new Chunk(workers.submit(new Callable<Object[][]>() {
+                    @Override
+                    public Object[][] call() throws IOException {
+                        return decodeChunk(chunkSource, chunkFrom, chunkTo);
+                    }
+                })));
+            }
+        } catch (IOException ex) {
+            error = ex;
+        } catch (InterruptedException ex) {
+            // reading was stopped
+            return;
+        }
+        try {
+            chunks.put(END);
+        } catch (InterruptedException ex) {
+            // reading was stopped
+        }
+    }
+
+    /**
+     * Fill provided buffer with next decoded rows, wait for the decoding
+     * threads if necessary.
+     *
+     * @param buffer
+     * @return number of rows in buffer, 0 if there isn't any other row
+     * @throws IOException if the reading or decoding failed
+     */
+    public int getNextRows(Object[][] buffer) throws IOException {
+        int count = 0;
+        while (count < buffer.length && nextChunk()) {
+            int length = Math.min(buffer.length - count, current.length - position);
+            System.arraycopy(current, position, buffer, count, length);
+            Arrays.fill(current, position, position + length, null);
+            position += length;
+            count += length;
+        }
+        return count;
+    }
+
+    /**
+     * Get next decoded row, wait for the decoding threads if necessary.
+     *
+     * @return next row or null if there isn't any other row
+     * @throws IOException if the reading or decoding failed
+     */
+    public Object[] getNextRow() throws IOException {
+        if (!nextChunk()) {
+            return null;
+        }
+        Object[] row = current[position];
+        current[position++] = null;
+        return row;
+    }
+
+    /**
+     * Stop reading and decoding, wait for the reading thread and close the
+     * file.
+     */
+    public void stop() {
+        stopped = true;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdownNow();
+        for (Chunk chunk : chunks) {
+            if (chunk.rows != null) {
+                chunk.rows.cancel(true);
+            }
+        }
+        chunks.clear();
+        current = null;
+        try {
+            source.close();
+        } catch (IOException ex) {
+            // nothing to do, the file was only read
+        }
+    }
+
+    /**
+     * Make sure the current chunk has some rows left.
+     *
+     * @return false if there isn't any other row
+     */
+    private boolean nextChunk() throws IOException {
+        while (!finished && (current == null || position == current.length)) {
+            Chunk chunk;
+            try {
+                chunk = chunks.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException(ex);
+            }
+            if (chunk == END) {
+                finished = true;
+                break;
+            }
+            try {
+                current = chunk.rows.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException(ex);
+            } catch (ExecutionException ex) {
+                finished = true;
+                error = ex.getCause() instanceof IOException ? (IOException) ex.getCause() : new IOException(ex.getCause());
+                break;
+            }
+            position = (int) Math.min(rowsToSkip, current.length);
+            rowsToSkip -= position;
+        }
+        if (finished && error != null) {
+            IOException ex = error;
+            error = null;
+            throw ex;
+        }
+        return !finished;
+    }
+
+    /**
+     * Read raw pages of the chunk, pages of the metadata are already read.
+     */
+    private ChunkSource readChunk(long chunkFrom, long chunkTo) throws IOException {
+        long from = Math.max(chunkFrom, firstDataPage + 1);
+        long to = Math.max(from, chunkTo);
+        long offset = layout.getPageOffset(from);
+        byte[] pages = new byte[(int) (layout.getPageOffset(to) - offset)];
+        long start = System.nanoTime();
+        source.readFully(offset, pages, 0, pages.length);
+        addIo(pages.length, System.nanoTime() - start);
+        return new ChunkSource(metadata, offset, pages, source.length());
+    }
+
+    private Object[][] decodeChunk(ChunkSource chunkSource, long chunkFrom, long chunkTo) throws IOException {
+        long start = System.nanoTime();
+        SasFileReader parsoReader = new SasFileReaderImpl(
+                new PageRangeInputStream(chunkSource, layout, firstDataPage, chunkFrom, chunkTo), byteOutput);
+        List<Object[]> rows = new ArrayList<>();
+        Object[] row;
+        while (!stopped && (row = parsoReader.readNext(projection)) != null) {
+            rows.add(row);
+        }
+        if (statistics != null) {
+            statistics.addDecode(System.nanoTime() - start);
+        }
+        return rows.toArray(new Object[rows.size()][]);
+    }
+
+    private void addIo(long bytes, long nanos) {
+        if (statistics != null) {
+            statistics.addIo(bytes, bytes / layout.getPageLength(), nanos);
+        }
+    }
+
+    private static final class Chunk {
+
+        private final Future<Object[][]> rows;
+
+        private Chunk(Future<Object[][]> rows) {
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Source serving the header and metadata pages and raw pages of one
+     * chunk from memory.
+     */
+    private static final class ChunkSource extends SasInputSource {
+
+        private final byte[] metadata;
+        private final long pagesOffset;
+        private final byte[] pages;
+        private final long length;
+
+        ChunkSource(byte[] metadata, long pagesOffset, byte[] pages, long length) {
+            this.metadata = metadata;
+            this.pagesOffset = pagesOffset;
+            this.pages = pages;
+            this.length = length;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public int read(long position, byte[] b, int off, int len) throws IOException {
+            if (position < metadata.length) {
+                int count = (int) Math.min(len, metadata.length - position);
+                System.arraycopy(metadata, (int) position, b, off, count);
+                return count;
+            }
+            if (position >= pagesOffset && position < pagesOffset + pages.length) {
+                int count = (int) Math.min(len, pagesOffset + pages.length - position);
+                System.arraycopy(pages, (int) (position - pagesOffset), b, off, count);
+                return count;
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() {
+            // nothing to release, the file is closed by the decoder
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Decompressor delegating to decompressors of Parso. They aren't public, so
+ * they are called by reflection, and every row is decompressed into a new
+ * array which is then copied into the row buffer. It's a fallback for the own
+ * decompressors and the reference they are compared with.
+ */
+public class ParsoDecompressor implements SasDecompressor {
+
+    private static final String CHAR_DECOMPRESSOR = "com.epam.parso.impl.CharDecompressor";
+    private static final String BIN_DECOMPRESSOR = "com.epam.parso.impl.BinDecompressor";
+
+    private final Object decompressor;
+    private final Method decompressRow;
+
+    private ParsoDecompressor(Object decompressor, Method decompressRow) {
+        this.decompressor = decompressor;
+        this.decompressRow = decompressRow;
+    }
+
+    /**
+     * @param compressionMethod compression method of the file
+     * @return decompressor of Parso or null if Parso doesn't know the method
+     * or its decompressor isn't accessible
+     */
+    public static ParsoDecompressor forMethod(String compressionMethod) {
+        String className;
+        if (RleDecompressor.COMPRESSION_METHOD.equals(compressionMethod)) {
+            className = CHAR_DECOMPRESSOR;
+        } else if (RdcDecompressor.COMPRESSION_METHOD.equals(compressionMethod)) {
+            className = BIN_DECOMPRESSOR;
+        } else {
+            return null;
+        }
+        try {
+            Class<?> decompressorClass = Class.forName(className);
+            Field instance = decompressorClass.getDeclaredField("INSTANCE");
+            instance.setAccessible(true);
+            Method decompressRow = decompressorClass.getDeclaredMethod("decompressRow", int.class, int.class, int.class, byte[].class);
+            decompressRow.setAccessible(true);
+            return new ParsoDecompressor(instance.get(null), decompressRow);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public void decompress(byte[] page, int offset, int length, byte[] row, int rowOffset, int rowLength) throws IOException {
+        try {
+            byte[] result = (byte[]) decompressRow.invoke(decompressor, offset, length, rowLength, page);
+            System.arraycopy(result, 0, row, rowOffset, rowLength);
+        } catch (IllegalAccessException ex) {
+            throw new IOException(ex);
+        } catch (InvocationTargetException ex) {
+            throw new IOException(ex.getCause());
+        }
+    }
+}
@@ -17,30 +17,109 @@
 package cz.closeit.pdi.sasreader.parso;
 
 import com.epam.parso.Column;
+import com.epam.parso.SasFileProperties;
 import com.epam.parso.SasFileReader;
 import com.epam.parso.impl.SasFileReaderImpl;
 
 import cz.closeit.pdi.sasreader.SasReaderStepMeta;
 import cz.closeit.pdi.sasreader.input.SasInputField;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.variables.VariableSpace;
+
 public class ParsoService {
 
+    public static final String VARIABLE_TYPE_SAMPLE_ROWS = "SAS_READER_TYPE_SAMPLE_ROWS";
+    public static final String VARIABLE_TYPE_SAMPLE_MILLIS = "SAS_READER_TYPE_SAMPLE_MILLIS";
+
     private static final int KETTLE_TYPE_ANALYZING_LIMIT_ROWS = 7000;
+    private static final long KETTLE_TYPE_ANALYZING_LIMIT_MILLIS = 500;
+    private static final int KETTLE_TYPE_ANALYZING_BATCH_ROWS = 100;
+    private static final int READ_AHEAD_BATCH_ROWS = 256;
 
     private SasFileReader parsoReader = null;
     private InputStream stream = null;
     private boolean isReady = false;
+    private SasFileProperties properties = null;
+    private List<Column> columns = null;
+    private ColumnIndex columnIndex = null;
+    private SasMetadataCache.Entry metadata = null;
+
+    private File file = null;
+    private boolean byteOutput = false;
+    private long firstDataPage = -1;
+    private RowReadAhead readAhead = null;
+    private ColumnProjection projection = null;
+    private long remainingRows = -1;
+    private SasReadStatistics statistics = null;
+    private long rangeFromPage = -1;
+    private long rangeToPage = -1;
+    private long rangePageStep = 1;
+    private long rangeSkippedRows = 0;
+    private SasPageDecoder decoder = null;
+    private ParallelPageDecoder parallelDecoder = null;
+    private DecompressorType decompressorType = DecompressorType.Native;
+    private SasSidecarCache sidecarCache = null;
 
     public ParsoService(InputStream inputStream) {
         init(inputStream);
     }
 
+    /**
+     * Open the sas file. Unlike the stream constructor, the service knows
+     * where the rows start in the file, so it's able to read only selected
+     * pages using readPageRange. Metadata of the file are taken from
+     * SasMetadataCache if possible, the file is then opened by Parso only
+     * when the first row is read.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public ParsoService(File file) throws IOException {
+        this(file, false);
+    }
+
+    /**
+     * Open the sas file, optionally with character values returned as byte
+     * arrays.
+     *
+     * @param file
+     * @param byteOutput return values of character columns as byte arrays in
+     * the encoding of the file (see getEncoding) instead of Strings
+     * @throws IOException
+     */
+    public ParsoService(File file, boolean byteOutput) throws IOException {
+        this.file = file;
+        this.byteOutput = byteOutput;
+        metadata = SasMetadataCache.getInstance().get(file);
+        if (metadata != null) {
+            properties = metadata.getProperties();
+            columns = metadata.getColumns();
+            firstDataPage = metadata.getFirstDataPage();
+            isReady = true;
+            return;
+        }
+
+        SasInputSource source = SasInputSource.open(file);
+        init(source);
+
+        // Parso stops reading metadata right after the first page with rows
+        SasFileLayout layout = getLayout();
+        long metadataLength = source.position() - layout.getHeaderLength();
+        firstDataPage = Math.min(metadataLength / layout.getPageLength() - 1, layout.getPageCount());
+        firstDataPage = Math.max(firstDataPage, 0);
+        metadata = SasMetadataCache.getInstance().put(file, properties, columns, firstDataPage);
+    }
+
     /**
      * Get information about columns and save them to provided SasReaderStepMeta
      * object. This function doesn't close provided input stream.
@@ -50,11 +129,64 @@ public class ParsoService {
      * @param preferBigNumber use KettleType BigNumber instead of Number
      */
     public static void getFieldsFromFile(InputStream inputStream, SasReaderStepMeta stepMeta, boolean preferBigNumber) {
-        ParsoService service = new ParsoService(inputStream);
+        getFieldsFromService(new ParsoService(inputStream), stepMeta, preferBigNumber,
+                KETTLE_TYPE_ANALYZING_LIMIT_ROWS, KETTLE_TYPE_ANALYZING_LIMIT_MILLIS);
+    }
+
+    /**
+     * Get information about columns from the sas file and save them to
+     * provided SasReaderStepMeta object.
+     *
+     * @param file
+     * @param stepMeta
+     * @param preferBigNumber use KettleType BigNumber instead of Number
+     * @throws IOException
+     */
+    public static void getFieldsFromFile(File file, SasReaderStepMeta stepMeta, boolean preferBigNumber) throws IOException {
+        getFieldsFromFile(file, stepMeta, preferBigNumber, KETTLE_TYPE_ANALYZING_LIMIT_ROWS, KETTLE_TYPE_ANALYZING_LIMIT_MILLIS);
+    }
 
+    /**
+     * Same as getFieldsFromFile, but the limits of sampling are taken from
+     * variables SAS_READER_TYPE_SAMPLE_ROWS and SAS_READER_TYPE_SAMPLE_MILLIS.
+     *
+     * @param file
+     * @param stepMeta
+     * @param preferBigNumber use KettleType BigNumber instead of Number
+     * @param space variables
+     * @throws IOException
+     */
+    public static void getFieldsFromFile(File file, SasReaderStepMeta stepMeta, boolean preferBigNumber, VariableSpace space) throws IOException {
+        getFieldsFromFile(file, stepMeta, preferBigNumber,
+                Const.toInt(space.getVariable(VARIABLE_TYPE_SAMPLE_ROWS), KETTLE_TYPE_ANALYZING_LIMIT_ROWS),
+                Const.toLong(space.getVariable(VARIABLE_TYPE_SAMPLE_MILLIS), KETTLE_TYPE_ANALYZING_LIMIT_MILLIS));
+    }
+
+    /**
+     * Get information about columns from the sas file and save them to
+     * provided SasReaderStepMeta object. Types which can't be inferred from
+     * formats of columns are found from sampled rows.
+     *
+     * @param file
+     * @param stepMeta
+     * @param preferBigNumber use KettleType BigNumber instead of Number
+     * @param sampleRows maximal number of sampled rows
+     * @param sampleMillis maximal time of sampling in milliseconds
+     * @throws IOException
+     */
+    public static void getFieldsFromFile(File file, SasReaderStepMeta stepMeta, boolean preferBigNumber, int sampleRows, long sampleMillis) throws IOException {
+        ParsoService service = new ParsoService(file);
+        try {
+            getFieldsFromService(service, stepMeta, preferBigNumber, sampleRows, sampleMillis);
+        } finally {
+            service.dispose();
+        }
+    }
+
+    private static void getFieldsFromService(ParsoService service, SasReaderStepMeta stepMeta, boolean preferBigNumber, int sampleRows, long sampleMillis) {
     	List<SasInputField> inputFields = new ArrayList<>();
 
-        for (Column column : service.parsoReader.getColumns()) {
+        for (Column column : service.columns) {
             SasInputField field = new SasInputField();
 
             field.setOriginalId(column.getId());
@@ -64,77 +196,328 @@ public class ParsoService {
                 field.setSasType(SasInputField.SasType.Numeric);
             } else {
                 field.setSasType(SasInputField.SasType.Character);
-                field.setKettleType(SasInputField.KettleType.String);
+            }
+            SasInputField.KettleType kettleType = SasFormats.inferKettleType(column, preferBigNumber);
+            if (kettleType != null) {
+                field.setKettleType(kettleType);
             }
             field.setLength(column.getLength());
             field.setLabel(column.getLabel());
 
             inputFields.add(field);
         }
-        analyzeKettleTypes(inputFields, service.parsoReader, preferBigNumber);
+        analyzeKettleTypes(inputFields, service, preferBigNumber, sampleRows, sampleMillis);
         stepMeta.setInputFields(inputFields);
     }
 
-    private static void analyzeKettleTypes(List<SasInputField> inputFields, SasFileReader parsoReader, boolean preferBigNumber) {
-
-        boolean loadAnother = true;
-        int rowCounter = 0;
-
-        while (loadAnother) {
-            rowCounter++;
-            loadAnother = false;
-            Object[] row;
-            try {
-                row = parsoReader.readNext();
-            } catch (IOException ex) {
-                break;
-            }
-            if (row == null) {
-                break;
+    /**
+     * Find types of numeric fields from values of sampled rows. Only fields
+     * with unknown type and fields with Integer type inferred from format
+     * (which may still hide decimals) are decoded. Rows are sampled from
+     * pages spread across the whole file, sampling ends when the limit of rows
+     * or time is reached or when all unknown types are found. Numeric fields
+     * without any sampled value become Number.
+     */
+    private static void analyzeKettleTypes(List<SasInputField> inputFields, ParsoService service, boolean preferBigNumber, int sampleRows, long sampleMillis) {
+        SasInputField.KettleType decimalType = preferBigNumber ? SasInputField.KettleType.BigNumber : SasInputField.KettleType.Number;
+        List<SasInputField> sampledFields = new ArrayList<>();
+        for (SasInputField inputField : inputFields) {
+            if (inputField.getKettleType() == SasInputField.KettleType.NotDefined
+                    || inputField.getKettleType() == SasInputField.KettleType.Integer) {
+                sampledFields.add(inputField);
             }
+        }
+        if (sampledFields.isEmpty()) {
+            return;
+        }
+        // fields whose type can still change
+        int undecided = sampledFields.size();
 
-            for (SasInputField inputField : inputFields) {
-                if (inputField.getKettleType() == SasInputField.KettleType.NotDefined) {
-                    int objectIndex = inputField.getOriginalId() - 1;
-                    if (row[objectIndex] == null) {
-                        loadAnother = true;
-                        continue;
-                    }
-                    if (row[objectIndex] instanceof Integer) {
-                        inputField.setKettleType(SasInputField.KettleType.Integer);
-                    } else if (row[objectIndex] instanceof Long) {
-                        inputField.setKettleType(SasInputField.KettleType.Integer);
-                    } else if (row[objectIndex] instanceof Date) {
-                        inputField.setKettleType(SasInputField.KettleType.Date);
-                    } else if (row[objectIndex] instanceof Double && preferBigNumber == false) {
-                        inputField.setKettleType(SasInputField.KettleType.Number);
-                    } else if (row[objectIndex] instanceof Double && preferBigNumber == true) {
-                        inputField.setKettleType(SasInputField.KettleType.BigNumber);
+        int[] rowIndexes = service.setProjection(sampledFields);
+        // 0 - no value, 1 - integers, 2 - decimals, 3 - dates
+        int[] found = new int[sampledFields.size()];
+        long deadline = System.currentTimeMillis() + sampleMillis;
+        try {
+            service.sampleRows(sampleRows);
+            Object[][] buffer = new Object[KETTLE_TYPE_ANALYZING_BATCH_ROWS][];
+            int rowCounter = 0;
+            int rowCount;
+            while (undecided > 0 && rowCounter < sampleRows && System.currentTimeMillis() < deadline
+                    && (rowCount = service.getNextRows(buffer)) > 0) {
+                for (int r = 0; r < rowCount && undecided > 0; r++, rowCounter++) {
+                    for (int i = 0; i < found.length; i++) {
+                        Object value = rowIndexes[i] < 0 ? null : buffer[r][rowIndexes[i]];
+                        if (value == null || found[i] >= 2) {
+                            continue;
+                        }
+                        found[i] = value instanceof Date ? 3 : value instanceof Double ? 2 : 1;
+                        if (found[i] >= 2) {
+                            // decimal or date can't change anymore
+                            undecided--;
+                        }
                     }
                 }
             }
-            if (rowCounter == KETTLE_TYPE_ANALYZING_LIMIT_ROWS) {
-                loadAnother = false;
+        } catch (IOException ex) {
+            // types are set from values sampled so far
+        }
+
+        for (int i = 0; i < found.length; i++) {
+            SasInputField inputField = sampledFields.get(i);
+            if (found[i] == 3) {
+                inputField.setKettleType(SasInputField.KettleType.Date);
+            } else if (found[i] == 2 || (found[i] == 0 && inputField.getKettleType() == SasInputField.KettleType.NotDefined)) {
+                inputField.setKettleType(decimalType);
+            } else if (found[i] == 1) {
+                inputField.setKettleType(SasInputField.KettleType.Integer);
             }
         }
+    }
 
+    /**
+     * Reopen the file, so that the following rows are sampled from pages
+     * spread across the whole file. Only every n-th data page is read, where n
+     * is chosen to get about the requested number of rows. The service has to
+     * be created from file, otherwise the rows are read from the beginning.
+     *
+     * @param rows requested number of rows
+     * @throws IOException
+     */
+    public void sampleRows(int rows) throws IOException {
+        if (file == null || !isReady) {
+            return;
+        }
+        long dataPages = getPageCount() - firstDataPage;
+        long rowCount = getNumberOfRows();
+        if (dataPages <= 1 || rowCount <= rows) {
+            return;
+        }
+        long rowsPerPage = Math.max(1, rowCount / dataPages);
+        long sampledPages = Math.max(1, (rows + rowsPerPage - 1) / rowsPerPage);
+        long pageStep = dataPages / sampledPages;
+        if (pageStep > 1) {
+            reopen(firstDataPage, getPageCount(), pageStep);
+        }
     }
 
     /**
      * Get next row of sas file.
      *
-     * @return Array of object, null if there is not any other row or service is
-     * not ready
+     * @return Array of object (only projected columns if projection is set),
+     * null if there is not any other row or service is not ready
      * @throws IOException if reading input stream is impossible
      */
     public Object[] getNextRow() throws IOException {
-        if (isReady) {
-            return parsoReader.readNext();
+        if (isReady && remainingRows != 0) {
+            Object[] row;
+            if (parallelDecoder != null) {
+                row = parallelDecoder.getNextRow();
+            } else if (readAhead != null) {
+                row = readAhead.getNextRow();
+            } else {
+                openReader();
+                long start = statistics == null ? 0 : System.nanoTime();
+                row = parsoReader.readNext(projection);
+                if (statistics != null) {
+                    statistics.addDecode(System.nanoTime() - start);
+                }
+            }
+            if (row != null && remainingRows > 0) {
+                remainingRows--;
+            }
+            if (row != null && statistics != null) {
+                statistics.addRowsRead(1);
+            }
+            return row;
         } else {
             return null;
         }
     }
 
+    /**
+     * Decode only columns used by provided fields, other columns are skipped
+     * by Parso without decoding. Rows returned by getNextRow then contain only
+     * the projected columns. The original ids of fields must be already set
+     * (see countColumnsWithNameSetOrigId). Fields mapped to the same column
+     * share its value.
+     *
+     * @param inputFields
+     * @return index of every field in the projected row, -1 for a field
+     * missing in the file
+     */
+    public int[] setProjection(List<SasInputField> inputFields) {
+        projection = new ColumnProjection();
+        int[] rowIndexes = new int[inputFields.size()];
+        for (int i = 0; i < inputFields.size(); i++) {
+            int originalId = inputFields.get(i).getOriginalId();
+            if (originalId < 1 || originalId > columns.size()) {
+                rowIndexes[i] = -1;
+            } else {
+                rowIndexes[i] = projection.addColumn(columns.get(originalId - 1).getName());
+            }
+        }
+        return rowIndexes;
+    }
+
+    /**
+     * Add the column to the projection, so its value is decoded too. Without
+     * projection all columns are decoded and the index is not changed.
+     *
+     * @param column column of the file
+     * @return index of the column in the projected row
+     */
+    public int addToProjection(Column column) {
+        if (projection == null) {
+            return column.getId() - 1;
+        }
+        return projection.addColumn(column.getName());
+    }
+
+    /**
+     * Find column with specified name. Search is case insensitive, the last
+     * column with the name is returned (the same as countColumnsWithNameSetOrigId).
+     *
+     * @param name name of column
+     * @return column or null if there isn't such column or service isn't ready
+     */
+    public Column findColumn(String name) {
+        if (isReady) {
+            return getColumnIndex().findColumn(name);
+        }
+        return null;
+    }
+
+    /**
+     * Get index of columns by name and id. The index of file opened from
+     * File is shared through SasMetadataCache.
+     *
+     * @return index of columns or null if service isn't ready
+     */
+    public ColumnIndex getColumnIndex() {
+        if (!isReady) {
+            return null;
+        }
+        if (columnIndex == null) {
+            columnIndex = metadata != null ? metadata.getColumnIndex() : new ColumnIndex(columns);
+        }
+        return columnIndex;
+    }
+
+    /**
+     * Decode following rows in a background thread. Rows are then returned
+     * by getNextRow from a buffer. The reading thread is stopped by dispose.
+     *
+     * @param bufferRows maximal number of decoded rows waiting in the buffer
+     * @param threadName name of the reading thread
+     * @throws IOException if the file can't be opened
+     */
+    public void startReadAhead(int bufferRows, String threadName) throws IOException {
+        if (isReady && readAhead == null) {
+            openReader();
+            readAhead = new RowReadAhead(parsoReader, projection, bufferRows, READ_AHEAD_BATCH_ROWS, threadName, statistics);
+        }
+    }
+
+    /**
+     * Decode following rows of a compressed file on a pool of threads, pages
+     * are decompressed in parallel and rows are returned by getNextRow(s) in
+     * the original order. The current page range and row range are
+     * respected. The threads are stopped by dispose.
+     *
+     * @param threads number of decoding threads
+     * @param threadName prefix of names of the threads
+     * @return false if the file isn't compressed or it can't be decoded in
+     * parallel (the service wasn't created from file, rows are sampled or
+     * already read)
+     * @throws IOException if the file can't be opened
+     */
+    public boolean startParallelDecoding(int threads, String threadName) throws IOException {
+        return startParallelDecoding(threads, ParallelPageDecoder.DEFAULT_CHUNK_PAGES, threadName);
+    }
+
+    /**
+     * @param threads number of decoding threads
+     * @param chunkPages number of pages decoded by one task
+     * @param threadName prefix of names of the threads
+     * @return false if the file can't be decoded in parallel
+     * @throws IOException if the file can't be opened
+     * @see #startParallelDecoding(int, String)
+     */
+    boolean startParallelDecoding(int threads, int chunkPages, String threadName) throws IOException {
+        if (!isReady || file == null || readAhead != null || parallelDecoder != null || decoder != null
+                || rangePageStep != 1 || !properties.isCompressed()) {
+            return false;
+        }
+        long fromPage = rangeFromPage < 0 ? firstDataPage : rangeFromPage;
+        long toPage = rangeToPage < 0 ? getPageCount() : rangeToPage;
+        SasInputSource source = SasInputSource.open(file);
+        try {
+            parallelDecoder = new ParallelPageDecoder(source, getLayout(), firstDataPage, fromPage, toPage, rangeSkippedRows,
+                    projection, byteOutput, threads, chunkPages, threadName, statistics);
+        } catch (IOException | RuntimeException ex) {
+            source.close();
+            throw ex;
+        }
+        return true;
+    }
+
+    /**
+     * Fill provided buffer with next rows of sas file. Rows are the same as
+     * returned by getNextRow, but the per row overhead is paid once per batch.
+     *
+     * @param buffer array to be filled from the beginning
+     * @return number of rows put into buffer, 0 if there is not any other row
+     * or service is not ready
+     * @throws IOException if reading input stream is impossible
+     */
+    public int getNextRows(Object[][] buffer) throws IOException {
+        if (!isReady || remainingRows == 0) {
+            return 0;
+        }
+        int count = 0;
+        if (parallelDecoder != null) {
+            count = parallelDecoder.getNextRows(buffer);
+        } else if (readAhead != null) {
+            count = readAhead.getNextRows(buffer);
+        } else {
+            openReader();
+            long start = System.nanoTime();
+            int max = remainingRows > 0 ? (int) Math.min(buffer.length, remainingRows) : buffer.length;
+            while (count < max) {
+                Object[] row = parsoReader.readNext(projection);
+                if (row == null) {
+                    break;
+                }
+                buffer[count++] = row;
+            }
+            if (statistics != null) {
+                statistics.addDecode(System.nanoTime() - start);
+            }
+        }
+        if (remainingRows > 0) {
+            // rows over the limit decoded in background are dropped
+            count = (int) Math.min(count, remainingRows);
+            remainingRows -= count;
+        }
+        if (statistics != null) {
+            statistics.addRowsRead(count);
+        }
+        return count;
+    }
+
+    /**
+     * Get up to max next rows of sas file.
+     *
+     * @param max maximal number of returned rows
+     * @return array of rows, empty if there is not any other row
+     * @throws IOException if reading input stream is impossible
+     */
+    public Object[][] getNextRows(int max) throws IOException {
+        Object[][] buffer = new Object[max][];
+        int count = getNextRows(buffer);
+        return count == max ? buffer : Arrays.copyOf(buffer, count);
+    }
+
     /**
      * If you disposed the service but you want to use it again, use this
      * method.
@@ -144,11 +527,34 @@ public class ParsoService {
     public void init(InputStream inputStream) {
         if (!isReady) {
             stream = inputStream;
-            parsoReader = new SasFileReaderImpl(inputStream);
+            parsoReader = new SasFileReaderImpl(inputStream, byteOutput);
+            properties = parsoReader.getSasFileProperties();
+            columns = parsoReader.getColumns();
+            columnIndex = null;
             isReady = true;
         }
     }
 
+    /**
+     * Open the file by Parso if it wasn't opened yet. Metadata of the service
+     * may come from the cache, but rows can be read only by Parso, which has
+     * to parse the header again.
+     *
+     * @throws IOException if the file can't be opened
+     */
+    public void openReader() throws IOException {
+        if (isReady && parsoReader == null) {
+            SasInputSource source = SasInputSource.open(file);
+            try {
+                parsoReader = new SasFileReaderImpl(source, byteOutput);
+            } catch (RuntimeException ex) {
+                source.close();
+                throw ex;
+            }
+            stream = source;
+        }
+    }
+
     /**
      * When you're done with processing, dispose this service. It will also
      * close associated input stream.
@@ -157,9 +563,28 @@ public class ParsoService {
      */
     public void dispose() throws IOException {
         if (isReady) {
+            if (readAhead != null) {
+                readAhead.stop();
+                readAhead = null;
+            }
+            if (parallelDecoder != null) {
+                parallelDecoder.stop();
+                parallelDecoder = null;
+            }
             parsoReader = null;
-            stream.close();
-            stream = null;
+            collectIoStatistics();
+            if (decoder != null) {
+                if (statistics != null) {
+                    long pages = decoder.getBytesRead() / Math.max(1, properties.getPageLength());
+                    statistics.addIo(decoder.getBytesRead(), pages, decoder.getReadNanos());
+                }
+                decoder.close();
+                decoder = null;
+            }
+            if (stream != null) {
+                stream.close();
+                stream = null;
+            }
             isReady = false;
         }
     }
@@ -168,20 +593,347 @@ public class ParsoService {
         return isReady;
     }
 
+    /**
+     * Collect counters and timings of reading to provided statistics. Bytes
+     * read from the file are added when the file is closed.
+     *
+     * @param statistics statistics or null to stop collecting
+     */
+    public void setStatistics(SasReadStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    public SasReadStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @param decompressorType decompressors of rows of compressed files read
+     * by openDecoder
+     */
+    public void setDecompressorType(DecompressorType decompressorType) {
+        this.decompressorType = decompressorType == null ? DecompressorType.Native : decompressorType;
+    }
+
+    public DecompressorType getDecompressorType() {
+        return decompressorType;
+    }
+
+    /**
+     * @param sidecarCache cache of columnar copies of files used by
+     * openDecoder or null to read rows from pages of files only
+     */
+    public void setSidecarCache(SasSidecarCache sidecarCache) {
+        this.sidecarCache = sidecarCache;
+    }
+
+    public SasSidecarCache getSidecarCache() {
+        return sidecarCache;
+    }
+
+    private void collectIoStatistics() {
+        if (statistics == null || properties == null) {
+            return;
+        }
+        long bytes;
+        long nanos;
+        if (stream instanceof SasInputSource) {
+            bytes = ((SasInputSource) stream).position();
+            nanos = ((SasInputSource) stream).getReadNanos();
+        } else if (stream instanceof PageRangeInputStream) {
+            bytes = ((PageRangeInputStream) stream).getBytesRead();
+            nanos = ((PageRangeInputStream) stream).getReadNanos();
+        } else {
+            return;
+        }
+        long pageLength = Math.max(1, properties.getPageLength());
+        long pages = Math.max(0, (bytes - properties.getHeaderLength() + pageLength - 1) / pageLength);
+        statistics.addIo(bytes, pages, nanos);
+    }
+
+    /**
+     * Open decoder which reads rows directly from pages of the file instead of
+     * Parso. Rows returned by the decoder are the same as rows of getNextRow
+     * (projection, page range and row range are respected), but values are
+     * decoded only when they are asked for. Rows of the service are read
+     * either by the decoder or by getNextRow(s), never by both. The decoder
+     * is closed by dispose.
+     *
+     * @return decoder positioned before the first row or null if the file
+     * isn't supported by the decoder (unknown compression, files opened from
+     * stream, sampled files and rows read ahead), rows have to be read by
+     * getNextRow(s) then
+     * @throws IOException
+     * @see #setSidecarCache(SasSidecarCache)
+     */
+    public SasPageDecoder openDecoder() throws IOException {
+        if (!isReady || file == null || readAhead != null || decoder != null || rangePageStep != 1 || remainingRows == 0) {
+            return null;
+        }
+        SasFileLayout layout = getLayout();
+        SasDecompressor decompressor = layout.isCompressed() ? decompressorType.forMethod(properties.getCompressionMethod()) : null;
+        SasColumnLayout columnLayout = metadata.getColumnLayout(file, layout);
+        if (!SasPageDecoder.isSupported(layout, columnLayout, columns, getEncoding(), decompressor)) {
+            return null;
+        }
+        long fromPage = rangeFromPage < 0 ? firstDataPage : Math.max(rangeFromPage, firstDataPage);
+        long toPage = rangeToPage < 0 ? getPageCount() : rangeToPage;
+        long maxRows = remainingRows > 0 ? rangeSkippedRows + remainingRows : getNumberOfRows();
+        if (sidecarCache != null && rangeFromPage < 0) {
+            decoder = openSidecarDecoder(layout, columnLayout, decompressor, maxRows);
+            if (decoder != null) {
+                return decoder;
+            }
+        }
+        SasInputSource source = SasInputSource.open(file);
+        try {
+            decoder = new SasPageDecoder(source, layout, columnLayout, columns, projection, getEncoding(), byteOutput,
+                    decompressor, fromPage, toPage, maxRows);
+            decoder.skip(rangeSkippedRows);
+        } catch (IOException | RuntimeException ex) {
+            source.close();
+            decoder = null;
+            throw ex;
+        }
+        return decoder;
+    }
+
+    /**
+     * Open decoder of the sidecar of the file, the sidecar is written first
+     * if the cache doesn't contain it. Ranges of pages and rows are always
+     * read from the file.
+     *
+     * @return decoder or null if the sidecar can't be written or opened
+     */
+    private SasPageDecoder openSidecarDecoder(SasFileLayout layout, SasColumnLayout columnLayout,
+            SasDecompressor decompressor, long maxRows) throws IOException {
+        SasSidecar sidecar = sidecarCache.get(file);
+        if (sidecar == null) {
+            long rowCount = getNumberOfRows();
+            if (!sidecarCache.fits(rowCount * layout.getRowLength())) {
+                return null;
+            }
+            SasInputSource source = SasInputSource.open(file);
+            SasPageDecoder writer = null;
+            try {
+                writer = new SasPageDecoder(source, layout, columnLayout, columns, null, getEncoding(), true,
+                        decompressor, firstDataPage, getPageCount(), rowCount);
+                sidecar = sidecarCache.create(file, layout, columnLayout, writer, rowCount);
+            } catch (IOException ex) {
+                // an unwritable cache doesn't prevent reading of the file
+                return null;
+            } finally {
+                if (writer != null && statistics != null) {
+                    long pages = writer.getBytesRead() / Math.max(1, layout.getPageLength());
+                    statistics.addIo(writer.getBytesRead(), pages, writer.getReadNanos());
+                }
+                source.close();
+            }
+        }
+        try {
+            return new SasPageDecoder(sidecar, columns, projection, getEncoding(), byteOutput, maxRows);
+        } catch (IOException ex) {
+            // the sidecar was deleted by another reader evicting the cache
+            return null;
+        }
+    }
+
+    /**
+     * Prepare columnar reading of rows. Rows are then decoded by getNextBatch
+     * into vectors of projected columns, numbers and dates as primitive
+     * values. It's available for the same files as openDecoder.
+     *
+     * @param capacity maximal number of rows of one batch
+     * @return empty batch or null if the file isn't supported by the decoder
+     * @throws IOException
+     */
+    public SasColumnBatch openColumnBatch(int capacity) throws IOException {
+        SasPageDecoder pageDecoder = decoder != null ? decoder : openDecoder();
+        return pageDecoder == null ? null : pageDecoder.createBatch(capacity);
+    }
+
+    /**
+     * Decode following rows into vectors of the batch.
+     *
+     * @param batch batch created by openColumnBatch
+     * @return number of rows in the batch, 0 if there isn't any other row
+     * @throws IOException
+     */
+    public int getNextBatch(SasColumnBatch batch) throws IOException {
+        if (!isReady || decoder == null) {
+            return 0;
+        }
+        long start = statistics == null ? 0 : System.nanoTime();
+        int count = decoder.nextBatch(batch);
+        if (statistics != null) {
+            statistics.addRowsRead(count);
+            statistics.addDecode(System.nanoTime() - start);
+        }
+        return count;
+    }
+
+    /**
+     * Reopen the file and read only rows stored on pages from the given range.
+     * The pages before the first data page contain only metadata, so they
+     * don't belong to any range. Row order within the range is preserved.
+     *
+     * @param fromPage first page (inclusive)
+     * @param toPage last page (exclusive)
+     * @throws IOException
+     * @throws IllegalStateException if the service wasn't created from file
+     */
+    public void readPageRange(long fromPage, long toPage) throws IOException {
+        if (file == null || !isReady) {
+            throw new IllegalStateException("Page range can be read only from opened file");
+        }
+        reopen(fromPage, toPage, 1);
+    }
+
+    private void reopen(long fromPage, long toPage, long pageStep) throws IOException {
+        SasFileLayout layout = getLayout();
+        dispose();
+        rangeFromPage = fromPage;
+        rangeToPage = toPage;
+        rangePageStep = pageStep;
+        rangeSkippedRows = 0;
+        SasInputSource source = SasInputSource.open(file);
+        try {
+            init(new PageRangeInputStream(source, layout, firstDataPage, fromPage, toPage, pageStep));
+        } catch (IOException | RuntimeException ex) {
+            source.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Reopen the file and read only rows from the given range. The pages
+     * containing the range are found using the page index, so the pages before
+     * the range aren't decompressed at all. Only the rows at the beginning of
+     * the first page are read (without decoding of any column) and skipped.
+     *
+     * @param offset index of the first row, negative offset is counted from the
+     * end of file (-10 means the last 10 rows)
+     * @param limit maximal number of rows, 0 means all rows up to the end
+     * @throws IOException
+     * @throws IllegalStateException if the service wasn't created from file
+     */
+    public void readRowRange(long offset, long limit) throws IOException {
+        if (file == null || !isReady) {
+            throw new IllegalStateException("Row range can be read only from opened file");
+        }
+        SasPageIndex pageIndex = metadata.getPageIndex(file, getLayout());
+        long rowCount = pageIndex.getRowCount();
+        long fromRow = offset < 0 ? Math.max(0, rowCount + offset) : Math.min(offset, rowCount);
+        long toRow = limit > 0 ? Math.min(rowCount, fromRow + limit) : rowCount;
+        if (fromRow >= toRow) {
+            remainingRows = 0;
+            return;
+        }
+
+        long fromPage = pageIndex.getPageOfRow(fromRow);
+        long toPage = pageIndex.getPageOfRow(toRow - 1) + 1;
+        readPageRange(fromPage, toPage);
+        List<String> noColumns = Collections.emptyList();
+        long skipped = 0;
+        for (long row = pageIndex.getFirstRow(fromPage); row < fromRow; row++, skipped++) {
+            if (parsoReader.readNext(noColumns) == null) {
+                break;
+            }
+        }
+        if (statistics != null) {
+            statistics.addSkipped(skipped);
+        }
+        rangeSkippedRows = skipped;
+        remainingRows = toRow - fromRow;
+    }
+
+    /**
+     * @return the sas file or null if the service reads a stream
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return physical layout of the file or null if service isn't ready
+     */
+    public SasFileLayout getLayout() {
+        if (isReady) {
+            return new SasFileLayout(properties);
+        }
+        return null;
+    }
+
+    /**
+     * @return properties read from the header (compression, dates, page
+     * length) or null if service isn't ready
+     */
+    public SasFileProperties getProperties() {
+        if (isReady) {
+            return properties;
+        }
+        return null;
+    }
+
+    public long getPageCount() {
+        if (isReady) {
+            return properties.getPageCount();
+        }
+        return -1;
+    }
+
+    /**
+     * @return index of the first page containing rows or -1 if service wasn't
+     * created from file
+     */
+    public long getFirstDataPage() {
+        return firstDataPage;
+    }
+
     public long getNumberOfRows() {
         if (isReady) {
-            return parsoReader.getSasFileProperties().getRowCount();
+            return properties.getRowCount();
         }
         return -1;
     }
     
     public long getNumberOfColumns() {
         if (isReady) {
-            return parsoReader.getSasFileProperties().getColumnsCount();
+            return properties.getColumnsCount();
         }
         return -1;
     }
 
+    /**
+     * @return Java name of the encoding of character values or null if
+     * service is not ready
+     */
+    public String getEncoding() {
+        if (isReady) {
+            return properties.getEncoding();
+        }
+        return null;
+    }
+
+    /**
+     * @return true if values of character columns are returned as byte arrays
+     */
+    public boolean isByteOutput() {
+        return byteOutput;
+    }
+
+    /**
+     * @param originalId id of column (starting from 1)
+     * @return column with specified id or null if there isn't such column or
+     * service isn't ready
+     */
+    public Column getColumn(int originalId) {
+        if (isReady && originalId >= 1 && originalId <= columns.size()) {
+            return columns.get(originalId - 1);
+        }
+        return null;
+    }
+
     /**
      * Check if sas file has column with specified id.
      *
@@ -190,12 +942,7 @@ public class ParsoService {
      */
     public boolean hasFieldId(int fieldId) {
         if (isReady) {
-            for (Column column : parsoReader.getColumns()) {
-                if (column.getId() == fieldId) {
-                    return true;
-                }
-            }
-            return false;
+            return getColumnIndex().getColumn(fieldId) != null;
         }
         return false;
     }
@@ -212,19 +959,35 @@ public class ParsoService {
      * SasInputField.sasName or -1 if service isn't ready
      */
     public int countColumnsWithNameSetOrigId(SasInputField inputField) {
-        int counter = -1;
         if (isReady) {
-            counter = 0;
-            inputField.setOriginalId(-1);
-            for (Column column : parsoReader.getColumns()) {
-                if (column.getName().equalsIgnoreCase(inputField.getSasName())) {
-                    inputField.setOriginalId(column.getId());
-                    counter++;
-                }
-            }
-            return counter;
+            int[] ids = getColumnIndex().getIds(inputField.getSasName());
+            inputField.setOriginalId(ids.length == 0 ? -1 : ids[ids.length - 1]);
+            return ids.length;
+        }
+        return -1;
+    }
+
+    /**
+     * Resolve all fields in one pass using the index of columns, the same as
+     * countColumnsWithNameSetOrigId for every field.
+     *
+     * @param inputFields fields to resolve, their original ids are set
+     * @return number of columns with the name of every field or null if
+     * service isn't ready
+     */
+    public int[] resolveColumns(List<SasInputField> inputFields) {
+        if (!isReady) {
+            return null;
+        }
+        ColumnIndex index = getColumnIndex();
+        int[] counts = new int[inputFields.size()];
+        for (int i = 0; i < counts.length; i++) {
+            SasInputField inputField = inputFields.get(i);
+            int[] ids = index.getIds(inputField.getSasName());
+            inputField.setOriginalId(ids.length == 0 ? -1 : ids[ids.length - 1]);
+            counts[i] = ids.length;
         }
-        return counter;
+        return counts;
     }
 
 }
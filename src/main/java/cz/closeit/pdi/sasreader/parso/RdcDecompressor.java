@@ -0,0 +1,120 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Decompressor of files compressed by SAS option COMPRESS=BINARY (Ross data
+ * compression, compression method SASYZCR2). Unlike Parso the compressed row
+ * isn't copied out of the page first, it's read in place and decompressed
+ * into the row buffer.
+ */
+public class RdcDecompressor implements SasDecompressor {
+
+    public static final String COMPRESSION_METHOD = "SASYZCR2";
+
+    @Override
+    public void decompress(byte[] page, int offset, int length, byte[] row, int rowOffset, int rowLength) throws IOException {
+        int end = rowOffset + rowLength;
+        int in = offset;
+        int inEnd = offset + length;
+        int out = rowOffset;
+        int control = 0;
+        int mask = 0;
+        while (in < inEnd) {
+            mask >>= 1;
+            if (mask == 0) {
+                control = ((page[in] & 0xFF) << 8) | (page[in + 1] & 0xFF);
+                in += 2;
+                mask = 0x8000;
+            }
+            if ((control & mask) == 0) {
+                // all following literals of the control word are copied at once
+                int literals = Math.min(countLiterals(control, mask), inEnd - in);
+                checkSpace(out, literals, end);
+                System.arraycopy(page, in, row, out, literals);
+                in += literals;
+                out += literals;
+                mask >>= literals - 1;
+                continue;
+            }
+            int command = (page[in] >> 4) & 0x0F;
+            int count = page[in++] & 0x0F;
+            int distance;
+            switch (command) {
+                case 0:
+                    count += 3;
+                    checkSpace(out, count, end);
+                    Arrays.fill(row, out, out + count, page[in++]);
+                    break;
+                case 1:
+                    count += ((page[in++] & 0xFF) << 4) + 19;
+                    checkSpace(out, count, end);
+                    Arrays.fill(row, out, out + count, page[in++]);
+                    break;
+                case 2:
+                    distance = count + 3 + ((page[in++] & 0xFF) << 4);
+                    count = (page[in++] & 0xFF) + 16;
+                    checkSpace(out, count, end);
+                    copyBack(row, out, distance, count, rowOffset);
+                    break;
+                default:
+                    distance = count + 3 + ((page[in++] & 0xFF) << 4);
+                    count = command;
+                    checkSpace(out, count, end);
+                    copyBack(row, out, distance, count, rowOffset);
+                    break;
+            }
+            out += count;
+        }
+        Arrays.fill(row, out, end, (byte) 0);
+    }
+
+    /**
+     * @return number of zero bits of the control word from the bit of the
+     * mask down to the lowest bit
+     */
+    private static int countLiterals(int control, int mask) {
+        int bits = control & (mask | (mask - 1));
+        if (bits == 0) {
+            return Integer.numberOfTrailingZeros(mask) + 1;
+        }
+        return Integer.numberOfLeadingZeros(bits) - Integer.numberOfLeadingZeros(mask);
+    }
+
+    private static void checkSpace(int out, int count, int end) throws IOException {
+        if (out + count > end) {
+            throw new IOException("Compressed row is corrupted");
+        }
+    }
+
+    /**
+     * Copy already decompressed bytes of the row. Parso copies by
+     * System.arraycopy into a new array, so if the copied bytes overlap the
+     * written ones, the bytes which aren't decompressed yet are read as zeros.
+     */
+    private static void copyBack(byte[] row, int out, int distance, int count, int rowOffset) throws IOException {
+        if (distance > out - rowOffset) {
+            throw new IOException("Compressed row is corrupted");
+        }
+        if (distance < count) {
+            Arrays.fill(row, out, out + count - distance, (byte) 0);
+        }
+        System.arraycopy(row, out - distance, row, out, count);
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Decompressor of files compressed by SAS option COMPRESS=CHAR (run length
+ * encoding, compression method SASYZCRL). Control bytes are interpreted the
+ * same way as by Parso, runs are written by Arrays.fill and literals by
+ * System.arraycopy straight into the row buffer.
+ */
+public class RleDecompressor implements SasDecompressor {
+
+    public static final String COMPRESSION_METHOD = "SASYZCRL";
+
+    @Override
+    public void decompress(byte[] page, int offset, int length, byte[] row, int rowOffset, int rowLength) throws IOException {
+        int end = rowOffset + rowLength;
+        int out = rowOffset;
+        for (int i = 0; i < length; i++) {
+            int control = page[offset + i] & 0xF0;
+            int endOfFirstByte = page[offset + i] & 0x0F;
+            int count;
+            switch (control) {
+                case 0x00:
+                case 0x10:
+                case 0x20:
+                case 0x30:
+                    if (i != length - 1) {
+                        count = (page[offset + i + 1] & 0xFF) + 64 + page[offset + i] * 256;
+                        out = copy(page, offset + i + 2, row, out, count, end);
+                        i += count + 1;
+                    }
+                    break;
+                case 0x40:
+                    count = endOfFirstByte * 16 + (page[offset + i + 1] & 0xFF) + 18;
+                    out = fill(row, out, count, page[offset + i + 2], end);
+                    i += 2;
+                    break;
+                case 0x50:
+                    out = fill(row, out, endOfFirstByte * 256 + (page[offset + i + 1] & 0xFF) + 17, (byte) '@', end);
+                    i++;
+                    break;
+                case 0x60:
+                    out = fill(row, out, endOfFirstByte * 256 + (page[offset + i + 1] & 0xFF) + 17, (byte) ' ', end);
+                    i++;
+                    break;
+                case 0x70:
+                    out = fill(row, out, endOfFirstByte * 256 + (page[offset + i + 1] & 0xFF) + 17, (byte) 0, end);
+                    i++;
+                    break;
+                case 0x80:
+                case 0x90:
+                case 0xA0:
+                case 0xB0:
+                    count = Math.min(endOfFirstByte + 1 + (control - 0x80), length - (i + 1));
+                    out = copy(page, offset + i + 1, row, out, count, end);
+                    i += count;
+                    break;
+                case 0xC0:
+                    out = fill(row, out, endOfFirstByte + 3, page[offset + i + 1], end);
+                    i++;
+                    break;
+                case 0xD0:
+                    out = fill(row, out, endOfFirstByte + 2, (byte) '@', end);
+                    break;
+                case 0xE0:
+                    out = fill(row, out, endOfFirstByte + 2, (byte) ' ', end);
+                    break;
+                default:
+                    out = fill(row, out, endOfFirstByte + 2, (byte) 0, end);
+                    break;
+            }
+        }
+        Arrays.fill(row, out, end, (byte) 0);
+    }
+
+    private static int copy(byte[] page, int from, byte[] row, int out, int count, int end) throws IOException {
+        if (out + count > end) {
+            throw new IOException("Compressed row is corrupted");
+        }
+        System.arraycopy(page, from, row, out, count);
+        return out + count;
+    }
+
+    private static int fill(byte[] row, int out, int count, byte value, int end) throws IOException {
+        if (out + count > end) {
+            throw new IOException("Compressed row is corrupted");
+        }
+        Arrays.fill(row, out, out + count, value);
+        return out + count;
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import com.epam.parso.SasFileReader;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads and decodes rows in a background thread, so decoding runs in parallel
+ * with the processing of previous rows. Decoded rows are passed in batches
+ * through a bounded queue, the reader blocks when the queue is full. Drained
+ * batches are returned to the reader and reused.
+ */
+public class RowReadAhead implements Runnable {
+
+    private final SasFileReader parsoReader;
+    private final List<String> projection;
+    private final BlockingQueue<Batch> filled;
+    private final BlockingQueue<Batch> free;
+    private final Thread thread;
+    private final SasReadStatistics statistics;
+
+    private volatile IOException error = null;
+    private volatile boolean stopped = false;
+    private boolean finished = false;
+    private Batch current = null;
+
+    /**
+     * Start reading rows of provided reader in a new thread.
+     *
+     * @param parsoReader reader which mustn't be used by anyone else
+     * @param projection names of decoded columns, null for all columns
+     * @param bufferRows maximal number of decoded rows waiting in the queue
+     * @param batchRows number of rows passed at once
+     * @param threadName
+     * @param statistics statistics collecting time of decoding, may be null
+     */
+    public RowReadAhead(SasFileReader parsoReader, List<String> projection, int bufferRows, int batchRows, String threadName,
+            SasReadStatistics statistics) {
+        this.parsoReader = parsoReader;
+        this.statistics = statistics;
+        this.projection = projection;
+        int batchSize = Math.max(1, Math.min(batchRows, bufferRows));
+        int batches = Math.max(1, bufferRows / batchSize);
+        this.filled = new ArrayBlockingQueue<>(batches + 1);
+        this.free = new ArrayBlockingQueue<>(batches + 1);
+        for (int i = 0; i < batches; i++) {
+            free.add(new Batch(batchSize));
+        }
+        this.thread = new Thread(this, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            boolean end = false;
+            while (!end && !stopped) {
+                Batch batch = free.take();
+                batch.size = 0;
+                batch.position = 0;
+                long start = System.nanoTime();
+                while (batch.size < batch.rows.length) {
+                    Object[] row;
+                    try {
+                        row = parsoReader.readNext(projection);
+                    } catch (IOException ex) {
+                        error = ex;
+                        row = null;
+                    } catch (RuntimeException ex) {
+                        error = new IOException(ex);
+                        row = null;
+                    }
+                    if (row == null) {
+                        end = true;
+                        break;
+                    }
+                    batch.rows[batch.size++] = row;
+                }
+                if (statistics != null) {
+                    statistics.addDecode(System.nanoTime() - start);
+                }
+                batch.last = end;
+                filled.put(batch);
+            }
+        } catch (InterruptedException ex) {
+            // reading was stopped
+        }
+    }
+
+    /**
+     * Get next decoded row, wait for the reading thread if necessary.
+     *
+     * @return next row or null if there isn't any other row
+     * @throws IOException if the reading failed
+     */
+    public Object[] getNextRow() throws IOException {
+        if (!nextBatch()) {
+            return null;
+        }
+        Object[] row = current.rows[current.position];
+        current.rows[current.position++] = null;
+        return row;
+    }
+
+    /**
+     * Fill provided buffer with next decoded rows, wait for the reading thread
+     * if necessary.
+     *
+     * @param buffer
+     * @return number of rows in buffer, 0 if there isn't any other row
+     * @throws IOException if the reading failed
+     */
+    public int getNextRows(Object[][] buffer) throws IOException {
+        int count = 0;
+        while (count < buffer.length && nextBatch()) {
+            int length = Math.min(buffer.length - count, current.size - current.position);
+            System.arraycopy(current.rows, current.position, buffer, count, length);
+            Arrays.fill(current.rows, current.position, current.position + length, null);
+            current.position += length;
+            count += length;
+        }
+        return count;
+    }
+
+    /**
+     * Make sure the current batch has some rows left.
+     *
+     * @return false if there isn't any other row
+     */
+    private boolean nextBatch() throws IOException {
+        while (!finished && (current == null || current.position == current.size)) {
+            if (current != null) {
+                if (current.last) {
+                    finished = true;
+                    break;
+                }
+                free.add(current);
+            }
+            try {
+                current = filled.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException(ex);
+            }
+        }
+        if (finished && error != null) {
+            IOException ex = error;
+            error = null;
+            throw ex;
+        }
+        return !finished;
+    }
+
+    /**
+     * Stop the reading thread and wait for its end.
+     */
+    public void stop() {
+        stopped = true;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        filled.clear();
+        free.clear();
+        current = null;
+    }
+
+    private static final class Batch {
+
+        private final Object[][] rows;
+        private int size = 0;
+        private int position = 0;
+        private boolean last = false;
+
+        private Batch(int batchSize) {
+            rows = new Object[batchSize][];
+        }
+    }
+}
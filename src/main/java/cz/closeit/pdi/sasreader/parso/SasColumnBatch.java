@@ -0,0 +1,186 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Batch of rows decoded by SasPageDecoder into vectors, one vector for every
+ * projected column. Numbers are stored as primitive doubles and dates as
+ * primitive milliseconds since 1970, so they are never boxed by the decoder.
+ * Character values stay objects. Missing values are marked in a bitmap of
+ * every column.
+ *
+ * The batch also implements SasRowValues for the row selected by setRow,
+ * values are then boxed the same way as in Parso.
+ */
+public class SasColumnBatch implements SasRowValues {
+
+    /**
+     * Values are objects as returned by Parso.
+     */
+    public static final int VECTOR_OBJECT = 0;
+    /**
+     * Values are numbers in a double vector.
+     */
+    public static final int VECTOR_NUMBER = 1;
+    /**
+     * Values are dates in a long vector of milliseconds since 1970.
+     */
+    public static final int VECTOR_MILLIS = 2;
+
+    private final int capacity;
+    private final int[] types;
+    private final double[][] numbers;
+    private final long[][] millis;
+    private final Object[][] objects;
+    private final long[][] nulls;
+    private int size = 0;
+    private int row = 0;
+
+    /**
+     * @param types type of vector of every column
+     * @param capacity maximal number of rows
+     */
+    SasColumnBatch(int[] types, int capacity) {
+        this.capacity = capacity;
+        this.types = types.clone();
+        numbers = new double[types.length][];
+        millis = new long[types.length][];
+        objects = new Object[types.length][];
+        nulls = new long[types.length][(capacity + 63) / 64];
+        for (int i = 0; i < types.length; i++) {
+            switch (types[i]) {
+                case VECTOR_NUMBER:
+                    numbers[i] = new double[capacity];
+                    break;
+                case VECTOR_MILLIS:
+                    millis[i] = new long[capacity];
+                    break;
+                default:
+                    objects[i] = new Object[capacity];
+                    break;
+            }
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of rows in the batch
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public int getColumnCount() {
+        return types.length;
+    }
+
+    /**
+     * @param column index of the column in the projected row
+     * @return VECTOR_OBJECT, VECTOR_NUMBER or VECTOR_MILLIS
+     */
+    public int getType(int column) {
+        return types[column];
+    }
+
+    public boolean isNull(int column, int row) {
+        return (nulls[column][row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * @return number of VECTOR_NUMBER column, undefined for missing value
+     */
+    public double getNumber(int column, int row) {
+        return numbers[column][row];
+    }
+
+    /**
+     * @return date of VECTOR_MILLIS column in milliseconds since 1970,
+     * undefined for missing value
+     */
+    public long getMillis(int column, int row) {
+        return millis[column][row];
+    }
+
+    /**
+     * @return value of VECTOR_OBJECT column
+     */
+    public Object getObject(int column, int row) {
+        return objects[column][row];
+    }
+
+    /**
+     * Select the row returned by getValue.
+     *
+     * @param row index of row in the batch
+     */
+    public void setRow(int row) {
+        this.row = row;
+    }
+
+    @Override
+    public Object getValue(int index) {
+        if (isNull(index, row)) {
+            return null;
+        }
+        switch (types[index]) {
+            case VECTOR_NUMBER:
+                return SasPageDecoder.boxNumber(numbers[index][row]);
+            case VECTOR_MILLIS:
+                return new Date(millis[index][row]);
+            default:
+                return objects[index][row];
+        }
+    }
+
+    void clear() {
+        size = 0;
+        row = 0;
+        for (long[] columnNulls : nulls) {
+            Arrays.fill(columnNulls, 0);
+        }
+        for (Object[] vector : objects) {
+            if (vector != null) {
+                Arrays.fill(vector, null);
+            }
+        }
+    }
+
+    void setSize(int size) {
+        this.size = size;
+    }
+
+    void setNull(int column, int row) {
+        nulls[column][row >>> 6] |= 1L << row;
+    }
+
+    double[] getNumbers(int column) {
+        return numbers[column];
+    }
+
+    long[] getMillis(int column) {
+        return millis[column];
+    }
+
+    Object[] getObjects(int column) {
+        return objects[column];
+    }
+}
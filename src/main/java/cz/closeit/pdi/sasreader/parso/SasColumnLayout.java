@@ -0,0 +1,145 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import com.epam.parso.Column;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Position of every column in a row of sas file. Parso keeps offsets of
+ * columns private, so they are read here from the column attributes
+ * subheaders of metadata pages.
+ */
+public class SasColumnLayout {
+
+    private static final long COLUMN_ATTRIBUTES_SIGNATURE = -4L;
+    private static final long COLUMN_ATTRIBUTES_SIGNATURE_SWAPPED = 0xFCFFFFFFFFFFFFFFL;
+    private static final int COLUMN_DATA_OFFSET_OFFSET = 8;
+    private static final int COLUMN_DATA_LENGTH_OFFSET = 8;
+    private static final int COLUMN_TYPE_OFFSET = 14;
+    private static final int COLUMN_TYPE_NUMERIC = 1;
+
+    private final long[] offsets;
+    private final int[] lengths;
+    private final boolean[] numeric;
+
+    private SasColumnLayout(List<long[]> attributes) {
+        offsets = new long[attributes.size()];
+        lengths = new int[attributes.size()];
+        numeric = new boolean[attributes.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = attributes.get(i)[0];
+            lengths[i] = (int) attributes.get(i)[1];
+            numeric[i] = attributes.get(i)[2] == COLUMN_TYPE_NUMERIC;
+        }
+    }
+
+    /**
+     * Read column attributes from metadata pages of the file.
+     *
+     * @param source opened sas file
+     * @param layout layout of the file
+     * @param firstDataPage first page with rows, all previous pages contain
+     * only metadata
+     * @return layout of columns in the order of Parso columns
+     * @throws IOException
+     */
+    public static SasColumnLayout read(SasInputSource source, SasFileLayout layout, long firstDataPage) throws IOException {
+        List<long[]> attributes = new ArrayList<>();
+        byte[] page = new byte[layout.getPageLength()];
+        int intOrLong = layout.isU64() ? 8 : 4;
+        for (long p = 0; p <= firstDataPage && p < layout.getPageCount(); p++) {
+            source.readFully(layout.getPageOffset(p), page, 0, page.length);
+            int type = layout.getPageType(page);
+            if (type != SasFileLayout.PAGE_META_TYPE_1 && type != SasFileLayout.PAGE_META_TYPE_2
+                    && type != SasFileLayout.PAGE_MIX_TYPE && type != SasFileLayout.PAGE_AMD_TYPE) {
+                continue;
+            }
+            for (int i = 0; i < layout.getSubheaderCount(page); i++) {
+                long offset = layout.getSubheaderOffset(page, i);
+                long length = layout.getSubheaderLength(page, i);
+                if (length == 0 || layout.isSubheaderTruncated(page, i)
+                        || offset < 0 || offset + length > page.length) {
+                    continue;
+                }
+                long signature = layout.readIntOrLong(page, (int) offset);
+                if (signature != COLUMN_ATTRIBUTES_SIGNATURE && signature != COLUMN_ATTRIBUTES_SIGNATURE_SWAPPED) {
+                    continue;
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(page).order(layout.getByteOrder());
+                long vectors = (length - 2 * intOrLong - 12) / (intOrLong + 8);
+                for (int v = 0; v < vectors; v++) {
+                    int vector = (int) offset + v * (intOrLong + 8);
+                    attributes.add(new long[]{
+                        layout.readIntOrLong(page, vector + intOrLong + COLUMN_DATA_OFFSET_OFFSET),
+                        buffer.getInt(vector + 2 * intOrLong + COLUMN_DATA_LENGTH_OFFSET),
+                        page[vector + 2 * intOrLong + COLUMN_TYPE_OFFSET]});
+                }
+            }
+        }
+        return new SasColumnLayout(attributes);
+    }
+
+    public int getColumnCount() {
+        return offsets.length;
+    }
+
+    /**
+     * @param index zero based index of column
+     * @return offset of the value in the row
+     */
+    public int getOffset(int index) {
+        return (int) offsets[index];
+    }
+
+    /**
+     * @param index zero based index of column
+     * @return length of the value in bytes
+     */
+    public int getLength(int index) {
+        return lengths[index];
+    }
+
+    public boolean isNumeric(int index) {
+        return numeric[index];
+    }
+
+    /**
+     * Check that the layout describes the columns read by Parso and all
+     * values fit into rows.
+     *
+     * @param columns columns of the file
+     * @param rowLength length of row in bytes
+     * @return true if the layout can be used for decoding of rows
+     */
+    public boolean matches(List<Column> columns, int rowLength) {
+        if (columns.size() != offsets.length) {
+            return false;
+        }
+        for (int i = 0; i < offsets.length; i++) {
+            Column column = columns.get(i);
+            if (numeric[i] != (column.getType() == Number.class) || lengths[i] != column.getLength()
+                    || offsets[i] < 0 || offsets[i] + lengths[i] > rowLength) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import java.io.IOException;
+
+/**
+ * Decompressor of rows of compressed sas files. Rows are decompressed into a
+ * buffer provided by the caller, so the buffer can be reused for all rows of
+ * a page. Implementations are stateless and can be shared by threads.
+ */
+public interface SasDecompressor {
+
+    /**
+     * Decompress one row. The result is the same as of Parso, bytes of the
+     * row which aren't written by the decompression are set to zero.
+     *
+     * @param page page with the compressed row
+     * @param offset offset of the compressed row in the page
+     * @param length length of the compressed row
+     * @param row buffer for the decompressed row
+     * @param rowOffset offset of the row in the buffer
+     * @param rowLength length of the decompressed row
+     * @throws IOException if the compressed row is corrupted
+     */
+    void decompress(byte[] page, int offset, int length, byte[] row, int rowOffset, int rowLength) throws IOException;
+}
@@ -0,0 +1,325 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import com.epam.parso.SasFileProperties;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Physical layout of sas7bdat file (header length, page length, 32/64 bit
+ * alignment and endianness) and helpers for inspecting single pages. Parso
+ * doesn't expose page level access, so the page structure is read here.
+ */
+public class SasFileLayout {
+
+    public static final int PAGE_META_TYPE_1 = 0;
+    public static final int PAGE_META_TYPE_2 = 16384;
+    public static final int PAGE_DATA_TYPE = 256;
+    public static final int PAGE_MIX_TYPE = 512;
+    public static final int PAGE_AMD_TYPE = 1024;
+
+    private static final int PAGE_BIT_OFFSET_X86 = 16;
+    private static final int PAGE_BIT_OFFSET_X64 = 32;
+    private static final int SUBHEADER_POINTERS_OFFSET = 8;
+    private static final int SUBHEADER_POINTER_LENGTH_X86 = 12;
+    private static final int SUBHEADER_POINTER_LENGTH_X64 = 24;
+    private static final int TRUNCATED_SUBHEADER_ID = 1;
+    private static final int COMPRESSED_SUBHEADER_ID = 4;
+    private static final int COMPRESSED_SUBHEADER_TYPE = 1;
+
+    // signatures of metadata subheaders, all other subheaders of type 1 are rows
+    private static final Set<Long> METADATA_SIGNATURES = new HashSet<>(Arrays.asList(
+            (long) 0xF7F7F7F7, (long) 0xF6F6F6F6, (long) 0xFFFFFC00, (long) 0xFFFFFFFD,
+            (long) 0xFFFFFFFF, (long) 0xFFFFFFFC, (long) 0xFFFFFBFE, (long) 0xFFFFFFFE,
+            0x00000000F7F7F7F7L, 0x00000000F6F6F6F6L, 0xF7F7F7F700000000L, 0xF6F6F6F600000000L,
+            0xF7F7F7F7FFFFFBFEL, 0xF6F6F6F6FFFFFBFEL, 0x00FCFFFFFFFFFFFFL, 0xFDFFFFFFFFFFFFFFL,
+            0xFFFFFFFFFFFFFFFFL, 0xFCFFFFFFFFFFFFFFL, 0xFEFBFFFFFFFFFFFFL, 0xFEFFFFFFFFFFFFFFL));
+
+    private final boolean u64;
+    private final ByteOrder byteOrder;
+    private final int headerLength;
+    private final int pageLength;
+    private final long pageCount;
+    private final boolean compressed;
+    private final long rowCount;
+    private final long mixPageRowCount;
+    private final int rowLength;
+
+    public SasFileLayout(SasFileProperties properties) {
+        u64 = properties.isU64();
+        byteOrder = properties.getEndianness() == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        headerLength = properties.getHeaderLength();
+        pageLength = properties.getPageLength();
+        pageCount = properties.getPageCount();
+        compressed = properties.isCompressed();
+        rowCount = properties.getRowCount();
+        mixPageRowCount = properties.getMixPageRowCount();
+        rowLength = (int) properties.getRowLength();
+    }
+
+    public boolean isU64() {
+        return u64;
+    }
+
+    public ByteOrder getByteOrder() {
+        return byteOrder;
+    }
+
+    public int getHeaderLength() {
+        return headerLength;
+    }
+
+    public int getPageLength() {
+        return pageLength;
+    }
+
+    public long getPageCount() {
+        return pageCount;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public int getRowLength() {
+        return rowLength;
+    }
+
+    public long getMixPageRowCount() {
+        return mixPageRowCount;
+    }
+
+    /**
+     * @param page zero based page number
+     * @return offset of the page in file
+     */
+    public long getPageOffset(long page) {
+        return headerLength + page * pageLength;
+    }
+
+    public int getPageType(byte[] page) {
+        return wrap(page).getShort(getBitOffset()) & 0xFFFF;
+    }
+
+    public int getBlockCount(byte[] page) {
+        return wrap(page).getShort(getBitOffset() + 2) & 0xFFFF;
+    }
+
+    public int getSubheaderCount(byte[] page) {
+        return wrap(page).getShort(getBitOffset() + 4) & 0xFFFF;
+    }
+
+    /**
+     * Count rows stored on the page. Rows are stored directly on data and mix
+     * pages, compressed files store them as subheaders of meta pages.
+     *
+     * @param page
+     * @return number of rows on the page
+     */
+    public int countRows(byte[] page) {
+        switch (getPageType(page)) {
+            case PAGE_DATA_TYPE:
+                return getBlockCount(page);
+            case PAGE_MIX_TYPE:
+                return (int) Math.min(rowCount, mixPageRowCount);
+            case PAGE_META_TYPE_1:
+            case PAGE_META_TYPE_2:
+                int rows = 0;
+                for (int i = 0; i < getSubheaderCount(page); i++) {
+                    if (isDataSubheader(page, i)) {
+                        rows++;
+                    }
+                }
+                return rows;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Offset of the first row stored directly on data or mix page. Rows of
+     * mix pages follow subheader pointers, the offset is computed the same way
+     * as in Parso.
+     *
+     * @param page data or mix page
+     * @return offset of the first row in the page
+     */
+    public int getRowsOffset(byte[] page) {
+        int offset = getBitOffset() + SUBHEADER_POINTERS_OFFSET;
+        if (getPageType(page) == PAGE_MIX_TYPE) {
+            int pointers = getSubheaderCount(page) * (u64 ? SUBHEADER_POINTER_LENGTH_X64 : SUBHEADER_POINTER_LENGTH_X86);
+            offset += (offset + pointers) % 8 + pointers;
+        }
+        return offset;
+    }
+
+    /**
+     * @param page
+     * @param index index of subheader pointer
+     * @return offset of the subheader in the page
+     */
+    public long getSubheaderOffset(byte[] page, int index) {
+        return readIntOrLong(page, getPointerOffset(index));
+    }
+
+    /**
+     * @param page
+     * @param index index of subheader pointer
+     * @return length of the subheader, 0 for empty subheaders
+     */
+    public long getSubheaderLength(byte[] page, int index) {
+        return readIntOrLong(page, getPointerOffset(index) + getIntOrLongLength());
+    }
+
+    /**
+     * @param page
+     * @param index index of subheader pointer
+     * @return true if the subheader was truncated and doesn't contain data
+     */
+    public boolean isSubheaderTruncated(byte[] page, int index) {
+        return page[getPointerOffset(index) + 2 * getIntOrLongLength()] == TRUNCATED_SUBHEADER_ID;
+    }
+
+    /**
+     * @param page
+     * @param offset
+     * @return 8 byte value of 64 bit files or 4 byte value of 32 bit files
+     */
+    public long readIntOrLong(byte[] page, int offset) {
+        ByteBuffer buffer = wrap(page);
+        return u64 ? buffer.getLong(offset) : buffer.getInt(offset);
+    }
+
+    /**
+     * Remove all rows from the page, metadata subheaders are kept. Data pages
+     * can't be changed this way, they don't contain any metadata and should be
+     * skipped instead.
+     *
+     * @param page page which is modified in place
+     */
+    public void removeRows(byte[] page) {
+        ByteBuffer buffer = wrap(page);
+        switch (getPageType(page)) {
+            case PAGE_MIX_TYPE:
+                buffer.putShort(getBitOffset(), (short) PAGE_META_TYPE_1);
+                break;
+            case PAGE_META_TYPE_1:
+            case PAGE_META_TYPE_2:
+                for (int i = 0; i < getSubheaderCount(page); i++) {
+                    if (isDataSubheader(page, i)) {
+                        buffer.put(getPointerOffset(i) + 2 * getIntOrLongLength(), (byte) TRUNCATED_SUBHEADER_ID);
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Check if the subheader with provided index is a row. The same rules as
+     * in Parso are used, so both agree on the content of the page.
+     *
+     * @param page meta page of compressed file
+     * @param index index of subheader pointer
+     * @return true if the subheader is a row, false for uncompressed files
+     */
+    public boolean isDataSubheader(byte[] page, int index) {
+        if (!isDataPointer(page, index)) {
+            return false;
+        }
+        long offset = getSubheaderOffset(page, index);
+        ByteBuffer buffer = wrap(page);
+        long signature = u64 ? buffer.getLong((int) offset) : buffer.getInt((int) offset);
+        return !METADATA_SIGNATURES.contains(signature);
+    }
+
+    /**
+     * Check if the subheader pointer may point to a row, only the pointer is
+     * inspected. The subheader is a row if its signature isn't a signature
+     * of metadata (see isDataSubheader).
+     *
+     * @param page meta page of compressed file, only the header and the
+     * subheader pointers have to be read
+     * @param index index of subheader pointer
+     * @return false if the subheader isn't a row for sure
+     */
+    public boolean isDataPointer(byte[] page, int index) {
+        if (!compressed) {
+            return false;
+        }
+        long offset = getSubheaderOffset(page, index);
+        long length = getSubheaderLength(page, index);
+        int compression = getSubheaderCompression(page, index);
+        int type = page[getPointerOffset(index) + 2 * getIntOrLongLength() + 1];
+        return length != 0 && compression != TRUNCATED_SUBHEADER_ID && type == COMPRESSED_SUBHEADER_TYPE
+                && (compression == COMPRESSED_SUBHEADER_ID || compression == 0)
+                && offset >= 0 && offset + getIntOrLongLength() <= page.length;
+    }
+
+    /**
+     * @param page
+     * @param index index of subheader pointer
+     * @return compression flag of the subheader, 4 for compressed rows
+     */
+    public int getSubheaderCompression(byte[] page, int index) {
+        return page[getPointerOffset(index) + 2 * getIntOrLongLength()];
+    }
+
+    /**
+     * @return length of the page header, subheader pointers follow it
+     */
+    public int getPageHeaderLength() {
+        return getBitOffset() + SUBHEADER_POINTERS_OFFSET;
+    }
+
+    public int getSubheaderPointerLength() {
+        return u64 ? SUBHEADER_POINTER_LENGTH_X64 : SUBHEADER_POINTER_LENGTH_X86;
+    }
+
+    /**
+     * @return length of signatures of subheaders
+     */
+    public int getSignatureLength() {
+        return getIntOrLongLength();
+    }
+
+    private int getPointerOffset(int index) {
+        return getBitOffset() + SUBHEADER_POINTERS_OFFSET
+                + index * (u64 ? SUBHEADER_POINTER_LENGTH_X64 : SUBHEADER_POINTER_LENGTH_X86);
+    }
+
+    private int getBitOffset() {
+        return u64 ? PAGE_BIT_OFFSET_X64 : PAGE_BIT_OFFSET_X86;
+    }
+
+    private int getIntOrLongLength() {
+        return u64 ? 8 : 4;
+    }
+
+    private ByteBuffer wrap(byte[] page) {
+        return ByteBuffer.wrap(page).order(byteOrder);
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import com.epam.parso.Column;
+import com.epam.parso.ColumnFormat;
+
+import cz.closeit.pdi.sasreader.input.SasInputField;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * SAS formats recognized by Parso. Numeric columns with one of the date or
+ * datetime formats are returned by Parso as Date, so the Java type of values
+ * can be known from the column metadata before any row is read.
+ */
+public final class SasFormats {
+
+    private static final Set<String> DATE_FORMATS = new HashSet<>(Arrays.asList(
+            "B8601DA", "E8601DA", "DATE", "DAY", "DDMMYY", "DDMMYYB", "DDMMYYC", "DDMMYYD", "DDMMYYN",
+            "DDMMYYP", "DDMMYYS", "WEEKDATE", "WEEKDATX", "WEEKDAY", "DOWNAME", "WORDDATE", "WORDDATX",
+            "YYMM", "YYMMC", "YYMMD", "YYMMN", "YYMMP", "YYMMS", "YYMMDD", "YYMMDDB", "YYMMDDC", "YYMMDDD",
+            "YYMMDDN", "YYMMDDP", "YYMMDDS", "YYMON", "YEAR", "JULDAY", "JULIAN", "MMDDYY", "MMDDYYC",
+            "MMDDYYD", "MMDDYYN", "MMDDYYP", "MMDDYYS", "MMYY", "MMYYC", "MMYYD", "MMYYN", "MMYYP", "MMYYS",
+            "MONNAME", "MONTH", "MONYY"));
+
+    private static final Set<String> DATETIME_FORMATS = new HashSet<>(Arrays.asList(
+            "B8601DN", "B8601DT", "B8601DX", "B8601DZ", "B8601LX", "E8601DN", "E8601DT", "E8601DX",
+            "E8601DZ", "E8601LX", "DATEAMPM", "DATETIME", "DTDATE", "DTMONYY", "DTWKDATX", "DTYEAR",
+            "TOD", "MDYAMPM"));
+
+    // numeric formats showing the value with the given number of decimals
+    private static final Set<String> DECIMAL_FORMATS = new HashSet<>(Arrays.asList(
+            "", "F", "Z", "COMMA", "COMMAX", "DOLLAR", "DOLLARX", "NLNUM", "NUMX", "EURO", "EUROX"));
+
+    private SasFormats() {
+    }
+
+    /**
+     * Infer kettle type of the column from its format. Dates and texts are
+     * known for sure, numeric formats with decimals (e.g. 12.2, COMMA10.2)
+     * mean Number and the same formats without decimals (e.g. 8., F10.)
+     * probably mean Integer. Other formats (BEST12., none) aren't enough.
+     *
+     * @param column
+     * @param preferBigNumber use BigNumber instead of Number
+     * @return inferred type or null if it can't be inferred from the format
+     */
+    public static SasInputField.KettleType inferKettleType(Column column, boolean preferBigNumber) {
+        Class<?> valueType = getValueType(column);
+        if (valueType == String.class) {
+            return SasInputField.KettleType.String;
+        }
+        if (valueType == Date.class) {
+            return SasInputField.KettleType.Date;
+        }
+        ColumnFormat format = column.getFormat();
+        if (format == null || !DECIMAL_FORMATS.contains(format.getName().toUpperCase(Locale.ROOT))) {
+            return null;
+        }
+        if (format.getPrecision() > 0) {
+            return preferBigNumber ? SasInputField.KettleType.BigNumber : SasInputField.KettleType.Number;
+        }
+        if (format.getWidth() > 0) {
+            return SasInputField.KettleType.Integer;
+        }
+        return null;
+    }
+
+    public static boolean isDateFormat(String format) {
+        return DATE_FORMATS.contains(format);
+    }
+
+    public static boolean isDateTimeFormat(String format) {
+        return DATETIME_FORMATS.contains(format);
+    }
+
+    /**
+     * Java type of values which Parso returns for the column. Numeric columns
+     * without date format can contain Long, Double or Integer values.
+     *
+     * @param column
+     * @return String.class, Date.class or Number.class
+     */
+    public static Class<?> getValueType(Column column) {
+        if (column.getType() != Number.class) {
+            return String.class;
+        }
+        String format = column.getFormat() == null ? "" : column.getFormat().getName();
+        if (column.getLength() > 2 && (isDateFormat(format) || isDateTimeFormat(format))) {
+            return Date.class;
+        }
+        return Number.class;
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Seekable source of sas file bytes. It can be used as a sequential input
+ * stream (this is how Parso reads it) and at the same time it allows reading
+ * from any position without changing the position of the stream, so pages can
+ * be read randomly.
+ */
+public abstract class SasInputSource extends InputStream {
+
+    /**
+     * System property (Kettle sets variables of kettle.properties as system
+     * properties) which enables memory mapping of files when it's Y.
+     */
+    public static final String PROPERTY_MEMORY_MAP = "SAS_READER_MEMORY_MAP";
+
+    private long position = 0;
+    private long readNanos = 0;
+
+    /**
+     * Open the file for positional reads of file channel. Memory mapping is
+     * used only when SAS_READER_MEMORY_MAP is Y, because mappings are released
+     * by garbage collector long after the source is closed. Until then the
+     * file can't be deleted or replaced on Windows and the mappings hold
+     * address space. If the mapping fails, file channel is used instead.
+     *
+     * @param file
+     * @return opened source
+     * @throws IOException
+     */
+    public static SasInputSource open(File file) throws IOException {
+        if ("Y".equalsIgnoreCase(System.getProperty(PROPERTY_MEMORY_MAP))) {
+            try {
+                return new MappedSasInputSource(file);
+            } catch (IOException ex) {
+                // fall back to file channel
+            }
+        }
+        return new ChannelSasInputSource(file);
+    }
+
+    /**
+     * @return length of the source in bytes
+     */
+    public abstract long length();
+
+    /**
+     * Read bytes from the given position. The position of the stream isn't
+     * changed. Implementations are safe to be called from more threads.
+     *
+     * @param position
+     * @param b
+     * @param off
+     * @param len
+     * @return number of bytes read, may be less than len, or -1 if the position
+     * is at the end of the source
+     * @throws IOException
+     */
+    public abstract int read(long position, byte[] b, int off, int len) throws IOException;
+
+    /**
+     * Read exactly len bytes from the given position.
+     *
+     * @param position
+     * @param b
+     * @param off
+     * @param len
+     * @throws IOException
+     * @throws EOFException if the source ends before all bytes were read
+     */
+    public void readFully(long position, byte[] b, int off, int len) throws IOException {
+        int total = 0;
+        while (total < len) {
+            int count = read(position + total, b, off + total, len - total);
+            if (count < 0) {
+                throw new EOFException();
+            }
+            total += count;
+        }
+    }
+
+    /**
+     * @return position of the stream, it's also the number of bytes consumed
+     * by sequential reading
+     */
+    public long position() {
+        return position;
+    }
+
+    public void seek(long position) {
+        this.position = position;
+    }
+
+    /**
+     * @return time spent in sequential reading in nanoseconds
+     */
+    public long getReadNanos() {
+        return readNanos;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == 1 ? b[0] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        int count = read(position, b, off, len);
+        readNanos += System.nanoTime() - start;
+        if (count > 0) {
+            position += count;
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = Math.max(0, Math.min(n, length() - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, length() - position));
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import com.epam.parso.Column;
+import com.epam.parso.SasFileProperties;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JVM wide cache of metadata of sas files (file properties, columns, the
+ * first page with rows, the layout of columns and the page index). Files are
+ * identified by their canonical path, an entry is valid only while the size
+ * and the modification time of the file are unchanged. The least recently
+ * used entries are evicted when the cache is full.
+ */
+public class SasMetadataCache {
+
+    public static final int MAX_ENTRIES = 64;
+
+    private static final SasMetadataCache INSTANCE = new SasMetadataCache(MAX_ENTRIES);
+
+    private final Map<String, Entry> entries;
+
+    SasMetadataCache(final int maxEntries) {
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public static SasMetadataCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param file sas file
+     * @return cached metadata or null if the file isn't cached or it was
+     * changed since it was cached
+     */
+    public Entry get(File file) {
+        String path = getPath(file);
+        long length = file.length();
+        long lastModified = file.lastModified();
+        synchronized (entries) {
+            Entry entry = entries.get(path);
+            if (entry != null && (entry.length != length || entry.lastModified != lastModified)) {
+                entries.remove(path);
+                entry = null;
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Save metadata of the file. The size and the modification time are read
+     * from the file now, so metadata must be read from the current content.
+     *
+     * @param file sas file
+     * @param properties properties read by Parso
+     * @param columns columns read by Parso
+     * @param firstDataPage first page with rows
+     * @return the saved entry
+     */
+    public Entry put(File file, SasFileProperties properties, List<Column> columns, long firstDataPage) {
+        Entry entry = new Entry(file.length(), file.lastModified(), properties, columns, firstDataPage);
+        synchronized (entries) {
+            entries.put(getPath(file), entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static String getPath(File file) {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException ex) {
+            return file.getAbsolutePath();
+        }
+    }
+
+    /**
+     * Metadata of one file, it's shared by all readers of the file, so it
+     * must not be modified.
+     */
+    public static class Entry {
+
+        private final long length;
+        private final long lastModified;
+        private final SasFileProperties properties;
+        private final List<Column> columns;
+        private final long firstDataPage;
+        private ColumnIndex columnIndex = null;
+        private SasColumnLayout columnLayout = null;
+        private SasPageIndex pageIndex = null;
+
+        private Entry(long length, long lastModified, SasFileProperties properties, List<Column> columns, long firstDataPage) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.properties = properties;
+            this.columns = Collections.unmodifiableList(columns);
+            this.firstDataPage = firstDataPage;
+        }
+
+        public SasFileProperties getProperties() {
+            return properties;
+        }
+
+        public List<Column> getColumns() {
+            return columns;
+        }
+
+        public long getFirstDataPage() {
+            return firstDataPage;
+        }
+
+        /**
+         * @return index of columns, it's built by the first call
+         */
+        public synchronized ColumnIndex getColumnIndex() {
+            if (columnIndex == null) {
+                columnIndex = new ColumnIndex(columns);
+            }
+            return columnIndex;
+        }
+
+        /**
+         * @param file the sas file of the entry
+         * @param layout layout of the file
+         * @return offsets and lengths of columns, they are read from the file
+         * by the first call
+         * @throws IOException
+         */
+        public synchronized SasColumnLayout getColumnLayout(File file, SasFileLayout layout) throws IOException {
+            if (columnLayout == null) {
+                try (SasInputSource source = SasInputSource.open(file)) {
+                    columnLayout = SasColumnLayout.read(source, layout, firstDataPage);
+                }
+            }
+            return columnLayout;
+        }
+
+        /**
+         * @param file the sas file of the entry
+         * @param layout layout of the file
+         * @return rows of pages, they are counted by the first call
+         * @throws IOException
+         */
+        public synchronized SasPageIndex getPageIndex(File file, SasFileLayout layout) throws IOException {
+            if (pageIndex == null) {
+                try (SasInputSource source = SasInputSource.open(file)) {
+                    pageIndex = new SasPageIndex(source, layout, firstDataPage);
+                }
+            }
+            return pageIndex;
+        }
+    }
+}
@@ -0,0 +1,667 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import com.epam.parso.Column;
+
+import cz.closeit.pdi.sasreader.input.ValueCache;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Decoder of rows stored directly on data and mix pages of sas files. Rows of
+ * compressed files stored as subheaders of meta pages are decompressed by
+ * SasDecompressor into a buffer reused for all pages. Unlike Parso it doesn't
+ * build an array of values for every row, the decoder is a cursor over rows
+ * of pages and values of projected columns are decoded from page bytes only
+ * when they are asked for, so filters and conversions read them straight into
+ * output rows. Values are the same as returned by Parso (Long for whole
+ * numbers, Double, Date, String or byte arrays). Alternatively rows are
+ * decoded in batches into vectors of columns (see nextBatch), numbers and
+ * dates are then decoded by tight loops over rows of a page without boxing.
+ *
+ * The same decoding is used for rows of a sidecar file (see SasSidecar),
+ * values of every column are then read from its own block of the file
+ * instead of pages.
+ *
+ * The decoder isn't thread safe.
+ */
+public class SasPageDecoder implements SasRowValues {
+
+    private static final int KIND_NONE = 0;
+    private static final int KIND_NUMBER = 1;
+    private static final int KIND_SHORT = 2;
+    private static final int KIND_DATE = 3;
+    private static final int KIND_DATETIME = 4;
+    private static final int KIND_CHARACTER = 5;
+
+    private static final double NAN_EPSILON = 1E-300;
+    private static final double EPSILON = 1E-14;
+    private static final double DAYS_1960_TO_1970 = 3653;
+    private static final double SECONDS_1960_TO_1970 = 315619200;
+
+    // maximal number of bytes of one column read at once from a sidecar
+    private static final int SIDECAR_CHUNK_BYTES = 256 * 1024;
+
+    private final SasInputSource source;
+    private final SasFileLayout layout;
+    private final SasSidecar sidecar;
+    private final boolean littleEndian;
+    private final Charset charset;
+    private final boolean byteOutput;
+    private final SasDecompressor decompressor;
+    private final int rowLength;
+    private final long toPage;
+
+    // index, offset in row, length and kind of every projected column
+    private final int[] indexes;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final int[] kinds;
+
+    // bytes of projected columns of the current block (page or sidecar chunk),
+    // offset of the column in the first row of the block and distance of rows
+    private final byte[][] blocks;
+    private final int[] blockOffsets;
+    private final int[] strides;
+
+    private final byte[] page;
+    // rows of the current page, the page itself or decompressed rows
+    private byte[] rows;
+    private int rowsOffset;
+    private byte[] rowBuffer = new byte[0];
+    private long nextPage;
+    private long nextSidecarRow;
+    private int rowsOnPage = 0;
+    private int rowOnPage = 0;
+    private int currentRow = -1;
+    private long remainingRows;
+    private long bytesRead = 0;
+    private long readNanos = 0;
+
+    /**
+     * @param source opened sas file, it's closed together with the decoder
+     * @param layout layout of the file
+     * @param columnLayout layout of columns matching the columns
+     * @param columns columns of the file
+     * @param projection names of decoded columns or null for all columns
+     * @param encoding encoding of character values
+     * @param byteOutput return character values as byte arrays
+     * @param decompressor decompressor of rows of compressed file, null for
+     * uncompressed file
+     * @param fromPage first page (inclusive)
+     * @param toPage last page (exclusive)
+     * @param maxRows maximal number of returned rows
+     */
+    public SasPageDecoder(SasInputSource source, SasFileLayout layout, SasColumnLayout columnLayout, List<Column> columns,
+            List<String> projection, String encoding, boolean byteOutput, SasDecompressor decompressor,
+            long fromPage, long toPage, long maxRows) {
+        this.source = source;
+        this.layout = layout;
+        this.sidecar = null;
+        this.littleEndian = layout.getByteOrder() == ByteOrder.LITTLE_ENDIAN;
+        this.charset = Charset.forName(encoding);
+        this.byteOutput = byteOutput;
+        this.decompressor = decompressor;
+        this.rowLength = layout.getRowLength();
+        this.nextPage = fromPage;
+        this.toPage = Math.min(toPage, layout.getPageCount());
+        this.remainingRows = maxRows;
+        this.page = new byte[layout.getPageLength()];
+        this.rows = page;
+
+        int size = projection == null ? columns.size() : projection.size();
+        indexes = new int[size];
+        offsets = new int[size];
+        lengths = new int[size];
+        kinds = new int[size];
+        blocks = new byte[size][];
+        blockOffsets = new int[size];
+        strides = new int[size];
+        int[] columnLengths = new int[columnLayout.getColumnCount()];
+        for (int i = 0; i < columnLengths.length; i++) {
+            columnLengths[i] = columnLayout.getLength(i);
+        }
+        setColumns(columns, projection, columnLengths);
+        for (int i = 0; i < size; i++) {
+            offsets[i] = kinds[i] == KIND_NONE ? 0 : columnLayout.getOffset(indexes[i]);
+        }
+    }
+
+    /**
+     * Create decoder of rows of a sidecar file. Only columns of the projection
+     * are read from the file.
+     *
+     * @param sidecar sidecar of the sas file
+     * @param columns columns of the sas file
+     * @param projection names of decoded columns or null for all columns
+     * @param encoding encoding of character values
+     * @param byteOutput return character values as byte arrays
+     * @param maxRows maximal number of returned rows
+     * @throws IOException if the sidecar file can't be opened
+     */
+    public SasPageDecoder(SasSidecar sidecar, List<Column> columns, List<String> projection, String encoding, boolean byteOutput,
+            long maxRows) throws IOException {
+        this.layout = null;
+        this.sidecar = sidecar;
+        this.littleEndian = sidecar.isLittleEndian();
+        this.charset = Charset.forName(encoding);
+        this.byteOutput = byteOutput;
+        this.decompressor = null;
+        this.rowLength = 0;
+        this.toPage = 0;
+        this.remainingRows = Math.min(maxRows, sidecar.getRowCount());
+        this.page = null;
+
+        int size = projection == null ? columns.size() : projection.size();
+        indexes = new int[size];
+        offsets = new int[size];
+        lengths = new int[size];
+        kinds = new int[size];
+        blocks = new byte[size][];
+        blockOffsets = new int[size];
+        strides = new int[size];
+        int[] columnLengths = new int[sidecar.getColumnCount()];
+        for (int i = 0; i < columnLengths.length; i++) {
+            columnLengths[i] = sidecar.getLength(i);
+        }
+        setColumns(columns, projection, columnLengths);
+        // not mapped, so the cache is able to delete the sidecar on Windows
+        // as soon as the decoder is closed
+        this.source = new ChannelSasInputSource(sidecar.getFile());
+    }
+
+    /**
+     * Check if the decoder is able to decode rows of the file. Compressed
+     * files need a decompressor and numeric columns of one byte aren't
+     * supported.
+     *
+     * @param layout layout of the file
+     * @param columnLayout layout of columns read from the file
+     * @param columns columns read by Parso
+     * @param encoding encoding of character values
+     * @param decompressor decompressor of rows or null
+     * @return true if the file can be decoded
+     */
+    public static boolean isSupported(SasFileLayout layout, SasColumnLayout columnLayout, List<Column> columns, String encoding,
+            SasDecompressor decompressor) {
+        if ((layout.isCompressed() && decompressor == null) || layout.getRowLength() <= 0
+                || !columnLayout.matches(columns, layout.getRowLength()) || encoding == null) {
+            return false;
+        }
+        try {
+            if (!Charset.isSupported(encoding)) {
+                return false;
+            }
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+        for (int i = 0; i < columnLayout.getColumnCount(); i++) {
+            if (columnLayout.isNumeric(i) && columnLayout.getLength(i) == 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Move to the next row.
+     *
+     * @return false if there isn't any other row
+     * @throws IOException
+     */
+    public boolean next() throws IOException {
+        if (remainingRows <= 0) {
+            return false;
+        }
+        while (rowOnPage >= rowsOnPage) {
+            if (!readNextBlock()) {
+                remainingRows = 0;
+                return false;
+            }
+        }
+        currentRow = rowOnPage;
+        rowOnPage++;
+        remainingRows--;
+        return true;
+    }
+
+    /**
+     * Create batch with vectors of projected columns.
+     *
+     * @param capacity maximal number of rows of the batch
+     * @return empty batch
+     */
+    public SasColumnBatch createBatch(int capacity) {
+        int[] types = new int[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            switch (kinds[i]) {
+                case KIND_NUMBER:
+                    types[i] = SasColumnBatch.VECTOR_NUMBER;
+                    break;
+                case KIND_DATE:
+                case KIND_DATETIME:
+                    types[i] = SasColumnBatch.VECTOR_MILLIS;
+                    break;
+                default:
+                    types[i] = SasColumnBatch.VECTOR_OBJECT;
+                    break;
+            }
+        }
+        return new SasColumnBatch(types, capacity);
+    }
+
+    /**
+     * Decode following rows into the batch. Every column is decoded for all
+     * rows of a page at once.
+     *
+     * @param batch batch created by createBatch
+     * @return number of decoded rows, 0 if there isn't any other row
+     * @throws IOException
+     */
+    public int nextBatch(SasColumnBatch batch) throws IOException {
+        batch.clear();
+        int count = 0;
+        while (count < batch.getCapacity() && remainingRows > 0) {
+            if (rowOnPage >= rowsOnPage && !readNextBlock()) {
+                remainingRows = 0;
+                break;
+            }
+            int rowCount = (int) Math.min(Math.min(rowsOnPage - rowOnPage, batch.getCapacity() - count), remainingRows);
+            for (int i = 0; i < kinds.length; i++) {
+                decodeColumn(batch, i, count, rowCount);
+            }
+            rowOnPage += rowCount;
+            remainingRows -= rowCount;
+            count += rowCount;
+        }
+        batch.setSize(count);
+        return count;
+    }
+
+    /**
+     * Skip rows without decoding them. Rows of a sidecar are skipped without
+     * reading.
+     *
+     * @param rowCount number of skipped rows
+     * @return number of really skipped rows
+     * @throws IOException
+     */
+    public long skip(long rowCount) throws IOException {
+        long skipped = 0;
+        if (sidecar != null) {
+            long remainingInChunk = rowsOnPage - rowOnPage;
+            skipped = Math.min(Math.min(rowCount, remainingRows), remainingInChunk + sidecar.getRowCount() - nextSidecarRow);
+            if (skipped > remainingInChunk) {
+                nextSidecarRow += skipped - remainingInChunk;
+                rowsOnPage = 0;
+                rowOnPage = 0;
+            } else {
+                rowOnPage += (int) skipped;
+            }
+            remainingRows -= skipped;
+            return skipped;
+        }
+        while (skipped < rowCount && next()) {
+            skipped++;
+        }
+        return skipped;
+    }
+
+    @Override
+    public Object getValue(int index) {
+        return decodeValue(index, blocks[index], blockOffsets[index] + currentRow * strides[index]);
+    }
+
+    /**
+     * Box number the same way as Parso, whole numbers are returned as Long.
+     *
+     * @param value number which isn't missing
+     * @return Long or Double
+     */
+    public static Object boxNumber(double value) {
+        return isWholeNumber(value) ? ValueCache.toLong(Math.round(value)) : (Object) value;
+    }
+
+    /**
+     * @param value number which isn't missing
+     * @return true if Parso returns the number as Long
+     */
+    public static boolean isWholeNumber(double value) {
+        return Math.abs(value - Math.round(value)) < EPSILON;
+    }
+
+    /**
+     * @param value number decoded from page
+     * @return true if the number is missing value
+     */
+    private static boolean isMissing(double value) {
+        return Double.isNaN(value) || (value < NAN_EPSILON && value > 0);
+    }
+
+    private void decodeColumn(SasColumnBatch batch, int column, int batchRow, int rowCount) {
+        byte[] block = blocks[column];
+        int stride = strides[column];
+        int offset = blockOffsets[column] + rowOnPage * stride;
+        int length = lengths[column];
+        switch (kinds[column]) {
+            case KIND_NUMBER:
+                double[] numbers = batch.getNumbers(column);
+                for (int r = 0; r < rowCount; r++, offset += stride) {
+                    double value = readDouble(block, offset, length);
+                    if (isMissing(value)) {
+                        batch.setNull(column, batchRow + r);
+                    } else {
+                        numbers[batchRow + r] = value;
+                    }
+                }
+                break;
+            case KIND_DATE:
+            case KIND_DATETIME:
+                long[] millis = batch.getMillis(column);
+                boolean date = kinds[column] == KIND_DATE;
+                for (int r = 0; r < rowCount; r++, offset += stride) {
+                    double value = readDouble(block, offset, length);
+                    if (Double.isNaN(value)) {
+                        batch.setNull(column, batchRow + r);
+                    } else {
+                        millis[batchRow + r] = date ? toDateMillis(value) : toDateTimeMillis(value);
+                    }
+                }
+                break;
+            case KIND_NONE:
+                for (int r = 0; r < rowCount; r++) {
+                    batch.setNull(column, batchRow + r);
+                }
+                break;
+            default:
+                Object[] objects = batch.getObjects(column);
+                for (int r = 0; r < rowCount; r++, offset += stride) {
+                    Object value = decodeValue(column, block, offset);
+                    if (value == null) {
+                        batch.setNull(column, batchRow + r);
+                    } else {
+                        objects[batchRow + r] = value;
+                    }
+                }
+                break;
+        }
+    }
+
+    private Object decodeValue(int index, byte[] block, int offset) {
+        switch (kinds[index]) {
+            case KIND_NUMBER:
+                return toNumber(readDouble(block, offset, lengths[index]));
+            case KIND_SHORT:
+                // Parso returns short values as integers
+                return littleEndian
+                        ? (int) (short) ((block[offset] & 0xFF) | (block[offset + 1] << 8))
+                        : (int) (short) ((block[offset] << 8) | (block[offset + 1] & 0xFF));
+            case KIND_DATE:
+                double days = readDouble(block, offset, lengths[index]);
+                return Double.isNaN(days) ? null : new Date(toDateMillis(days));
+            case KIND_DATETIME:
+                double seconds = readDouble(block, offset, lengths[index]);
+                return Double.isNaN(seconds) ? null : new Date(toDateTimeMillis(seconds));
+            case KIND_CHARACTER:
+                return readCharacter(block, offset, lengths[index]);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Copy bytes of following rows column by column. It's used to write
+     * sidecar files, rows are copied from the current page only.
+     *
+     * @param columnOffsets offsets of copied columns in rows
+     * @param columnLengths lengths of copied columns
+     * @param targets arrays of values of copied columns
+     * @param targetRow index of the first copied row in the arrays
+     * @param maxRows maximal number of copied rows
+     * @return number of copied rows, 0 if there isn't any other row
+     * @throws IOException
+     */
+    int copyRows(int[] columnOffsets, int[] columnLengths, byte[][] targets, int targetRow, int maxRows) throws IOException {
+        if (remainingRows <= 0) {
+            return 0;
+        }
+        if (rowOnPage >= rowsOnPage && !readNextBlock()) {
+            remainingRows = 0;
+            return 0;
+        }
+        int rowCount = (int) Math.min(Math.min(rowsOnPage - rowOnPage, maxRows), remainingRows);
+        int firstRow = rowsOffset + rowOnPage * rowLength;
+        for (int c = 0; c < targets.length; c++) {
+            int length = columnLengths[c];
+            for (int r = 0; r < rowCount; r++) {
+                System.arraycopy(rows, firstRow + r * rowLength + columnOffsets[c], targets[c], (targetRow + r) * length, length);
+            }
+        }
+        rowOnPage += rowCount;
+        remainingRows -= rowCount;
+        return rowCount;
+    }
+
+    /**
+     * @return number of bytes read from the file
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return time spent in reading from the file in nanoseconds
+     */
+    public long getReadNanos() {
+        return readNanos;
+    }
+
+    public void close() throws IOException {
+        source.close();
+    }
+
+    /**
+     * Read the next page with rows or the next chunk of rows of a sidecar.
+     */
+    private boolean readNextBlock() throws IOException {
+        if (sidecar != null) {
+            return readNextChunk();
+        }
+        if (!readNextPage()) {
+            return false;
+        }
+        for (int i = 0; i < kinds.length; i++) {
+            blocks[i] = rows;
+            blockOffsets[i] = rowsOffset + offsets[i];
+            strides[i] = rowLength;
+        }
+        return true;
+    }
+
+    private boolean readNextPage() throws IOException {
+        while (nextPage < toPage) {
+            long start = System.nanoTime();
+            source.readFully(layout.getPageOffset(nextPage++), page, 0, page.length);
+            readNanos += System.nanoTime() - start;
+            bytesRead += page.length;
+            int type = layout.getPageType(page);
+            if (type == SasFileLayout.PAGE_DATA_TYPE || type == SasFileLayout.PAGE_MIX_TYPE) {
+                rows = page;
+                rowsOffset = layout.getRowsOffset(page);
+                rowsOnPage = Math.min(layout.countRows(page), Math.max(0, (page.length - rowsOffset) / rowLength));
+            } else if (decompressor != null
+                    && (type == SasFileLayout.PAGE_META_TYPE_1 || type == SasFileLayout.PAGE_META_TYPE_2)) {
+                rowsOnPage = decompressRows();
+            } else {
+                rowsOnPage = 0;
+            }
+            rowOnPage = 0;
+            if (rowsOnPage > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Read values of projected columns of following rows of the sidecar.
+     */
+    private boolean readNextChunk() throws IOException {
+        long rowCount = Math.min(sidecar.getRowCount() - nextSidecarRow, remainingRows);
+        if (rowCount <= 0) {
+            return false;
+        }
+        int maxLength = 1;
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] != KIND_NONE) {
+                maxLength = Math.max(maxLength, lengths[i]);
+            }
+        }
+        int chunkRows = (int) Math.min(rowCount, Math.max(1, SIDECAR_CHUNK_BYTES / maxLength));
+        long start = System.nanoTime();
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] == KIND_NONE) {
+                continue;
+            }
+            int length = chunkRows * lengths[i];
+            if (blocks[i] == null || blocks[i].length < length) {
+                blocks[i] = new byte[Math.max(length, SIDECAR_CHUNK_BYTES / maxLength * lengths[i])];
+            }
+            source.readFully(sidecar.getColumnOffset(indexes[i]) + nextSidecarRow * lengths[i], blocks[i], 0, length);
+            blockOffsets[i] = 0;
+            strides[i] = lengths[i];
+            bytesRead += length;
+        }
+        readNanos += System.nanoTime() - start;
+        nextSidecarRow += chunkRows;
+        rowsOnPage = chunkRows;
+        rowOnPage = 0;
+        return true;
+    }
+
+    /**
+     * Decompress rows stored as subheaders of the meta page one after another
+     * into the row buffer. Like in Parso, rows which aren't shorter than rows
+     * of the file aren't compressed. Only rows which will be returned are
+     * decompressed.
+     *
+     * @return number of rows of the page
+     */
+    private int decompressRows() throws IOException {
+        int count = (int) Math.min(layout.countRows(page), remainingRows);
+        if (rowBuffer.length < count * rowLength) {
+            rowBuffer = new byte[count * rowLength];
+        }
+        rows = rowBuffer;
+        rowsOffset = 0;
+        int row = 0;
+        for (int i = 0; i < layout.getSubheaderCount(page) && row < count; i++) {
+            if (layout.isDataSubheader(page, i)) {
+                int offset = (int) layout.getSubheaderOffset(page, i);
+                int length = (int) layout.getSubheaderLength(page, i);
+                if (length < rowLength) {
+                    decompressor.decompress(page, offset, length, rowBuffer, row * rowLength, rowLength);
+                } else {
+                    System.arraycopy(page, offset, rowBuffer, row * rowLength, rowLength);
+                }
+                row++;
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Set index, length and kind of projected columns. Like in Parso, columns
+     * following a column of zero length aren't decoded.
+     */
+    private void setColumns(List<Column> columns, List<String> projection, int[] columnLengths) {
+        for (int i = 0; i < columns.size() && i < columnLengths.length && columnLengths[i] != 0; i++) {
+            int index = projection == null ? i : projection.indexOf(columns.get(i).getName());
+            if (index >= 0) {
+                indexes[index] = i;
+                lengths[index] = columnLengths[i];
+                kinds[index] = getKind(columns.get(i), columnLengths[i]);
+            }
+        }
+    }
+
+    /**
+     * Numeric values shorter than 8 bytes are the most significant bytes of
+     * double.
+     */
+    private double readDouble(byte[] block, int offset, int length) {
+        long bits = 0;
+        if (littleEndian) {
+            for (int i = length - 1; i >= 0; i--) {
+                bits = (bits << 8) | (block[offset + i] & 0xFF);
+            }
+            bits <<= 8 * (8 - length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                bits = (bits << 8) | (block[offset + i] & 0xFF);
+            }
+            bits <<= 8 * (8 - length);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    private static Object toNumber(double value) {
+        return isMissing(value) ? null : boxNumber(value);
+    }
+
+    private static long toDateMillis(double days) {
+        return (long) ((days - DAYS_1960_TO_1970) * 60 * 60 * 24 * 1000);
+    }
+
+    private static long toDateTimeMillis(double seconds) {
+        return (long) ((seconds - SECONDS_1960_TO_1970) * 1000);
+    }
+
+    private Object readCharacter(byte[] block, int offset, int length) {
+        int end = offset + length;
+        while (end > offset && (block[end - 1] == ' ' || block[end - 1] == 0 || block[end - 1] == '\t')) {
+            end--;
+        }
+        if (end == offset) {
+            return null;
+        }
+        return byteOutput ? Arrays.copyOfRange(block, offset, end) : new String(block, offset, end - offset, charset);
+    }
+
+    private static int getKind(Column column, int length) {
+        if (column.getType() != Number.class) {
+            return KIND_CHARACTER;
+        }
+        if (length <= 2) {
+            return KIND_SHORT;
+        }
+        String format = column.getFormat() == null ? "" : column.getFormat().getName();
+        if (format.isEmpty()) {
+            return KIND_NUMBER;
+        } else if (SasFormats.isDateTimeFormat(format)) {
+            return KIND_DATETIME;
+        } else if (SasFormats.isDateFormat(format)) {
+            return KIND_DATE;
+        }
+        return KIND_NUMBER;
+    }
+}
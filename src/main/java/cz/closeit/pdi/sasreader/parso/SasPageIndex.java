@@ -0,0 +1,157 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Number of rows stored before every data page of sas file. Rows aren't read
+ * at all, only page headers and subheader pointers are, so the index is cheap
+ * to build even for large files.
+ *
+ * Pages of uncompressed files are full except the first page with rows (mix
+ * page) and the last one, the page of a row is then computed from the number
+ * of rows of these pages and of a full data page, only three page headers
+ * are read. Otherwise (compressed files, metadata pages among data pages)
+ * headers of all pages are read. Rows of compressed files are counted from
+ * subheader pointers, only signatures of uncompressed subheaders of type 1
+ * are read to tell rows from metadata.
+ */
+public class SasPageIndex {
+
+    private final long firstDataPage;
+    private final long pageCount;
+    // rows of the first page and of every following page except the last
+    // one, if all these pages are full
+    private final long firstPageRows;
+    private final long rowsPerPage;
+    private final long rowCount;
+    // firstRows[i] is the index of the first row on page firstDataPage + i,
+    // the last item is the number of all rows, null if pages are full
+    private final long[] firstRows;
+
+    /**
+     * @param source opened sas file
+     * @param layout layout of the file
+     * @param firstDataPage first page with rows
+     * @throws IOException
+     */
+    public SasPageIndex(SasInputSource source, SasFileLayout layout, long firstDataPage) throws IOException {
+        this.firstDataPage = firstDataPage;
+        pageCount = Math.max(0, layout.getPageCount() - firstDataPage);
+        byte[] page = new byte[layout.getPageLength()];
+
+        if (!layout.isCompressed() && pageCount > 0) {
+            long first = countRows(source, layout, page, firstDataPage);
+            long last = pageCount > 1 ? countRows(source, layout, page, firstDataPage + pageCount - 1) : 0;
+            long full = pageCount > 2 ? countRows(source, layout, page, firstDataPage + 1) : last;
+            long total = first + Math.max(0, pageCount - 2) * full + last;
+            if (total == layout.getRowCount() && (full > 0 || pageCount <= 2)) {
+                firstPageRows = first;
+                rowsPerPage = full;
+                rowCount = total;
+                firstRows = null;
+                return;
+            }
+        }
+
+        firstPageRows = 0;
+        rowsPerPage = 0;
+        firstRows = new long[(int) pageCount + 1];
+        long rows = 0;
+        for (int i = 0; i < pageCount; i++) {
+            firstRows[i] = rows;
+            rows += countRows(source, layout, page, firstDataPage + i);
+        }
+        rowCount = Math.min(rows, layout.getRowCount());
+        firstRows[(int) pageCount] = rowCount;
+    }
+
+    /**
+     * Read only the parts of the page needed to count its rows.
+     */
+    private static int countRows(SasInputSource source, SasFileLayout layout, byte[] page, long pageIndex)
+            throws IOException {
+        long pageOffset = layout.getPageOffset(pageIndex);
+        source.readFully(pageOffset, page, 0, layout.getPageHeaderLength());
+        int type = layout.getPageType(page);
+        if (!layout.isCompressed() || (type != SasFileLayout.PAGE_META_TYPE_1 && type != SasFileLayout.PAGE_META_TYPE_2)) {
+            return layout.countRows(page);
+        }
+        int pointers = layout.getSubheaderCount(page);
+        int pointersLength = Math.min(pointers * layout.getSubheaderPointerLength(), page.length - layout.getPageHeaderLength());
+        source.readFully(pageOffset + layout.getPageHeaderLength(), page, layout.getPageHeaderLength(), pointersLength);
+        int rows = 0;
+        for (int i = 0; i < pointers; i++) {
+            if (!layout.isDataPointer(page, i)) {
+                continue;
+            }
+            if (layout.getSubheaderCompression(page, i) == 0) {
+                // uncompressed subheader is either a row or metadata
+                int offset = (int) layout.getSubheaderOffset(page, i);
+                source.readFully(pageOffset + offset, page, offset, layout.getSignatureLength());
+                if (!layout.isDataSubheader(page, i)) {
+                    continue;
+                }
+            }
+            rows++;
+        }
+        return rows;
+    }
+
+    /**
+     * @return number of rows on all pages
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @param page zero based page number
+     * @return index of the first row on the page
+     */
+    public long getFirstRow(long page) {
+        if (firstRows != null) {
+            return firstRows[(int) (page - firstDataPage)];
+        }
+        return page == firstDataPage ? 0 : firstPageRows + (page - firstDataPage - 1) * rowsPerPage;
+    }
+
+    /**
+     * @param row zero based row index, lower than getRowCount
+     * @return page containing the row
+     */
+    public long getPageOfRow(long row) {
+        if (firstRows == null) {
+            if (row < firstPageRows) {
+                return firstDataPage;
+            }
+            long page = rowsPerPage == 0 ? 0 : (row - firstPageRows) / rowsPerPage;
+            return firstDataPage + 1 + Math.min(page, pageCount - 2);
+        }
+        int i = Arrays.binarySearch(firstRows, 0, firstRows.length - 1, row);
+        if (i < 0) {
+            i = -i - 2;
+        } else {
+            // pages without rows share the first row with the following page
+            while (i + 1 < firstRows.length - 1 && firstRows[i + 1] == row) {
+                i++;
+            }
+        }
+        return firstDataPage + i;
+    }
+}
@@ -0,0 +1,243 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and cumulative phase timings of reading sas files by one step
+ * copy. Counters may be updated from more threads (read-ahead, file set
+ * reader), so they are atomic. Phases are measured per batch of rows, not per
+ * row:
+ * <ul>
+ * <li>io - reading of file bytes (page faults of mapped files included)</li>
+ * <li>decode - Parso row decoding including decompression and io</li>
+ * <li>wait - the step waiting for decoded rows (equals decode without
+ * read-ahead)</li>
+ * <li>filter, conversion, putRow - the rest of row processing</li>
+ * </ul>
+ * Statistics can be registered as an MBean under the domain
+ * cz.closeit.pdi.sasreader.
+ */
+public class SasReadStatistics implements SasReadStatisticsMBean {
+
+    public static final String JMX_DOMAIN = "cz.closeit.pdi.sasreader";
+
+    private final long startTime = System.nanoTime();
+
+    private final AtomicLong files = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong pagesRead = new AtomicLong();
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong rowsSkipped = new AtomicLong();
+    private final AtomicLong rowsFiltered = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong conversionFailures = new AtomicLong();
+
+    private final AtomicLong ioNanos = new AtomicLong();
+    private final AtomicLong decodeNanos = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong filterNanos = new AtomicLong();
+    private final AtomicLong conversionNanos = new AtomicLong();
+    private final AtomicLong putRowNanos = new AtomicLong();
+
+    private ObjectName objectName = null;
+
+    public void addFile() {
+        files.incrementAndGet();
+    }
+
+    /**
+     * @param bytes bytes read from file
+     * @param pages pages read from file (metadata pages included)
+     * @param nanos time of reading
+     */
+    public void addIo(long bytes, long pages, long nanos) {
+        bytesRead.addAndGet(bytes);
+        pagesRead.addAndGet(pages);
+        ioNanos.addAndGet(nanos);
+    }
+
+    /**
+     * @param rows rows returned by ParsoService
+     */
+    public void addRowsRead(long rows) {
+        rowsRead.addAndGet(rows);
+    }
+
+    public void addDecode(long nanos) {
+        decodeNanos.addAndGet(nanos);
+    }
+
+    /**
+     * @param rows rows skipped without decoding (before row offset)
+     */
+    public void addSkipped(long rows) {
+        rowsSkipped.addAndGet(rows);
+    }
+
+    public void addWait(long nanos) {
+        waitNanos.addAndGet(nanos);
+    }
+
+    /**
+     * @param rows rows rejected by the filter
+     * @param nanos time of filtering
+     */
+    public void addFiltered(long rows, long nanos) {
+        rowsFiltered.addAndGet(rows);
+        filterNanos.addAndGet(nanos);
+    }
+
+    public void addConversion(long nanos) {
+        conversionNanos.addAndGet(nanos);
+    }
+
+    public void addConversionFailures(long failures) {
+        conversionFailures.addAndGet(failures);
+    }
+
+    /**
+     * @param rows rows passed to the next steps
+     * @param nanos time of putRow
+     */
+    public void addWritten(long rows, long nanos) {
+        rowsWritten.addAndGet(rows);
+        putRowNanos.addAndGet(nanos);
+    }
+
+    @Override
+    public long getFiles() {
+        return files.get();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    @Override
+    public long getPagesRead() {
+        return pagesRead.get();
+    }
+
+    @Override
+    public long getRowsRead() {
+        return rowsRead.get();
+    }
+
+    @Override
+    public long getRowsSkipped() {
+        return rowsSkipped.get();
+    }
+
+    @Override
+    public long getRowsFiltered() {
+        return rowsFiltered.get();
+    }
+
+    @Override
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    @Override
+    public long getConversionFailures() {
+        return conversionFailures.get();
+    }
+
+    /**
+     * @return decoded rows per second since the statistics were created
+     */
+    @Override
+    public long getRowsPerSecond() {
+        long elapsed = System.nanoTime() - startTime;
+        return elapsed <= 0 ? 0 : rowsRead.get() * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    @Override
+    public long getIoMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(ioNanos.get());
+    }
+
+    @Override
+    public long getDecodeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(decodeNanos.get());
+    }
+
+    @Override
+    public long getWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.get());
+    }
+
+    @Override
+    public long getFilterMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(filterNanos.get());
+    }
+
+    @Override
+    public long getConversionMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(conversionNanos.get());
+    }
+
+    @Override
+    public long getPutRowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(putRowNanos.get());
+    }
+
+    /**
+     * Register the statistics in the platform MBean server. An already
+     * registered MBean with the same name (e.g. of a previous run of the
+     * transformation) is replaced.
+     *
+     * @param transName name of transformation
+     * @param stepName name of step
+     * @param copy copy of step
+     * @throws JMException if the registration failed
+     */
+    public void register(String transName, String stepName, int copy) throws JMException {
+        ObjectName name = new ObjectName(JMX_DOMAIN + ":type=SasReader"
+                + ",transformation=" + ObjectName.quote(String.valueOf(transName))
+                + ",step=" + ObjectName.quote(String.valueOf(stepName))
+                + ",copy=" + copy);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(this, name);
+        objectName = name;
+    }
+
+    /**
+     * Remove the statistics from the MBean server if they were registered.
+     */
+    public void unregister() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException ex) {
+                // already removed
+            }
+            objectName = null;
+        }
+    }
+}
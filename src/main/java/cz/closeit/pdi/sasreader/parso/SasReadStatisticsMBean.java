@@ -0,0 +1,53 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+/**
+ * Management interface of SasReadStatistics, see SasReadStatistics for the
+ * meaning of the attributes. Times are in milliseconds.
+ */
+public interface SasReadStatisticsMBean {
+
+    long getFiles();
+
+    long getBytesRead();
+
+    long getPagesRead();
+
+    long getRowsRead();
+
+    long getRowsSkipped();
+
+    long getRowsFiltered();
+
+    long getRowsWritten();
+
+    long getConversionFailures();
+
+    long getRowsPerSecond();
+
+    long getIoMillis();
+
+    long getDecodeMillis();
+
+    long getWaitMillis();
+
+    long getFilterMillis();
+
+    long getConversionMillis();
+
+    long getPutRowMillis();
+}
@@ -0,0 +1,30 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+/**
+ * Values of the current row of sas file. Values are indexed the same way as
+ * rows returned by ParsoService, i.e. by the projection of columns.
+ */
+public interface SasRowValues {
+
+    /**
+     * @param index index of the column in the projected row
+     * @return value of the same type as returned by Parso, null for missing
+     * values
+     */
+    Object getValue(int index);
+}
@@ -0,0 +1,219 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Columnar copy of rows of a sas file. Values of every column are stored
+ * together as they are stored in rows (bytes of the file's byte order and
+ * encoding, decompressed), so reading of a few columns reads only their part
+ * of the sidecar and values are decoded by SasPageDecoder the same way as
+ * from pages.
+ *
+ * The file starts with a header (signature, version, byte order, path, length
+ * and modification time of the sas file, number of rows, capacity and lengths
+ * of columns), it's followed by blocks of columns. Every block has room for
+ * capacity values of the column, the header is written as the last one.
+ */
+public class SasSidecar {
+
+    private static final long SIGNATURE = 0x5341534349444543L;
+    private static final int VERSION = 1;
+    // maximal number of bytes of rows copied from pages before they are written
+    private static final int WRITE_CHUNK_BYTES = 8 * 1024 * 1024;
+
+    private final File file;
+    private final boolean littleEndian;
+    private final long rowCount;
+    private final int[] lengths;
+    private final long[] columnOffsets;
+
+    private SasSidecar(File file, boolean littleEndian, long rowCount, long rowCapacity, int[] lengths, long dataOffset) {
+        this.file = file;
+        this.littleEndian = littleEndian;
+        this.rowCount = rowCount;
+        this.lengths = lengths;
+        columnOffsets = new long[lengths.length];
+        long offset = dataOffset;
+        for (int i = 0; i < lengths.length; i++) {
+            columnOffsets[i] = offset;
+            offset += lengths[i] * rowCapacity;
+        }
+    }
+
+    /**
+     * Read the header of the sidecar.
+     *
+     * @param file sidecar file
+     * @param sasFile sas file of the sidecar
+     * @return sidecar or null if the file isn't a complete sidecar of the
+     * current version of the sas file
+     * @throws IOException
+     */
+    public static SasSidecar read(File file, File sasFile) throws IOException {
+        try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            if (input.readLong() != SIGNATURE || input.readInt() != VERSION) {
+                return null;
+            }
+            boolean littleEndian = input.readBoolean();
+            if (!sasFile.getAbsolutePath().equals(input.readUTF()) || input.readLong() != sasFile.length()
+                    || input.readLong() != sasFile.lastModified()) {
+                return null;
+            }
+            long rowCount = input.readLong();
+            long rowCapacity = input.readLong();
+            int[] lengths = new int[input.readInt()];
+            long length = 0;
+            for (int i = 0; i < lengths.length; i++) {
+                lengths[i] = input.readInt();
+                length += lengths[i] * rowCapacity;
+            }
+            long dataOffset = input.readLong();
+            if (rowCount < 0 || rowCount > rowCapacity || dataOffset + length > file.length()) {
+                return null;
+            }
+            return new SasSidecar(file, littleEndian, rowCount, rowCapacity, lengths, dataOffset);
+        }
+    }
+
+    /**
+     * Write all rows read by the decoder into the sidecar file.
+     *
+     * @param file new sidecar file
+     * @param sasFile sas file
+     * @param layout layout of the sas file
+     * @param columnLayout layout of columns of the sas file
+     * @param decoder decoder of all rows of the sas file, at most rowCapacity
+     * rows are read
+     * @param rowCapacity number of rows of the sas file
+     * @return written sidecar
+     * @throws IOException
+     */
+    public static SasSidecar write(File file, File sasFile, SasFileLayout layout, SasColumnLayout columnLayout,
+            SasPageDecoder decoder, long rowCapacity) throws IOException {
+        int columnCount = columnLayout.getColumnCount();
+        int[] offsets = new int[columnCount];
+        int[] lengths = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            offsets[i] = columnLayout.getOffset(i);
+            lengths[i] = columnLayout.getLength(i);
+        }
+        boolean littleEndian = layout.getByteOrder() == ByteOrder.LITTLE_ENDIAN;
+        long dataOffset = writeHeader(sasFile, littleEndian, 0, rowCapacity, lengths, 0).length;
+        SasSidecar sidecar = new SasSidecar(file, littleEndian, 0, rowCapacity, lengths, dataOffset);
+
+        int chunkRows = (int) Math.max(1, Math.min(rowCapacity, WRITE_CHUNK_BYTES / Math.max(1, layout.getRowLength())));
+        byte[][] chunks = new byte[columnCount][];
+        for (int i = 0; i < columnCount; i++) {
+            chunks[i] = new byte[chunkRows * lengths[i]];
+        }
+        long rowCount = 0;
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            FileChannel channel = output.getChannel();
+            int chunkRow = 0;
+            int copied;
+            while ((copied = decoder.copyRows(offsets, lengths, chunks, chunkRow, chunkRows - chunkRow)) > 0) {
+                chunkRow += copied;
+                if (chunkRow == chunkRows) {
+                    sidecar.writeChunk(channel, chunks, rowCount, chunkRow);
+                    rowCount += chunkRow;
+                    chunkRow = 0;
+                }
+            }
+            sidecar.writeChunk(channel, chunks, rowCount, chunkRow);
+            rowCount += chunkRow;
+            writeFully(channel, ByteBuffer.wrap(writeHeader(sasFile, littleEndian, rowCount, rowCapacity, lengths, dataOffset)), 0);
+        }
+        return new SasSidecar(file, littleEndian, rowCount, rowCapacity, lengths, dataOffset);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public boolean isLittleEndian() {
+        return littleEndian;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return lengths.length;
+    }
+
+    /**
+     * @param column index of column
+     * @return length of values of the column
+     */
+    public int getLength(int column) {
+        return lengths[column];
+    }
+
+    /**
+     * @param column index of column
+     * @return offset of the first value of the column in the file
+     */
+    public long getColumnOffset(int column) {
+        return columnOffsets[column];
+    }
+
+    private void writeChunk(FileChannel channel, byte[][] chunks, long firstRow, int rows) throws IOException {
+        for (int i = 0; i < chunks.length && rows > 0; i++) {
+            if (lengths[i] > 0) {
+                writeFully(channel, ByteBuffer.wrap(chunks[i], 0, rows * lengths[i]), columnOffsets[i] + firstRow * lengths[i]);
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static byte[] writeHeader(File sasFile, boolean littleEndian, long rowCount, long rowCapacity, int[] lengths,
+            long dataOffset) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeLong(SIGNATURE);
+        header.writeInt(VERSION);
+        header.writeBoolean(littleEndian);
+        header.writeUTF(sasFile.getAbsolutePath());
+        header.writeLong(sasFile.length());
+        header.writeLong(sasFile.lastModified());
+        header.writeLong(rowCount);
+        header.writeLong(rowCapacity);
+        header.writeInt(lengths.length);
+        for (int length : lengths) {
+            header.writeInt(length);
+        }
+        header.writeLong(dataOffset);
+        header.flush();
+        return bytes.toByteArray();
+    }
+}
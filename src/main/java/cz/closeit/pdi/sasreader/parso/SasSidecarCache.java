@@ -0,0 +1,189 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Directory of sidecar files of sas files. A sidecar is found by the path,
+ * length and modification time of the sas file, so a changed file gets a new
+ * sidecar and the old one is deleted. When the directory exceeds the maximal
+ * size, the least recently used sidecars are deleted.
+ */
+public class SasSidecarCache {
+
+    private static final String EXTENSION = ".sascol";
+
+    private final File directory;
+    private final long maxBytes;
+
+    /**
+     * @param directory directory of sidecar files, it's created if it doesn't
+     * exist
+     * @param maxBytes maximal size of all sidecar files, 0 for no limit
+     */
+    public SasSidecarCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @param sasFile sas file
+     * @return sidecar of the current version of the file or null if there
+     * isn't any
+     */
+    public SasSidecar get(File sasFile) {
+        File file = new File(directory, getName(sasFile));
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            SasSidecar sidecar = SasSidecar.read(file, sasFile);
+            if (sidecar != null) {
+                // the modification time orders sidecars for eviction
+                file.setLastModified(System.currentTimeMillis());
+            }
+            return sidecar;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * @param bytes size of a sidecar
+     * @return true if the sidecar may be stored in the directory
+     */
+    public boolean fits(long bytes) {
+        return maxBytes <= 0 || bytes <= maxBytes;
+    }
+
+    /**
+     * Write a sidecar of the sas file and evict old sidecars.
+     *
+     * @param sasFile sas file
+     * @param layout layout of the sas file
+     * @param columnLayout layout of columns of the sas file
+     * @param decoder decoder of all rows of the sas file
+     * @param rowCapacity number of rows of the sas file
+     * @return written sidecar
+     * @throws IOException
+     */
+    public SasSidecar create(File sasFile, SasFileLayout layout, SasColumnLayout columnLayout, SasPageDecoder decoder,
+            long rowCapacity) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        String name = getName(sasFile);
+        // concurrent readers of the same file see either no sidecar or a complete one
+        File temporary = File.createTempFile(name, ".tmp", directory);
+        File file = new File(directory, name);
+        try {
+            SasSidecar.write(temporary, sasFile, layout, columnLayout, decoder, rowCapacity);
+            if (!temporary.renameTo(file)) {
+                file.delete();
+                if (!temporary.renameTo(file)) {
+                    throw new IOException("Cannot rename " + temporary + " to " + file);
+                }
+            }
+        } finally {
+            temporary.delete();
+        }
+        deleteStale(sasFile, name);
+        evict(file);
+        SasSidecar sidecar = SasSidecar.read(file, sasFile);
+        if (sidecar == null) {
+            throw new IOException("Sidecar " + file + " is invalid");
+        }
+        return sidecar;
+    }
+
+    private void deleteStale(File sasFile, final String name) {
+        final String prefix = getPrefix(sasFile);
+        File[] stale = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.getName().startsWith(prefix) && file.getName().endsWith(EXTENSION)
+                        && !file.getName().equals(name);
+            }
+        });
+        if (stale != null) {
+            for (File file : stale) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Delete the least recently used sidecars until all of them fit the
+     * maximal size.
+     */
+    private void evict(File keep) {
+        if (maxBytes <= 0) {
+            return;
+        }
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().endsWith(EXTENSION);
+            }
+        });
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long x = a.lastModified();
+                long y = b.lastModified();
+                return x < y ? -1 : (x == y ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < files.length && total > maxBytes; i++) {
+            if (!files[i].equals(keep)) {
+                long length = files[i].length();
+                if (files[i].delete()) {
+                    total -= length;
+                }
+            }
+        }
+    }
+
+    private static String getPrefix(File sasFile) {
+        String name = sasFile.getName().replaceAll("[^A-Za-z0-9._-]", "_");
+        return name + "-" + Integer.toHexString(sasFile.getAbsolutePath().hashCode()) + "-";
+    }
+
+    private static String getName(File sasFile) {
+        return getPrefix(sasFile) + Long.toHexString(sasFile.length()) + "-" + Long.toHexString(sasFile.lastModified())
+                + EXTENSION;
+    }
+}
@@ -0,0 +1,277 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import com.epam.parso.SasFileProperties;
+import com.epam.parso.impl.SasFileReaderImpl;
+import cz.closeit.pdi.sasreader.parso.SasFileGenerator.ColumnKind;
+import cz.closeit.pdi.sasreader.parso.SasFileGenerator.Compression;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares own decompressors with decompressors of Parso byte for byte, both
+ * on rows of generated files and on random streams of commands.
+ */
+public class DecompressorTest {
+
+    private static final byte GUARD = 0x55;
+
+    @Test
+    public void decompressesRowsOfCharFiles() throws IOException {
+        compareFileRows(Compression.Char, false);
+        compareFileRows(Compression.Char, true);
+    }
+
+    @Test
+    public void decompressesRowsOfBinaryFiles() throws IOException {
+        compareFileRows(Compression.Binary, false);
+        compareFileRows(Compression.Binary, true);
+    }
+
+    @Test
+    public void decompressesRandomRleCommands() throws IOException {
+        Random random = new Random(1);
+        SasDecompressor own = DecompressorType.Native.forMethod(RleDecompressor.COMPRESSION_METHOD);
+        SasDecompressor parso = DecompressorType.Parso.forMethod(RleDecompressor.COMPRESSION_METHOD);
+        assertTrue(own instanceof RleDecompressor);
+        assertNotNull(parso);
+        for (int i = 0; i < 20000; i++) {
+            int rowLength = 1 + random.nextInt(5000);
+            compare(randomRle(random, rowLength), rowLength, own, parso, random);
+        }
+    }
+
+    @Test
+    public void decompressesRandomRdcCommands() throws IOException {
+        Random random = new Random(2);
+        SasDecompressor own = DecompressorType.Native.forMethod(RdcDecompressor.COMPRESSION_METHOD);
+        SasDecompressor parso = DecompressorType.Parso.forMethod(RdcDecompressor.COMPRESSION_METHOD);
+        assertTrue(own instanceof RdcDecompressor);
+        assertNotNull(parso);
+        for (int i = 0; i < 20000; i++) {
+            int rowLength = 1 + random.nextInt(5000);
+            compare(randomRdc(random, rowLength), rowLength, own, parso, random);
+        }
+    }
+
+    /**
+     * Decompress every compressed row of generated files by both
+     * decompressors, bytes around the row must stay untouched.
+     */
+    private void compareFileRows(Compression compression, boolean u64) throws IOException {
+        for (int seed = 1; seed <= 3; seed++) {
+            File file = File.createTempFile("decompressor", ".sas7bdat");
+            try {
+                new SasFileGenerator().setRowCount(2000)
+                        .setColumns(12, ColumnKind.Numeric, ColumnKind.Integer, ColumnKind.Date, ColumnKind.Character, ColumnKind.Character)
+                        .setNullDensity(0.1 * seed).setDistinctStrings(seed * 20).setCompression(compression).setU64(u64)
+                        .setPageLength(32768).setSeed(seed).write(file);
+                SasFileProperties properties;
+                try (InputStream in = new FileInputStream(file)) {
+                    properties = new SasFileReaderImpl(in).getSasFileProperties();
+                }
+                SasFileLayout layout = new SasFileLayout(properties);
+                SasDecompressor own = DecompressorType.Native.forMethod(properties.getCompressionMethod());
+                SasDecompressor parso = DecompressorType.Parso.forMethod(properties.getCompressionMethod());
+                assertFalse(own instanceof ParsoDecompressor);
+                assertNotNull(parso);
+
+                int rowLength = layout.getRowLength();
+                byte[] page = new byte[layout.getPageLength()];
+                byte[] ownRow = new byte[rowLength * 3];
+                byte[] parsoRow = new byte[rowLength * 3];
+                Arrays.fill(ownRow, GUARD);
+                long rows = 0;
+                try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+                    for (long pageIndex = 0; pageIndex < layout.getPageCount(); pageIndex++) {
+                        in.seek(layout.getPageOffset(pageIndex));
+                        in.readFully(page);
+                        for (int i = 0; i < layout.getSubheaderCount(page); i++) {
+                            int offset = (int) layout.getSubheaderOffset(page, i);
+                            int length = (int) layout.getSubheaderLength(page, i);
+                            if (!layout.isDataSubheader(page, i) || length >= rowLength) {
+                                continue;
+                            }
+                            own.decompress(page, offset, length, ownRow, rowLength, rowLength);
+                            parso.decompress(page, offset, length, parsoRow, rowLength, rowLength);
+                            assertArrayEquals("page " + pageIndex + " subheader " + i,
+                                    Arrays.copyOfRange(parsoRow, rowLength, 2 * rowLength),
+                                    Arrays.copyOfRange(ownRow, rowLength, 2 * rowLength));
+                            assertEquals(GUARD, ownRow[rowLength - 1]);
+                            assertEquals(GUARD, ownRow[2 * rowLength]);
+                            rows++;
+                        }
+                    }
+                }
+                assertTrue("no compressed rows in " + compression, rows > 0);
+            } finally {
+                file.delete();
+            }
+        }
+    }
+
+    private static void compare(byte[] compressed, int rowLength, SasDecompressor own, SasDecompressor parso, Random random)
+            throws IOException {
+        // the stream is placed at a random offset of a page with random content
+        int offset = random.nextInt(100);
+        byte[] page = new byte[offset + compressed.length + 10];
+        random.nextBytes(page);
+        System.arraycopy(compressed, 0, page, offset, compressed.length);
+        byte[] ownRow = new byte[rowLength + 7];
+        byte[] parsoRow = new byte[rowLength + 7];
+        random.nextBytes(ownRow);
+        own.decompress(page, offset, compressed.length, ownRow, 7, rowLength);
+        parso.decompress(page, offset, compressed.length, parsoRow, 7, rowLength);
+        assertArrayEquals("row of length " + rowLength, Arrays.copyOfRange(parsoRow, 7, rowLength + 7),
+                Arrays.copyOfRange(ownRow, 7, rowLength + 7));
+    }
+
+    /**
+     * Random RLE stream using all commands, it never produces more bytes than
+     * the row length.
+     */
+    private static byte[] randomRle(Random random, int rowLength) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int produced = 0;
+        while (true) {
+            int command = random.nextInt(16);
+            int low = random.nextInt(16);
+            int next = random.nextInt(256);
+            byte[] bytes;
+            int length;
+            if (command <= 3) {
+                // copy of 64 and more bytes
+                length = next + 64 + (command * 16 + low) * 256;
+                bytes = new byte[2 + length];
+                bytes[1] = (byte) next;
+                for (int i = 2; i < bytes.length; i++) {
+                    bytes[i] = (byte) random.nextInt();
+                }
+            } else if (command == 4) {
+                // long run of a byte
+                length = low * 16 + next + 18;
+                bytes = new byte[]{0, (byte) next, (byte) random.nextInt()};
+            } else if (command <= 7) {
+                // long run of @, space or zero
+                length = low * 256 + next + 17;
+                bytes = new byte[]{0, (byte) next};
+            } else if (command <= 11) {
+                // copy of up to 64 bytes
+                length = low + 1 + (command - 8) * 16;
+                bytes = new byte[1 + length];
+                for (int i = 1; i < bytes.length; i++) {
+                    bytes[i] = (byte) random.nextInt();
+                }
+            } else if (command == 12) {
+                // short run of a byte
+                length = low + 3;
+                bytes = new byte[]{0, (byte) random.nextInt()};
+            } else {
+                // short run of @, space or zero
+                length = low + 2;
+                bytes = new byte[]{0};
+            }
+            if (produced + length > rowLength) {
+                return out.toByteArray();
+            }
+            bytes[0] = (byte) (command << 4 | low);
+            out.write(bytes, 0, bytes.length);
+            produced += length;
+        }
+    }
+
+    /**
+     * Random RDC stream of literals, runs and back references grouped by 16
+     * items behind their control bits.
+     */
+    private static byte[] randomRdc(Random random, int rowLength) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream group = new ByteArrayOutputStream();
+        int control = 0;
+        int bit = 0x8000;
+        int produced = 0;
+        while (true) {
+            int kind = random.nextInt(5);
+            int distance = 3 + random.nextInt(Math.max(1, Math.min(produced - 2, 4096)));
+            if (kind >= 3 && (produced < 3 || distance > produced)) {
+                kind = 0;
+            }
+            byte[] bytes;
+            int length;
+            if (kind == 0) {
+                length = 1;
+                bytes = new byte[]{(byte) random.nextInt()};
+            } else if (kind == 1) {
+                int count = random.nextInt(16);
+                length = count + 3;
+                bytes = new byte[]{(byte) count, (byte) random.nextInt()};
+            } else if (kind == 2) {
+                int count = random.nextInt(16);
+                int high = random.nextInt(256);
+                length = count + (high << 4) + 19;
+                bytes = new byte[]{(byte) (0x10 | count), (byte) high, (byte) random.nextInt()};
+            } else if (kind == 3) {
+                int count = random.nextInt(256);
+                length = count + 16;
+                bytes = new byte[]{(byte) (0x20 | (distance - 3) & 0x0F), (byte) ((distance - 3) >> 4), (byte) count};
+            } else {
+                int command = 3 + random.nextInt(13);
+                length = command;
+                bytes = new byte[]{(byte) (command << 4 | (distance - 3) & 0x0F), (byte) ((distance - 3) >> 4)};
+            }
+            if (produced + length > rowLength) {
+                break;
+            }
+            if (kind != 0) {
+                control |= bit;
+            }
+            group.write(bytes, 0, bytes.length);
+            produced += length;
+            bit >>= 1;
+            if (bit == 0) {
+                writeGroup(out, control, group);
+                control = 0;
+                bit = 0x8000;
+            }
+        }
+        if (bit != 0x8000) {
+            writeGroup(out, control, group);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeGroup(ByteArrayOutputStream out, int control, ByteArrayOutputStream group) {
+        out.write(control >> 8);
+        out.write(control);
+        byte[] bytes = group.toByteArray();
+        out.write(bytes, 0, bytes.length);
+        group.reset();
+    }
+}
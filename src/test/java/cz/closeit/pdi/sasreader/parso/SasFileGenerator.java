@@ -0,0 +1,957 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Writes synthetic sas7bdat files which can be read by Parso and by this
+ * plugin. The content is fully determined by the configuration and the seed,
+ * so the same configuration always produces the same file.
+ *
+ * The generator writes little-endian files in 32-bit or 64-bit layout, either
+ * uncompressed (rows on data pages, optionally starting on a mix page) or
+ * compressed with RLE (COMPRESS=CHAR) or RDC (COMPRESS=BINARY) where every row
+ * is stored as a data subheader. Deleted rows of compressed files are stored
+ * as truncated subheaders.
+ *
+ * Run {@link #main(String[])} without arguments to see the command line usage.
+ */
+public class SasFileGenerator {
+
+    public enum Compression {
+        None, Char, Binary
+    }
+
+    public enum ColumnKind {
+        Numeric, Integer, Date, DateTime, Character
+    }
+
+    private static final Charset ENCODING = Charset.forName("UTF-8");
+    private static final Map<String, Byte> ENCODING_CODES = new HashMap<>();
+
+    static {
+        ENCODING_CODES.put("UTF-8", (byte) 20);
+        ENCODING_CODES.put("ISO-8859-1", (byte) 29);
+        ENCODING_CODES.put("ISO-8859-2", (byte) 30);
+        ENCODING_CODES.put("windows-1250", (byte) 60);
+        ENCODING_CODES.put("windows-1252", (byte) 62);
+    }
+    private static final byte[] MAGIC_NUMBER = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        (byte) 0xc2, (byte) 0xea, (byte) 0x81, (byte) 0x60, (byte) 0xb3, (byte) 0x14, (byte) 0x11, (byte) 0xcf,
+        (byte) 0xbd, (byte) 0x92, (byte) 0x08, (byte) 0x00, (byte) 0x09, (byte) 0xc7, (byte) 0x31, (byte) 0x8c,
+        (byte) 0x18, (byte) 0x1f, (byte) 0x10, (byte) 0x11};
+
+    private static final int PAGE_META_TYPE = 0;
+    private static final int PAGE_DATA_TYPE = 256;
+    private static final int PAGE_MIX_TYPE = 512;
+    private static final int TRUNCATED_SUBHEADER = 1;
+    private static final int COLUMNS_PER_SUBHEADER = 1000;
+    private static final int TEXT_BLOCK_LIMIT = 32000;
+    private static final long SAS_EPOCH_DAYS = 3653;
+    private static final long MILLIS_IN_DAY = 86400000L;
+
+    private long rowCount = 1000;
+    private List<ColumnKind> columns = new ArrayList<>();
+    private int stringWidth = 16;
+    private String stringPrefix = "V";
+    private int numericLength = 8;
+    private Charset encoding = ENCODING;
+    private int distinctStrings = 0;
+    private double nullDensity = 0.0;
+    private Compression compression = Compression.None;
+    private boolean u64 = false;
+    private int pageLength = 65536;
+    private boolean mixPage = false;
+    private int deletedRows = 0;
+    private long seed = 42;
+
+    public SasFileGenerator() {
+    }
+
+    public SasFileGenerator setRowCount(long rowCount) {
+        this.rowCount = rowCount;
+        return this;
+    }
+
+    /**
+     * Define the columns of generated file, one kind per column.
+     *
+     * @param kinds
+     * @return this generator
+     */
+    public SasFileGenerator setColumns(ColumnKind... kinds) {
+        columns = new ArrayList<>(Arrays.asList(kinds));
+        return this;
+    }
+
+    /**
+     * Define the columns by count. Columns are assigned round-robin from the
+     * provided kinds, so (10, Numeric, Character) produces five numeric and
+     * five character columns.
+     *
+     * @param count
+     * @param kinds
+     * @return this generator
+     */
+    public SasFileGenerator setColumns(int count, ColumnKind... kinds) {
+        columns = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            columns.add(kinds[i % kinds.length]);
+        }
+        return this;
+    }
+
+    public SasFileGenerator setStringWidth(int stringWidth) {
+        this.stringWidth = stringWidth;
+        return this;
+    }
+
+    /**
+     * Text every character value starts with. Leading spaces and characters
+     * out of ASCII are kept, so values test trimming and encodings.
+     *
+     * @param stringPrefix
+     * @return this generator
+     */
+    public SasFileGenerator setStringPrefix(String stringPrefix) {
+        this.stringPrefix = stringPrefix;
+        return this;
+    }
+
+    /**
+     * Number of stored bytes of numeric columns (3 - 8), shorter numbers keep
+     * only the most significant bytes of doubles.
+     *
+     * @param numericLength
+     * @return this generator
+     */
+    public SasFileGenerator setNumericLength(int numericLength) {
+        if (numericLength < 3 || numericLength > 8) {
+            throw new IllegalArgumentException("Numeric length must be 3 - 8");
+        }
+        this.numericLength = numericLength;
+        return this;
+    }
+
+    /**
+     * Encoding of character values. Only UTF-8, ISO-8859-1, ISO-8859-2,
+     * windows-1250 and windows-1252 are known.
+     *
+     * @param encoding
+     * @return this generator
+     */
+    public SasFileGenerator setEncoding(String encoding) {
+        if (!ENCODING_CODES.containsKey(encoding)) {
+            throw new IllegalArgumentException("Unknown encoding " + encoding);
+        }
+        this.encoding = Charset.forName(encoding);
+        return this;
+    }
+
+    /**
+     * Limit the number of distinct values of character columns. Zero means
+     * values are generated without any limit.
+     *
+     * @param distinctStrings
+     * @return this generator
+     */
+    public SasFileGenerator setDistinctStrings(int distinctStrings) {
+        this.distinctStrings = distinctStrings;
+        return this;
+    }
+
+    /**
+     * @param nullDensity probability (0 - 1) of a missing value in any cell
+     * @return this generator
+     */
+    public SasFileGenerator setNullDensity(double nullDensity) {
+        this.nullDensity = nullDensity;
+        return this;
+    }
+
+    public SasFileGenerator setCompression(Compression compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    public SasFileGenerator setU64(boolean u64) {
+        this.u64 = u64;
+        return this;
+    }
+
+    public SasFileGenerator setPageLength(int pageLength) {
+        this.pageLength = pageLength;
+        return this;
+    }
+
+    /**
+     * Store first rows of uncompressed file on the last meta page, which
+     * becomes a mix page. Compressed files don't have mix pages.
+     *
+     * @param mixPage
+     * @return this generator
+     */
+    public SasFileGenerator setMixPage(boolean mixPage) {
+        this.mixPage = mixPage;
+        return this;
+    }
+
+    /**
+     * Every n-th row of compressed file is preceded by a deleted row, which
+     * isn't counted by the row count and isn't returned by readers. Zero
+     * means no deleted rows, uncompressed files never contain them.
+     *
+     * @param deletedRows
+     * @return this generator
+     */
+    public SasFileGenerator setDeletedRows(int deletedRows) {
+        this.deletedRows = deletedRows;
+        return this;
+    }
+
+    public SasFileGenerator setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public List<ColumnKind> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Column name used for column with provided zero based index.
+     *
+     * @param index
+     * @return column name
+     */
+    public static String columnName(int index) {
+        return "COL" + (index + 1);
+    }
+
+    /**
+     * Value which is stored in the given cell. Numeric kinds return Double
+     * (truncated to the numeric length), character columns String, null is
+     * returned for missing values. Dates are returned as number of days (Date)
+     * or seconds (DateTime) since 1960-01-01.
+     *
+     * @param row zero based row number
+     * @param column zero based column index
+     * @return generated value
+     */
+    public Object valueAt(long row, int column) {
+        Random random = new Random(seed ^ (row * 31 + column) * 0x9E3779B97F4A7C15L);
+        if (nullDensity > 0 && random.nextDouble() < nullDensity) {
+            return null;
+        }
+        switch (columns.get(column)) {
+            case Numeric:
+                return truncate(Math.round(random.nextGaussian() * 1000000.0) / 100.0);
+            case Integer:
+                return truncate(random.nextInt(100000));
+            case Date:
+                return truncate(18000 + random.nextInt(10000));
+            case DateTime:
+                return truncate(1500000000L + random.nextInt(100000000));
+            default:
+                int value = distinctStrings > 0 ? random.nextInt(distinctStrings) : random.nextInt(Integer.MAX_VALUE);
+                String text = stringPrefix + value + "_" + column;
+                while (text.getBytes(encoding).length > stringWidth) {
+                    text = text.substring(0, text.length() - 1);
+                }
+                return text;
+        }
+    }
+
+    private double truncate(double value) {
+        long mask = -1L << (8 * (8 - numericLength));
+        return Double.longBitsToDouble(Double.doubleToLongBits(value) & mask);
+    }
+
+    /**
+     * Write the file.
+     *
+     * @param target
+     * @throws IOException
+     */
+    public void write(File target) throws IOException {
+        if (columns.isEmpty()) {
+            throw new IllegalStateException("No columns defined");
+        }
+        Layout layout = new Layout();
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(target), 1 << 20)) {
+            out.write(new byte[layout.headerLength]);
+            long pages = layout.writePages(out);
+            out.flush();
+            layout.pageCount = pages;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(target, "rw")) {
+            file.write(layout.header());
+        }
+    }
+
+    private class Layout {
+
+        final int intOrLong = u64 ? 8 : 4;
+        final int bitOffset = u64 ? 32 : 16;
+        final int pointerLength = u64 ? 24 : 12;
+        final int align = u64 ? 4 : 0;
+        final int headerLength = u64 ? 8192 : 1024;
+        final int[] offsets = new int[columns.size()];
+        final int[] lengths = new int[columns.size()];
+        final int rowLength;
+        long pageCount;
+
+        Layout() {
+            int offset = 0;
+            // numeric columns first as SAS does
+            for (int i = 0; i < columns.size(); i++) {
+                if (columns.get(i) != ColumnKind.Character) {
+                    offsets[i] = offset;
+                    lengths[i] = numericLength;
+                    offset += numericLength;
+                }
+            }
+            for (int i = 0; i < columns.size(); i++) {
+                if (columns.get(i) == ColumnKind.Character) {
+                    offsets[i] = offset;
+                    lengths[i] = stringWidth;
+                    offset += stringWidth;
+                }
+            }
+            rowLength = offset;
+        }
+
+        byte[] header() {
+            ByteBuffer buffer = order(ByteBuffer.allocate(headerLength));
+            buffer.put(MAGIC_NUMBER);
+            buffer.put(32, (byte) (u64 ? 51 : 50));
+            buffer.put(35, (byte) (u64 ? 51 : 50));
+            buffer.put(37, (byte) 1);
+            buffer.put(39, (byte) '1');
+            buffer.put(70, ENCODING_CODES.get(encoding.name()));
+            putText(buffer, 84, "SAS FILE", 8);
+            putText(buffer, 92, "GENERATED", 64);
+            putText(buffer, 156, "DATA", 8);
+            double created = 1700000000.0;
+            buffer.putDouble(164 + align, created);
+            buffer.putDouble(172 + align, created);
+            buffer.putInt(196 + align, headerLength);
+            buffer.putInt(200 + align, pageLength);
+            if (u64) {
+                buffer.putLong(204 + align, pageCount);
+            } else {
+                buffer.putInt(204 + align, (int) pageCount);
+            }
+            putText(buffer, 216 + 2 * align, "9.0401M1", 8);
+            putText(buffer, 224 + 2 * align, "X64_7PRO", 16);
+            putText(buffer, 240 + 2 * align, "", 16);
+            putText(buffer, 256 + 2 * align, "", 16);
+            putText(buffer, 272 + 2 * align, "Linux", 16);
+            return buffer.array();
+        }
+
+        long writePages(OutputStream out) throws IOException {
+            List<byte[]> subheaders = metadataSubheaders();
+            long mixRows = 0;
+            if (mixPage && compression == Compression.None) {
+                // pack the subheaders once without output to find the free
+                // space of the last meta page
+                PageWriter dryRun = new PageWriter(null);
+                for (byte[] subheader : subheaders) {
+                    dryRun.addSubheader(subheader, 0, 0);
+                }
+                mixRows = Math.min(rowCount, dryRun.getMixRowCapacity());
+                ByteBuffer rowSize = order(ByteBuffer.wrap(subheaders.get(0)));
+                if (u64) {
+                    rowSize.putLong(15 * intOrLong, mixRows);
+                } else {
+                    rowSize.putInt(15 * intOrLong, (int) mixRows);
+                }
+            }
+            PageWriter pages = new PageWriter(out);
+            for (byte[] subheader : subheaders) {
+                pages.addSubheader(subheader, 0, 0);
+            }
+
+            byte[] row = new byte[rowLength];
+            if (compression == Compression.None) {
+                pages.flushMix(mixRows);
+                int rowsPerPage = (pageLength - bitOffset - 8) / rowLength;
+                ByteBuffer page = order(ByteBuffer.allocate(pageLength));
+                for (long rowIndex = mixRows; rowIndex < rowCount; rowIndex += rowsPerPage) {
+                    int rows = (int) Math.min(rowsPerPage, rowCount - rowIndex);
+                    Arrays.fill(page.array(), (byte) 0);
+                    page.putShort(bitOffset, (short) PAGE_DATA_TYPE);
+                    page.putShort(bitOffset + 2, (short) rows);
+                    page.putShort(bitOffset + 4, (short) 0);
+                    for (int i = 0; i < rows; i++) {
+                        fillRow(row, rowIndex + i);
+                        System.arraycopy(row, 0, page.array(), bitOffset + 8 + i * rowLength, rowLength);
+                    }
+                    pages.writePage(page.array());
+                }
+            } else {
+                for (long rowIndex = 0; rowIndex < rowCount; rowIndex++) {
+                    if (deletedRows > 0 && rowIndex % deletedRows == 0) {
+                        // content of deleted row differs from all rows
+                        fillRow(row, rowCount + rowIndex);
+                        pages.addSubheader(compress(row), TRUNCATED_SUBHEADER, 1);
+                    }
+                    fillRow(row, rowIndex);
+                    byte[] packed = compress(row);
+                    pages.addSubheader(packed, packed.length < rowLength ? 4 : 0, 1);
+                }
+            }
+            pages.flush();
+            return pages.count;
+        }
+
+        byte[] compress(byte[] row) {
+            byte[] packed = compression == Compression.Char ? compressRle(row) : compressRdc(row);
+            return packed.length < rowLength ? packed : row.clone();
+        }
+
+        void fillRow(byte[] row, long rowIndex) {
+            ByteBuffer number = order(ByteBuffer.allocate(8));
+            for (int i = 0; i < columns.size(); i++) {
+                Object value = valueAt(rowIndex, i);
+                if (columns.get(i) == ColumnKind.Character) {
+                    Arrays.fill(row, offsets[i], offsets[i] + lengths[i], (byte) ' ');
+                    if (value != null) {
+                        byte[] bytes = ((String) value).getBytes(encoding);
+                        System.arraycopy(bytes, 0, row, offsets[i], Math.min(bytes.length, lengths[i]));
+                    }
+                } else {
+                    // little-endian double keeps its most significant bytes at the end
+                    number.putDouble(0, value == null ? Double.NaN : (Double) value);
+                    System.arraycopy(number.array(), 8 - lengths[i], row, offsets[i], lengths[i]);
+                }
+            }
+        }
+
+        List<byte[]> metadataSubheaders() {
+            List<byte[]> subheaders = new ArrayList<>();
+            subheaders.add(rowSizeSubheader());
+            subheaders.add(columnSizeSubheader());
+
+            // text blocks hold compression literal, column names and formats
+            List<ByteBuffer> textBlocks = new ArrayList<>();
+            ByteBuffer text = newTextBlock();
+            String literal = compression == Compression.Char ? "SASYZCRL" : compression == Compression.Binary ? "SASYZCR2" : "        ";
+            putText(text, text.position(), literal, 8);
+            text.position(text.position() + 8);
+            textBlocks.add(text);
+            int[][] namePointers = new int[columns.size()][];
+            int[][] formatPointers = new int[columns.size()][];
+            for (int i = 0; i < columns.size(); i++) {
+                String format = formatOf(columns.get(i));
+                byte[] name = columnName(i).getBytes(ENCODING);
+                if (text.position() + name.length + format.length() + 8 > TEXT_BLOCK_LIMIT) {
+                    text = newTextBlock();
+                    textBlocks.add(text);
+                }
+                namePointers[i] = new int[]{textBlocks.size() - 1, text.position() - intOrLong, name.length};
+                text.put(name);
+                align4(text);
+                formatPointers[i] = new int[]{textBlocks.size() - 1, text.position() - intOrLong, format.length()};
+                text.put(format.getBytes(ENCODING));
+                align4(text);
+            }
+            for (ByteBuffer block : textBlocks) {
+                int blockSize = block.position() - intOrLong;
+                block.putShort(intOrLong, (short) blockSize);
+                subheaders.add(Arrays.copyOf(block.array(), block.position() + 12));
+            }
+
+            for (int from = 0; from < columns.size(); from += COLUMNS_PER_SUBHEADER) {
+                int to = Math.min(columns.size(), from + COLUMNS_PER_SUBHEADER);
+                ByteBuffer names = order(ByteBuffer.allocate(2 * intOrLong + 12 + 8 * (to - from)));
+                putSignature(names, -1L);
+                ByteBuffer attributes = order(ByteBuffer.allocate(2 * intOrLong + 12 + (intOrLong + 8) * (to - from)));
+                putSignature(attributes, -4L);
+                for (int i = from; i < to; i++) {
+                    int base = intOrLong + 8 * (i - from + 1);
+                    names.putShort(base, (short) namePointers[i][0]);
+                    names.putShort(base + 2, (short) namePointers[i][1]);
+                    names.putShort(base + 4, (short) namePointers[i][2]);
+
+                    int vector = intOrLong + 8 + (i - from) * (intOrLong + 8);
+                    if (u64) {
+                        attributes.putLong(vector, offsets[i]);
+                    } else {
+                        attributes.putInt(vector, offsets[i]);
+                    }
+                    attributes.putInt(vector + intOrLong, lengths[i]);
+                    attributes.put(vector + intOrLong + 6, (byte) (columns.get(i) == ColumnKind.Character ? 2 : 1));
+                }
+                subheaders.add(names.array());
+                subheaders.add(attributes.array());
+            }
+
+            for (int i = 0; i < columns.size(); i++) {
+                ByteBuffer format = order(ByteBuffer.allocate(3 * intOrLong + 40));
+                putSignature(format, -1026L);
+                format.putShort(8 + intOrLong, (short) widthOf(columns.get(i)));
+                format.putShort(22 + 3 * intOrLong, (short) formatPointers[i][0]);
+                format.putShort(24 + 3 * intOrLong, (short) formatPointers[i][1]);
+                format.putShort(26 + 3 * intOrLong, (short) formatPointers[i][2]);
+                format.putShort(28 + 3 * intOrLong, (short) 0);
+                format.putShort(30 + 3 * intOrLong, (short) 0);
+                format.putShort(32 + 3 * intOrLong, (short) 0);
+                subheaders.add(format.array());
+            }
+            return subheaders;
+        }
+
+        byte[] rowSizeSubheader() {
+            ByteBuffer buffer = order(ByteBuffer.allocate(u64 ? 808 : 480));
+            if (u64) {
+                buffer.putLong(0, 0x00000000F7F7F7F7L);
+                buffer.putLong(5 * intOrLong, rowLength);
+                buffer.putLong(6 * intOrLong, rowCount);
+                buffer.putLong(15 * intOrLong, 0);
+            } else {
+                buffer.putInt(0, 0xF7F7F7F7);
+                buffer.putInt(5 * intOrLong, rowLength);
+                buffer.putInt(6 * intOrLong, (int) rowCount);
+                buffer.putInt(15 * intOrLong, 0);
+            }
+            return buffer.array();
+        }
+
+        byte[] columnSizeSubheader() {
+            ByteBuffer buffer = order(ByteBuffer.allocate(3 * intOrLong));
+            if (u64) {
+                buffer.putLong(0, 0x00000000F6F6F6F6L);
+                buffer.putLong(intOrLong, columns.size());
+            } else {
+                buffer.putInt(0, 0xF6F6F6F6);
+                buffer.putInt(intOrLong, columns.size());
+            }
+            return buffer.array();
+        }
+
+        ByteBuffer newTextBlock() {
+            ByteBuffer block = order(ByteBuffer.allocate(TEXT_BLOCK_LIMIT + 64));
+            putSignature(block, -3L);
+            block.position(intOrLong + 12);
+            return block;
+        }
+
+        void putSignature(ByteBuffer buffer, long signature) {
+            if (u64) {
+                buffer.putLong(0, signature);
+            } else {
+                buffer.putInt(0, (int) signature);
+            }
+        }
+
+        void align4(ByteBuffer buffer) {
+            while ((buffer.position() - intOrLong) % 4 != 0) {
+                buffer.put((byte) 0);
+            }
+        }
+
+        /**
+         * Packs subheaders into meta pages. Pointers grow from the page start,
+         * subheader bodies are placed from the page end downwards.
+         */
+        private class PageWriter {
+
+            final OutputStream out;
+            final List<byte[]> bodies = new ArrayList<>();
+            final List<int[]> flags = new ArrayList<>();
+            int free;
+            long count = 0;
+
+            PageWriter(OutputStream out) {
+                this.out = out;
+                reset();
+            }
+
+            void reset() {
+                bodies.clear();
+                flags.clear();
+                free = pageLength - bitOffset - 8;
+            }
+
+            void addSubheader(byte[] body, int compression, int type) throws IOException {
+                int needed = (body.length + 7) / 8 * 8 + pointerLength;
+                if (needed + 8 > free && !bodies.isEmpty()) {
+                    flush();
+                }
+                if (needed + 8 > free) {
+                    throw new IllegalStateException("Subheader doesn't fit into page, use bigger page length");
+                }
+                bodies.add(body);
+                flags.add(new int[]{compression, type});
+                free -= needed;
+            }
+
+            /**
+             * Number of rows which fit between subheader pointers and bodies
+             * of the current page, rows start at the offset used by Parso.
+             */
+            long getMixRowCapacity() {
+                int end = pageLength;
+                for (byte[] body : bodies) {
+                    end -= body.length;
+                    end -= end % 8;
+                }
+                return Math.max(0, (end - mixRowsOffset()) / rowLength);
+            }
+
+            int mixRowsOffset() {
+                int offset = bitOffset + 8 + bodies.size() * pointerLength;
+                return offset + offset % 8;
+            }
+
+            void flush() throws IOException {
+                flushMix(0);
+            }
+
+            /**
+             * Write the current page, it becomes a mix page with first rows
+             * of the file if any rows are asked for.
+             */
+            void flushMix(long rows) throws IOException {
+                if (bodies.isEmpty()) {
+                    return;
+                }
+                ByteBuffer page = order(ByteBuffer.allocate(pageLength));
+                page.putShort(bitOffset, (short) (rows > 0 ? PAGE_MIX_TYPE : PAGE_META_TYPE));
+                page.putShort(bitOffset + 2, (short) (bodies.size() + rows));
+                page.putShort(bitOffset + 4, (short) bodies.size());
+                byte[] row = new byte[rowLength];
+                for (int i = 0; i < rows; i++) {
+                    fillRow(row, i);
+                    System.arraycopy(row, 0, page.array(), mixRowsOffset() + i * rowLength, rowLength);
+                }
+                int end = pageLength;
+                for (int i = 0; i < bodies.size(); i++) {
+                    byte[] body = bodies.get(i);
+                    end -= body.length;
+                    end -= end % 8;
+                    System.arraycopy(body, 0, page.array(), end, body.length);
+                    int pointer = bitOffset + 8 + i * pointerLength;
+                    if (u64) {
+                        page.putLong(pointer, end);
+                        page.putLong(pointer + 8, body.length);
+                    } else {
+                        page.putInt(pointer, end);
+                        page.putInt(pointer + 4, body.length);
+                    }
+                    page.put(pointer + 2 * intOrLong, (byte) flags.get(i)[0]);
+                    page.put(pointer + 2 * intOrLong + 1, (byte) flags.get(i)[1]);
+                }
+                writePage(page.array());
+                reset();
+            }
+
+            void writePage(byte[] page) throws IOException {
+                if (out != null) {
+                    out.write(page);
+                }
+                count++;
+            }
+        }
+    }
+
+    private static String formatOf(ColumnKind kind) {
+        switch (kind) {
+            case Date:
+                return "DATE";
+            case DateTime:
+                return "DATETIME";
+            case Integer:
+                return "F";
+            case Numeric:
+                return "BEST";
+            default:
+                return "$";
+        }
+    }
+
+    private static int widthOf(ColumnKind kind) {
+        switch (kind) {
+            case Date:
+                return 9;
+            case DateTime:
+                return 20;
+            case Integer:
+                return 8;
+            case Numeric:
+                return 12;
+            default:
+                return 0;
+        }
+    }
+
+    private static ByteBuffer order(ByteBuffer buffer) {
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void putText(ByteBuffer buffer, int offset, String text, int length) {
+        byte[] bytes = text.getBytes(ENCODING);
+        for (int i = 0; i < length; i++) {
+            buffer.put(offset + i, i < bytes.length ? bytes[i] : (byte) ' ');
+        }
+    }
+
+    /**
+     * Compress row using SAS RLE (COMPRESS=CHAR) commands.
+     *
+     * @param row
+     * @return compressed bytes
+     */
+    static byte[] compressRle(byte[] row) {
+        ByteBuffer out = ByteBuffer.allocate(row.length * 2 + 16);
+        int literalStart = 0;
+        int i = 0;
+        while (i < row.length) {
+            int run = 1;
+            while (i + run < row.length && row[i + run] == row[i] && run < 4112) {
+                run++;
+            }
+            boolean blank = row[i] == ' ' || row[i] == 0;
+            if (run >= 3 || (blank && run >= 2)) {
+                flushRleLiterals(out, row, literalStart, i);
+                int value = row[i];
+                if (blank) {
+                    if (run <= 17) {
+                        out.put((byte) ((value == 0 ? 0xF0 : 0xE0) | (run - 2)));
+                    } else {
+                        int count = run - 17;
+                        out.put((byte) ((value == 0 ? 0x70 : 0x60) | (count >> 8)));
+                        out.put((byte) count);
+                    }
+                } else {
+                    run = Math.min(run, 513);
+                    if (run <= 18) {
+                        out.put((byte) (0xC0 | (run - 3)));
+                        out.put((byte) value);
+                    } else {
+                        int count = run - 18;
+                        out.put((byte) (0x40 | (count >> 8 & 0x0F)));
+                        out.put((byte) count);
+                        out.put((byte) value);
+                        // 0x40 command stores only 12 bits of count
+                        if (count >> 12 != 0) {
+                            throw new IllegalStateException();
+                        }
+                    }
+                }
+                i += run;
+                literalStart = i;
+            } else {
+                i += run;
+            }
+        }
+        flushRleLiterals(out, row, literalStart, row.length);
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    private static void flushRleLiterals(ByteBuffer out, byte[] row, int from, int to) {
+        while (from < to) {
+            int count = Math.min(64, to - from);
+            out.put((byte) (0x80 | (count - 1)));
+            out.put(row, from, count);
+            from += count;
+        }
+    }
+
+    /**
+     * Compress row using SAS RDC (COMPRESS=BINARY) commands.
+     *
+     * @param row
+     * @return compressed bytes
+     */
+    static byte[] compressRdc(byte[] row) {
+        ByteBuffer out = ByteBuffer.allocate(row.length * 2 + 16);
+        int[] lastPosition = new int[4096];
+        Arrays.fill(lastPosition, -1);
+        int controlPosition = -1;
+        int controlBits = 0;
+        int controlMask = 0;
+        int i = 0;
+        while (i < row.length) {
+            if (controlMask == 0) {
+                if (controlPosition >= 0) {
+                    out.putShort(controlPosition, (short) controlBits);
+                }
+                controlPosition = out.position();
+                out.putShort((short) 0);
+                controlBits = 0;
+                controlMask = 0x8000;
+            }
+
+            int run = 1;
+            while (i + run < row.length && row[i + run] == row[i] && run < 4114) {
+                run++;
+            }
+            int matchLength = 0;
+            int matchOffset = 0;
+            if (i + 3 <= row.length) {
+                int hash = ((row[i] & 0xFF) * 31 * 31 + (row[i + 1] & 0xFF) * 31 + (row[i + 2] & 0xFF)) & 4095;
+                int candidate = lastPosition[hash];
+                lastPosition[hash] = i;
+                int offset = i - candidate;
+                if (candidate >= 0 && offset >= 3 && offset <= 4098) {
+                    while (i + matchLength < row.length && matchLength < 271 && matchLength < offset
+                            && row[candidate + matchLength] == row[i + matchLength]) {
+                        matchLength++;
+                    }
+                    matchOffset = offset;
+                }
+            }
+
+            if (run >= 3 && run >= matchLength) {
+                controlBits |= controlMask;
+                if (run <= 18) {
+                    out.put((byte) (run - 3));
+                } else {
+                    int count = run - 19;
+                    out.put((byte) (0x10 | (count & 0x0F)));
+                    out.put((byte) (count >> 4));
+                }
+                out.put(row[i]);
+                i += run;
+            } else if (matchLength >= 3) {
+                controlBits |= controlMask;
+                int offset = matchOffset - 3;
+                if (matchLength <= 15) {
+                    out.put((byte) ((matchLength << 4) | (offset & 0x0F)));
+                    out.put((byte) (offset >> 4));
+                } else {
+                    matchLength = Math.max(16, matchLength);
+                    out.put((byte) (0x20 | (offset & 0x0F)));
+                    out.put((byte) (offset >> 4));
+                    out.put((byte) (matchLength - 16));
+                }
+                i += matchLength;
+            } else {
+                out.put(row[i]);
+                i++;
+            }
+            controlMask >>= 1;
+        }
+        if (controlPosition >= 0) {
+            out.putShort(controlPosition, (short) controlBits);
+        }
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    /**
+     * Command line entry point.
+     *
+     * @param args target file, rows, columns and optional key=value settings
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: SasFileGenerator <target.sas7bdat> <rows> <columns> [key=value ...]");
+            System.out.println("  kinds=Numeric,Character,...  column kinds used round-robin");
+            System.out.println("  width=16                     width of character columns");
+            System.out.println("  prefix=V                     prefix of character values");
+            System.out.println("  numeric=8                    length of numeric columns (3 - 8)");
+            System.out.println("  encoding=UTF-8               encoding of character values");
+            System.out.println("  distinct=0                   distinct values of character columns, 0 = unlimited");
+            System.out.println("  nulls=0.0                    probability of missing value");
+            System.out.println("  compression=None|Char|Binary");
+            System.out.println("  u64=false                    64-bit layout");
+            System.out.println("  page=65536                   page length");
+            System.out.println("  mix=false                    first rows on a mix page");
+            System.out.println("  deleted=0                    deleted row before every n-th row of compressed file");
+            System.out.println("  seed=42");
+            return;
+        }
+        SasFileGenerator generator = new SasFileGenerator();
+        generator.setRowCount(Long.parseLong(args[1]));
+        ColumnKind[] kinds = {ColumnKind.Numeric, ColumnKind.Character};
+        for (int i = 3; i < args.length; i++) {
+            String key = args[i].substring(0, args[i].indexOf('='));
+            String value = args[i].substring(args[i].indexOf('=') + 1);
+            switch (key) {
+                case "kinds":
+                    String[] names = value.split(",");
+                    kinds = new ColumnKind[names.length];
+                    for (int k = 0; k < names.length; k++) {
+                        kinds[k] = ColumnKind.valueOf(names[k]);
+                    }
+                    break;
+                case "width":
+                    generator.setStringWidth(Integer.parseInt(value));
+                    break;
+                case "prefix":
+                    generator.setStringPrefix(value);
+                    break;
+                case "numeric":
+                    generator.setNumericLength(Integer.parseInt(value));
+                    break;
+                case "encoding":
+                    generator.setEncoding(value);
+                    break;
+                case "distinct":
+                    generator.setDistinctStrings(Integer.parseInt(value));
+                    break;
+                case "nulls":
+                    generator.setNullDensity(Double.parseDouble(value));
+                    break;
+                case "compression":
+                    generator.setCompression(Compression.valueOf(value));
+                    break;
+                case "u64":
+                    generator.setU64(Boolean.parseBoolean(value));
+                    break;
+                case "page":
+                    generator.setPageLength(Integer.parseInt(value));
+                    break;
+                case "mix":
+                    generator.setMixPage(Boolean.parseBoolean(value));
+                    break;
+                case "deleted":
+                    generator.setDeletedRows(Integer.parseInt(value));
+                    break;
+                case "seed":
+                    generator.setSeed(Long.parseLong(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown setting " + key);
+            }
+        }
+        generator.setColumns(Integer.parseInt(args[2]), kinds);
+        generator.write(new File(args[0]));
+    }
+}
@@ -0,0 +1,343 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import cz.closeit.pdi.sasreader.input.SasInputField;
+import cz.closeit.pdi.sasreader.parso.SasFileGenerator.ColumnKind;
+import cz.closeit.pdi.sasreader.parso.SasFileGenerator.Compression;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares rows decoded by SasPageDecoder (row by row and in column batches)
+ * with rows read by Parso from generated files.
+ */
+public class SasPageDecoderTest {
+
+    private static final ColumnKind[] ALL_KINDS = {ColumnKind.Numeric, ColumnKind.Integer, ColumnKind.Date,
+        ColumnKind.DateTime, ColumnKind.Character, ColumnKind.Character};
+
+    @Test
+    public void decodesUncompressedFiles() throws IOException {
+        for (boolean u64 : new boolean[]{false, true}) {
+            checkFile(generator().setU64(u64).setPageLength(8192));
+        }
+    }
+
+    @Test
+    public void decodesRowsOfMixPage() throws IOException {
+        for (boolean u64 : new boolean[]{false, true}) {
+            SasFileGenerator generator = generator().setU64(u64).setPageLength(16384).setMixPage(true);
+            File file = write(generator);
+            try {
+                ParsoService service = new ParsoService(file);
+                long mixRows = service.getLayout().getMixPageRowCount();
+                service.dispose();
+                assertTrue("no rows on mix page", mixRows > 0);
+                checkFile(file, generator, true);
+            } finally {
+                file.delete();
+            }
+        }
+    }
+
+    @Test
+    public void decodesCompressedFiles() throws IOException {
+        for (Compression compression : new Compression[]{Compression.Char, Compression.Binary}) {
+            for (boolean u64 : new boolean[]{false, true}) {
+                checkFile(generator().setCompression(compression).setU64(u64).setPageLength(16384));
+            }
+        }
+    }
+
+    @Test
+    public void skipsDeletedRows() throws IOException {
+        for (Compression compression : new Compression[]{Compression.Char, Compression.Binary}) {
+            checkFile(generator().setCompression(compression).setPageLength(16384).setDeletedRows(3));
+        }
+    }
+
+    @Test
+    public void decodesShortNumbers() throws IOException {
+        for (int length = 3; length < 8; length++) {
+            checkFile(generator().setNumericLength(length).setPageLength(8192));
+            checkFile(generator().setNumericLength(length).setCompression(Compression.Binary).setPageLength(16384));
+        }
+    }
+
+    @Test
+    public void trimsAndEncodesStrings() throws IOException {
+        String[][] encodings = {{"UTF-8", "  \u017dlu\u0165ou\u010dk\u00fd k\u016f\u0148 "}, {"ISO-8859-2", " P\u0159\u00edli\u0161 "}, {"windows-1250", "\u0160\u0165\u00e1va  "},
+            {"windows-1252", "  Caf\u00e9"}, {"ISO-8859-1", " Gr\u00f6\u00dfe "}};
+        for (String[] encoding : encodings) {
+            checkFile(generator().setEncoding(encoding[0]).setStringPrefix(encoding[1]).setStringWidth(20).setPageLength(8192));
+            checkFile(generator().setEncoding(encoding[0]).setStringPrefix(encoding[1]).setStringWidth(20)
+                    .setCompression(Compression.Char).setPageLength(16384));
+        }
+    }
+
+    /**
+     * Generator of a file with all kinds of columns and missing values.
+     */
+    private static SasFileGenerator generator() {
+        return new SasFileGenerator().setRowCount(3001).setColumns(ALL_KINDS).setNullDensity(0.2).setDistinctStrings(7)
+                .setSeed(7);
+    }
+
+    private static File write(SasFileGenerator generator) throws IOException {
+        File file = File.createTempFile("decoder", ".sas7bdat");
+        generator.write(file);
+        return file;
+    }
+
+    private static void checkFile(SasFileGenerator generator) throws IOException {
+        File file = write(generator);
+        try {
+            checkFile(file, generator, false);
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Compare all rows, projections, page ranges and row ranges of the file.
+     */
+    private static void checkFile(File file, SasFileGenerator generator, boolean allRanges) throws IOException {
+        ParsoService service = new ParsoService(file);
+        List<String> names = new ArrayList<>();
+        for (int i = 1; i <= service.getNumberOfColumns(); i++) {
+            names.add(service.getColumn(i).getName());
+        }
+        long pageCount = service.getPageCount();
+        long firstDataPage = service.getFirstDataPage();
+        service.dispose();
+
+        List<List<Object>> rows = readParso(file, false, null, null, null);
+        assertEquals(generator.getRowCount(), rows.size());
+        for (int column = 0; column < names.size(); column++) {
+            Object value = generator.valueAt(0, column);
+            Object parsed = rows.get(0).get(column);
+            if (value instanceof String) {
+                // only trailing blanks are trimmed
+                assertEquals(((String) value).replaceAll(" +$", ""), parsed);
+            } else if (value != null && generator.getColumns().get(column) == ColumnKind.Numeric) {
+                assertEquals((Double) value, ((Number) parsed).doubleValue(), 0);
+            }
+        }
+
+        List<List<String>> projections = Arrays.asList(null, Arrays.asList(names.get(4), names.get(0)),
+                Arrays.asList(names.get(2), names.get(3), names.get(1)));
+        long[][] pageRanges = {{firstDataPage, firstDataPage + 1}, {firstDataPage + 1, firstDataPage + 3}, {0, pageCount}};
+        long[][] rowRanges = {{100, 50}, {-10, 0}, {2990, 0}};
+        for (boolean byteOutput : new boolean[]{false, true}) {
+            for (List<String> projection : projections) {
+                compare(file, byteOutput, projection, null, null);
+                if (!allRanges && projection != null) {
+                    continue;
+                }
+                for (long[] pages : pageRanges) {
+                    compare(file, byteOutput, projection, pages, null);
+                }
+                for (long[] range : rowRanges) {
+                    compare(file, byteOutput, projection, null, range);
+                }
+            }
+        }
+    }
+
+    private static void compare(File file, boolean byteOutput, List<String> projection, long[] pages, long[] range)
+            throws IOException {
+        String description = file.getName() + " bytes " + byteOutput + " projection " + projection
+                + " pages " + Arrays.toString(pages) + " rows " + Arrays.toString(range);
+        List<List<Object>> expected = readParso(file, byteOutput, projection, pages, range);
+        for (DecompressorType decompressorType : DecompressorType.values()) {
+            assertEquals(description, expected, readDecoder(file, byteOutput, projection, pages, range, decompressorType));
+        }
+        for (int capacity : new int[]{7, 1000}) {
+            assertEquals(description + " batch " + capacity, expected,
+                    readBatches(file, byteOutput, projection, pages, range, capacity));
+        }
+        for (int threads : new int[]{1, 3}) {
+            List<List<Object>> parallel = readParallel(file, byteOutput, projection, pages, range, threads);
+            if (parallel != null) {
+                assertEquals(description + " threads " + threads, expected, parallel);
+            }
+        }
+    }
+
+    private static ParsoService open(File file, boolean byteOutput, List<String> projection, long[] pages, long[] range)
+            throws IOException {
+        ParsoService service = new ParsoService(file, byteOutput);
+        if (projection != null) {
+            List<SasInputField> fields = new ArrayList<>();
+            for (String name : projection) {
+                SasInputField field = new SasInputField();
+                field.setOriginalId(service.findColumn(name).getId());
+                fields.add(field);
+            }
+            service.setProjection(fields);
+        }
+        if (pages != null) {
+            service.readPageRange(pages[0], pages[1]);
+        }
+        if (range != null) {
+            service.readRowRange(range[0], range[1]);
+        }
+        return service;
+    }
+
+    private static List<List<Object>> readParso(File file, boolean byteOutput, List<String> projection, long[] pages,
+            long[] range) throws IOException {
+        ParsoService service = open(file, byteOutput, projection, pages, range);
+        List<List<Object>> rows = new ArrayList<>();
+        try {
+            Object[] row;
+            while ((row = service.getNextRow()) != null) {
+                List<Object> values = new ArrayList<>();
+                for (Object value : row) {
+                    values.add(comparable(value));
+                }
+                rows.add(values);
+            }
+        } finally {
+            service.dispose();
+        }
+        return rows;
+    }
+
+    /**
+     * Read rows decoded on a thread pool in chunks of one page, so rows of a
+     * range are reassembled from more chunks.
+     *
+     * @return rows or null if the file isn't compressed
+     */
+    private static List<List<Object>> readParallel(File file, boolean byteOutput, List<String> projection, long[] pages,
+            long[] range, int threads) throws IOException {
+        ParsoService service = open(file, byteOutput, projection, pages, range);
+        List<List<Object>> rows = new ArrayList<>();
+        try {
+            if (!service.startParallelDecoding(threads, 1, "test")) {
+                return service.getLayout().isCompressed() ? rows : null;
+            }
+            Object[][] buffer = new Object[100][];
+            int count;
+            while ((count = service.getNextRows(buffer)) > 0) {
+                for (int i = 0; i < count; i++) {
+                    List<Object> values = new ArrayList<>();
+                    for (Object value : buffer[i]) {
+                        values.add(comparable(value));
+                    }
+                    rows.add(values);
+                }
+            }
+        } finally {
+            service.dispose();
+        }
+        return rows;
+    }
+
+    private static List<List<Object>> readDecoder(File file, boolean byteOutput, List<String> projection, long[] pages,
+            long[] range, DecompressorType decompressorType) throws IOException {
+        ParsoService service = open(file, byteOutput, projection, pages, range);
+        service.setDecompressorType(decompressorType);
+        List<List<Object>> rows = new ArrayList<>();
+        try {
+            SasPageDecoder decoder = service.openDecoder();
+            if (range != null && decoder == null) {
+                // empty row range
+                return rows;
+            }
+            assertNotNull("file isn't supported by decoder", decoder);
+            int columnCount = projection == null ? (int) service.getNumberOfColumns() : projection.size();
+            while (decoder.next()) {
+                rows.add(values(decoder, columnCount));
+            }
+        } finally {
+            service.dispose();
+        }
+        return rows;
+    }
+
+    private static List<List<Object>> readBatches(File file, boolean byteOutput, List<String> projection, long[] pages,
+            long[] range, int capacity) throws IOException {
+        ParsoService service = open(file, byteOutput, projection, pages, range);
+        List<List<Object>> rows = new ArrayList<>();
+        try {
+            SasColumnBatch batch = service.openColumnBatch(capacity);
+            if (range != null && batch == null) {
+                return rows;
+            }
+            assertNotNull("file isn't supported by decoder", batch);
+            int count;
+            while ((count = service.getNextBatch(batch)) > 0) {
+                for (int row = 0; row < count; row++) {
+                    batch.setRow(row);
+                    List<Object> values = values(batch, batch.getColumnCount());
+                    for (int column = 0; column < batch.getColumnCount(); column++) {
+                        checkVector(batch, column, row, values.get(column));
+                    }
+                    rows.add(values);
+                }
+            }
+        } finally {
+            service.dispose();
+        }
+        return rows;
+    }
+
+    /**
+     * Primitive vectors must contain the same values as boxed values.
+     */
+    private static void checkVector(SasColumnBatch batch, int column, int row, Object value) {
+        if (value == null) {
+            return;
+        }
+        switch (batch.getType(column)) {
+            case SasColumnBatch.VECTOR_NUMBER:
+                assertEquals(((Number) value).doubleValue(), batch.getNumber(column, row), 0);
+                break;
+            case SasColumnBatch.VECTOR_MILLIS:
+                assertEquals(((Date) value).getTime(), batch.getMillis(column, row));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static List<Object> values(SasRowValues row, int columnCount) {
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i < columnCount; i++) {
+            values.add(comparable(row.getValue(i)));
+        }
+        return values;
+    }
+
+    /**
+     * Byte arrays are compared by content.
+     */
+    private static Object comparable(Object value) {
+        return value instanceof byte[] ? Arrays.toString((byte[]) value) : value;
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * *************************************************************************
+ * Copyright (C) 2017 CloseIT s.r.o.
+ *
+ * This file is part of SAS reader plugin.
+ *
+ * This file may be distributed and/or modified under the terms of the
+ * GNU General Public License version 3 as published by the Free Software
+ * Foundation and appearing in the file LICENSE.GPL included in the
+ * packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING THE
+ * WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ * *************************************************************************
+ */
+package cz.closeit.pdi.sasreader.parso;
+
+import cz.closeit.pdi.sasreader.parso.SasFileGenerator.ColumnKind;
+import cz.closeit.pdi.sasreader.parso.SasFileGenerator.Compression;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the page index with rows counted on whole pages and rows of row
+ * ranges with rows of the whole file.
+ */
+public class SasPageIndexTest {
+
+    @Test
+    public void indexesUncompressedFiles() throws IOException {
+        for (boolean u64 : new boolean[]{false, true}) {
+            for (boolean mixPage : new boolean[]{false, true}) {
+                for (long rows : new long[]{1, 150, 3001}) {
+                    checkFile(generator(rows).setU64(u64).setMixPage(mixPage).setPageLength(8192), true);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void indexesCompressedFiles() throws IOException {
+        for (Compression compression : new Compression[]{Compression.Char, Compression.Binary}) {
+            for (boolean u64 : new boolean[]{false, true}) {
+                checkFile(generator(3001).setCompression(compression).setU64(u64).setPageLength(16384), false);
+                checkFile(generator(3001).setCompression(compression).setU64(u64).setPageLength(16384).setDeletedRows(4), false);
+            }
+        }
+    }
+
+    private static SasFileGenerator generator(long rows) {
+        return new SasFileGenerator().setRowCount(rows).setColumns(ColumnKind.Numeric, ColumnKind.Date, ColumnKind.Character)
+                .setNullDensity(0.1).setSeed(11);
+    }
+
+    private static void checkFile(SasFileGenerator generator, boolean headersOnly) throws IOException {
+        File file = File.createTempFile("index", ".sas7bdat");
+        try {
+            generator.write(file);
+            ParsoService service = new ParsoService(file);
+            SasFileLayout layout = service.getLayout();
+            long firstDataPage = service.getFirstDataPage();
+            service.dispose();
+
+            CountingSource source = new CountingSource(file);
+            SasPageIndex index;
+            try {
+                index = new SasPageIndex(source, layout, firstDataPage);
+            } finally {
+                source.close();
+            }
+            if (headersOnly) {
+                assertTrue("rows were read", source.bytesRead < 3L * layout.getPageLength());
+            }
+            assertTrue("pages were read", source.bytesRead < (layout.getPageCount() - firstDataPage) * layout.getPageLength());
+
+            // rows counted on whole pages
+            long rows = 0;
+            byte[] page = new byte[layout.getPageLength()];
+            try (SasInputSource input = SasInputSource.open(file)) {
+                for (long pageIndex = firstDataPage; pageIndex < layout.getPageCount(); pageIndex++) {
+                    input.readFully(layout.getPageOffset(pageIndex), page, 0, page.length);
+                    int pageRows = layout.countRows(page);
+                    assertEquals("first row of page " + pageIndex, rows, index.getFirstRow(pageIndex));
+                    for (long row = rows; row < rows + pageRows; row++) {
+                        assertEquals("page of row " + row, pageIndex, index.getPageOfRow(row));
+                    }
+                    rows += pageRows;
+                }
+            }
+            assertEquals(generator.getRowCount(), rows);
+            assertEquals(rows, index.getRowCount());
+
+            List<Object[]> all = readRows(file, null);
+            for (long[] range : new long[][]{{0, 1}, {rows / 2, 50}, {-10, 0}, {rows - 1, 0}, {rows + 5, 0}}) {
+                long from = range[0] < 0 ? Math.max(0, rows + range[0]) : Math.min(range[0], rows);
+                long to = range[1] > 0 ? Math.min(rows, from + range[1]) : rows;
+                List<Object[]> slice = readRows(file, range);
+                assertEquals(Arrays.toString(range), to - from, slice.size());
+                for (int i = 0; i < slice.size(); i++) {
+                    assertEquals(Arrays.asList(all.get((int) from + i)), Arrays.asList(slice.get(i)));
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static List<Object[]> readRows(File file, long[] range) throws IOException {
+        ParsoService service = new ParsoService(file);
+        List<Object[]> rows = new ArrayList<>();
+        try {
+            if (range != null) {
+                service.readRowRange(range[0], range[1]);
+            }
+            Object[] row;
+            while ((row = service.getNextRow()) != null) {
+                rows.add(row);
+            }
+        } finally {
+            service.dispose();
+        }
+        return rows;
+    }
+
+    private static class CountingSource extends ChannelSasInputSource {
+
+        long bytesRead = 0;
+
+        CountingSource(File file) throws IOException {
+            super(file);
+        }
+
+        @Override
+        public int read(long position, byte[] b, int off, int len) throws IOException {
+            int count = super.read(position, b, off, len);
+            bytesRead += Math.max(0, count);
+            return count;
+        }
+    }
+}